@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.benchmarks;
+
+import com.tangosol.io.pof.EnumPofSerializer;
+import com.tangosol.io.pof.PortableObjectSerializer;
+import com.tangosol.io.pof.PortableTypeSerializer;
+import com.tangosol.io.pof.SimplePofContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import petstore.Color;
+import petstore.Dog;
+import petstore.Pet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the serialization code generated by the plugin
+ * against hand-written {@code PortableObject} implementations and Java
+ * serialization. Run with {@code ./gradlew :benchmarks:jmh}; the {@code gc}
+ * profiler reports the allocation rate of each benchmark next to its throughput.
+ *
+ * @author Gunnar Hillert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PofSerializationBenchmark
+    {
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+        {
+        context = new SimplePofContext();
+        context.registerUserType(1, Pet.class, new PortableTypeSerializer<>(1, Pet.class));
+        context.registerUserType(2, Dog.class, new PortableTypeSerializer<>(2, Dog.class));
+        context.registerUserType(3, Color.class, new EnumPofSerializer());
+        context.registerUserType(1001, Order.class, new PortableTypeSerializer<>(1001, Order.class));
+        context.registerUserType(1002, OrderLine.class, new PortableTypeSerializer<>(1002, OrderLine.class));
+        context.registerUserType(1011, ManualOrder.class, new PortableObjectSerializer(1011));
+        context.registerUserType(1012, ManualOrderLine.class, new PortableObjectSerializer(1012));
+
+        List<OrderLine>       listLines       = new ArrayList<>();
+        List<ManualOrderLine> listManualLines = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++)
+            {
+            listLines.add(new OrderLine("SKU-" + i, i + 1, 9.99 * (i + 1)));
+            listManualLines.add(new ManualOrderLine("SKU-" + i, i + 1, 9.99 * (i + 1)));
+            }
+        Map<String, String> mapAttributes = new HashMap<>();
+        mapAttributes.put("channel", "web");
+        mapAttributes.put("region", "emea");
+
+        order       = new Order(42L, "customer-42", "EUR", 1234.5, 3, true, 1672531200000L,
+                                listLines, mapAttributes);
+        manualOrder = new ManualOrder(42L, "customer-42", "EUR", 1234.5, 3, true, 1672531200000L,
+                                      listManualLines, mapAttributes);
+
+        dog = new Dog();
+        dog.setName("Rex");
+        dog.setAge(5);
+        dog.setBreed("Beagle");
+        dog.setColor(Color.BRINDLE);
+
+        binOrder       = ExternalizableHelper.toBinary(order, context);
+        binManualOrder = ExternalizableHelper.toBinary(manualOrder, context);
+        binDog         = ExternalizableHelper.toBinary(dog, context);
+        abJavaOrder    = javaSerialize(order);
+        }
+
+    // ----- generated serializers ------------------------------------------
+
+    @Benchmark
+    public Binary serializeOrder()
+        {
+        return ExternalizableHelper.toBinary(order, context);
+        }
+
+    @Benchmark
+    public Object deserializeOrder()
+        {
+        return ExternalizableHelper.fromBinary(binOrder, context);
+        }
+
+    @Benchmark
+    public Binary serializeDog()
+        {
+        return ExternalizableHelper.toBinary(dog, context);
+        }
+
+    @Benchmark
+    public Object deserializeDog()
+        {
+        return ExternalizableHelper.fromBinary(binDog, context);
+        }
+
+    // ----- hand-written serializers ---------------------------------------
+
+    @Benchmark
+    public Binary serializeManualOrder()
+        {
+        return ExternalizableHelper.toBinary(manualOrder, context);
+        }
+
+    @Benchmark
+    public Object deserializeManualOrder()
+        {
+        return ExternalizableHelper.fromBinary(binManualOrder, context);
+        }
+
+    // ----- Java serialization ---------------------------------------------
+
+    @Benchmark
+    public byte[] javaSerializeOrder() throws IOException
+        {
+        return javaSerialize(order);
+        }
+
+    @Benchmark
+    public Object javaDeserializeOrder() throws IOException, ClassNotFoundException
+        {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(abJavaOrder)))
+            {
+            return in.readObject();
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private static byte[] javaSerialize(Object o) throws IOException
+        {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+            {
+            out.writeObject(o);
+            }
+        return bytes.toByteArray();
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The number of lines of each order.
+     */
+    @Param({"1", "16"})
+    public int lineCount;
+
+    private SimplePofContext context;
+
+    private Order order;
+
+    private ManualOrder manualOrder;
+
+    private Dog dog;
+
+    private Binary binOrder;
+
+    private Binary binManualOrder;
+
+    private Binary binDog;
+
+    private byte[] abJavaOrder;
+    }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.benchmarks;
+
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofWriter;
+import com.tangosol.io.pof.PortableObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The hand-written {@link PortableObject} equivalent of {@link Order}, used as
+ * the baseline for the generated serialization code.
+ *
+ * @author Gunnar Hillert
+ */
+public class ManualOrder
+        implements PortableObject
+    {
+    public ManualOrder()
+        {
+        }
+
+    public ManualOrder(long id, String customer, String currency, double total, int priority, boolean express,
+                       long createdMillis, List<ManualOrderLine> lines, Map<String, String> attributes)
+        {
+        this.id            = id;
+        this.customer      = customer;
+        this.currency      = currency;
+        this.total         = total;
+        this.priority      = priority;
+        this.express       = express;
+        this.createdMillis = createdMillis;
+        this.lines         = lines;
+        this.attributes    = attributes;
+        }
+
+    public long getId()
+        {
+        return id;
+        }
+
+    // ----- PortableObject interface ---------------------------------------
+
+    @Override
+    public void readExternal(PofReader in) throws IOException
+        {
+        id            = in.readLong(0);
+        customer      = in.readString(1);
+        currency      = in.readString(2);
+        total         = in.readDouble(3);
+        priority      = in.readInt(4);
+        express       = in.readBoolean(5);
+        createdMillis = in.readLong(6);
+        lines         = in.readCollection(7, new ArrayList<>());
+        attributes    = in.readMap(8, new HashMap<>());
+        }
+
+    @Override
+    public void writeExternal(PofWriter out) throws IOException
+        {
+        out.writeLong(0, id);
+        out.writeString(1, customer);
+        out.writeString(2, currency);
+        out.writeDouble(3, total);
+        out.writeInt(4, priority);
+        out.writeBoolean(5, express);
+        out.writeLong(6, createdMillis);
+        out.writeCollection(7, lines);
+        out.writeMap(8, attributes);
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    private long id;
+
+    private String customer;
+
+    private String currency;
+
+    private double total;
+
+    private int priority;
+
+    private boolean express;
+
+    private long createdMillis;
+
+    private List<ManualOrderLine> lines;
+
+    private Map<String, String> attributes;
+    }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.benchmarks;
+
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofWriter;
+import com.tangosol.io.pof.PortableObject;
+
+import java.io.IOException;
+
+/**
+ * The hand-written {@link PortableObject} equivalent of {@link OrderLine}.
+ *
+ * @author Gunnar Hillert
+ */
+public class ManualOrderLine
+        implements PortableObject
+    {
+    public ManualOrderLine()
+        {
+        }
+
+    public ManualOrderLine(String sku, int quantity, double price)
+        {
+        this.sku      = sku;
+        this.quantity = quantity;
+        this.price    = price;
+        }
+
+    // ----- PortableObject interface ---------------------------------------
+
+    @Override
+    public void readExternal(PofReader in) throws IOException
+        {
+        sku      = in.readString(0);
+        quantity = in.readInt(1);
+        price    = in.readDouble(2);
+        }
+
+    @Override
+    public void writeExternal(PofWriter out) throws IOException
+        {
+        out.writeString(0, sku);
+        out.writeInt(1, quantity);
+        out.writeDouble(2, price);
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    private String sku;
+
+    private int quantity;
+
+    private double price;
+    }
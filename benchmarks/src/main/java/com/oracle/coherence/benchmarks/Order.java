@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.benchmarks;
+
+import com.tangosol.io.pof.schema.annotation.Portable;
+import com.tangosol.io.pof.schema.annotation.PortableType;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A synthetic portable type with a mix of primitive, string and collection
+ * properties, whose serialization code is generated by the plugin. It is also
+ * {@link Serializable}, so that the same instances can be used as the Java
+ * serialization baseline.
+ *
+ * @author Gunnar Hillert
+ */
+@PortableType(id = 1001)
+public class Order
+        implements Serializable
+    {
+    public Order()
+        {
+        }
+
+    public Order(long id, String customer, String currency, double total, int priority, boolean express,
+                 long createdMillis, List<OrderLine> lines, Map<String, String> attributes)
+        {
+        this.id            = id;
+        this.customer      = customer;
+        this.currency      = currency;
+        this.total         = total;
+        this.priority      = priority;
+        this.express       = express;
+        this.createdMillis = createdMillis;
+        this.lines         = lines;
+        this.attributes    = attributes;
+        }
+
+    public long getId()
+        {
+        return id;
+        }
+
+    public List<OrderLine> getLines()
+        {
+        return lines;
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    @Portable
+    private long id;
+
+    @Portable
+    private String customer;
+
+    @Portable
+    private String currency;
+
+    @Portable
+    private double total;
+
+    @Portable
+    private int priority;
+
+    @Portable
+    private boolean express;
+
+    @Portable
+    private long createdMillis;
+
+    @Portable
+    private List<OrderLine> lines;
+
+    @Portable
+    private Map<String, String> attributes;
+    }
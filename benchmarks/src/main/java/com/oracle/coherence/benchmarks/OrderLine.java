@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.benchmarks;
+
+import com.tangosol.io.pof.schema.annotation.Portable;
+import com.tangosol.io.pof.schema.annotation.PortableType;
+
+import java.io.Serializable;
+
+/**
+ * A line of an {@link Order}, whose serialization code is generated by the plugin.
+ *
+ * @author Gunnar Hillert
+ */
+@PortableType(id = 1002)
+public class OrderLine
+        implements Serializable
+    {
+    public OrderLine()
+        {
+        }
+
+    public OrderLine(String sku, int quantity, double price)
+        {
+        this.sku      = sku;
+        this.quantity = quantity;
+        this.price    = price;
+        }
+
+    public String getSku()
+        {
+        return sku;
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    @Portable
+    private String sku;
+
+    @Portable
+    private int quantity;
+
+    @Portable
+    private double price;
+    }
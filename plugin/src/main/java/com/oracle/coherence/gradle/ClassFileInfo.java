@@ -0,0 +1,736 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lightweight, read-only view of a class file. Only the parts of the class file
+ * that are needed by the plugin are retained, which makes it considerably cheaper
+ * than a full ASM parse.
+ *
+ * @author Gunnar Hillert
+ */
+final class ClassFileInfo
+    {
+    private ClassFileInfo(int access, String className, String superName, List<String> interfaces,
+                          int[] anPortableType, List<FieldInfo> fields)
+        {
+        this.access       = access;
+        this.className    = className;
+        this.superName    = superName;
+        this.interfaces   = interfaces;
+        this.portableType = anPortableType != null;
+        this.typeId       = anPortableType == null ? -1 : anPortableType[0];
+        this.typeVersion  = anPortableType == null ? -1 : anPortableType[1];
+        this.fields       = fields;
+        }
+
+    // ----- factory methods ------------------------------------------------
+
+    /**
+     * Parse the specified class file.
+     *
+     * @param classFile  the class file to parse
+     *
+     * @return the parsed {@link ClassFileInfo}
+     *
+     * @throws IOException if the class file cannot be read or is malformed
+     */
+    static ClassFileInfo parse(Path classFile) throws IOException
+        {
+        return parse(Files.readAllBytes(classFile));
+        }
+
+    /**
+     * Parse the specified class file bytes.
+     * <p>
+     * The constant pool is always checked for the {@code @PortableType}
+     * descriptor first. If it is absent, the class cannot be a portable type
+     * and only its name, super class and interfaces are parsed; the returned
+     * {@link ClassFileInfo} then reports no fields.
+     *
+     * @param abClass  the class file bytes
+     *
+     * @return the parsed {@link ClassFileInfo}
+     *
+     * @throws IOException if the class file is malformed
+     */
+    static ClassFileInfo parse(byte[] abClass) throws IOException
+        {
+        try
+            {
+            ByteBuffer   buf  = ByteBuffer.wrap(abClass);
+            ConstantPool pool = new ConstantPool(buf);
+            buf.position(pool.getEnd());
+
+            int    nAccess    = buf.getShort() & 0xFFFF;
+            String sClassName = pool.getClassName(buf.getShort() & 0xFFFF);
+            String sSuperName = pool.getClassName(buf.getShort() & 0xFFFF);
+
+            int          cInterfaces    = buf.getShort() & 0xFFFF;
+            List<String> listInterfaces = new ArrayList<>(cInterfaces);
+            for (int i = 0; i < cInterfaces; i++)
+                {
+                listInterfaces.add(pool.getClassName(buf.getShort() & 0xFFFF));
+                }
+
+            if (!pool.containsPortableTypeDescriptor())
+                {
+                return new ClassFileInfo(nAccess, sClassName, sSuperName, Collections.unmodifiableList(listInterfaces),
+                                         null, Collections.emptyList());
+                }
+
+            int             cFields    = buf.getShort() & 0xFFFF;
+            List<FieldInfo> listFields = new ArrayList<>(cFields);
+            for (int i = 0; i < cFields; i++)
+                {
+                int    nFieldAccess = buf.getShort() & 0xFFFF;
+                String sName        = pool.getUtf8(buf.getShort() & 0xFFFF);
+                String sDescriptor  = pool.getUtf8(buf.getShort() & 0xFFFF);
+                String sSignature   = null;
+                int    cAttributes  = buf.getShort() & 0xFFFF;
+                for (int j = 0; j < cAttributes; j++)
+                    {
+                    String sAttribute = pool.getUtf8(buf.getShort() & 0xFFFF);
+                    int    cbValue    = buf.getInt();
+                    if (SIGNATURE.equals(sAttribute))
+                        {
+                        sSignature = pool.getUtf8(buf.getShort() & 0xFFFF);
+                        }
+                    else
+                        {
+                        skip(buf, cbValue);
+                        }
+                    }
+                listFields.add(new FieldInfo(nFieldAccess, sName, sDescriptor, sSignature));
+                }
+
+            int cMethods = buf.getShort() & 0xFFFF;
+            for (int i = 0; i < cMethods; i++)
+                {
+                skip(buf, 6);
+                skipAttributes(buf);
+                }
+
+            int[] anPortableType = null;
+            int   cAttributes    = buf.getShort() & 0xFFFF;
+            for (int i = 0; i < cAttributes; i++)
+                {
+                String sName   = pool.getUtf8(buf.getShort() & 0xFFFF);
+                int    cbValue = buf.getInt();
+                if (RUNTIME_VISIBLE_ANNOTATIONS.equals(sName) || RUNTIME_INVISIBLE_ANNOTATIONS.equals(sName))
+                    {
+                    int[] an = readPortableType(buf, pool);
+                    anPortableType = an == null ? anPortableType : an;
+                    }
+                else
+                    {
+                    skip(buf, cbValue);
+                    }
+                }
+
+            return new ClassFileInfo(nAccess, sClassName, sSuperName, Collections.unmodifiableList(listInterfaces),
+                                     anPortableType, Collections.unmodifiableList(listFields));
+            }
+        catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e)
+            {
+            throw new IOException("Malformed class file.", e);
+            }
+        }
+
+    /**
+     * Return {@code true} if the specified class file may be a portable type.
+     * Only the constant pool is scanned for the {@code @PortableType} descriptor,
+     * without decoding any of its entries, which allows the vast majority of
+     * classes to be rejected before they are parsed.
+     *
+     * @param abClass  the class file bytes
+     *
+     * @return {@code false} if the class is definitely not a portable type
+     *
+     * @throws IOException if the class file is malformed
+     */
+    static boolean mayBePortableType(byte[] abClass) throws IOException
+        {
+        try
+            {
+            return mayBePortableType(ByteBuffer.wrap(abClass));
+            }
+        catch (BufferUnderflowException e)
+            {
+            throw new IOException("Malformed class file.", e);
+            }
+        }
+
+    /**
+     * Return {@code true} if the class file in the specified buffer may be a
+     * portable type. The buffer only needs to hold the beginning of the class
+     * file up to the end of its constant pool, which allows a compressed class
+     * file to be checked before it is inflated in full.
+     *
+     * @param buf  the buffer holding the class file, starting at position zero
+     *
+     * @return {@code false} if the class is definitely not a portable type
+     *
+     * @throws BufferUnderflowException if the buffer ends before the constant pool
+     * @throws IOException if the class file is malformed
+     */
+    static boolean mayBePortableType(ByteBuffer buf) throws IOException
+        {
+        try
+            {
+            return new ConstantPool(buf).containsPortableTypeDescriptor();
+            }
+        catch (IllegalArgumentException e)
+            {
+            throw new IOException("Malformed class file.", e);
+            }
+        }
+
+    // ----- accessors ------------------------------------------------------
+
+    /**
+     * Return the internal name of the class, e.g. {@code petstore/Dog}.
+     *
+     * @return the internal name of the class
+     */
+    String getClassName()
+        {
+        return className;
+        }
+
+    /**
+     * Return the internal name of the super class, or {@code null} for {@code java/lang/Object}.
+     *
+     * @return the internal name of the super class
+     */
+    String getSuperName()
+        {
+        return superName;
+        }
+
+    /**
+     * Return the internal names of the implemented interfaces.
+     *
+     * @return the internal names of the implemented interfaces
+     */
+    List<String> getInterfaces()
+        {
+        return interfaces;
+        }
+
+    /**
+     * Return {@code true} if the class is declared {@code final}.
+     *
+     * @return {@code true} if the class is final
+     */
+    boolean isFinal()
+        {
+        return (access & ACC_FINAL) != 0;
+        }
+
+    /**
+     * Return {@code true} if the class is an enum.
+     *
+     * @return {@code true} if the class is an enum
+     */
+    boolean isEnum()
+        {
+        return (access & ACC_ENUM) != 0;
+        }
+
+    /**
+     * Return {@code true} if the class is annotated with {@code @PortableType}.
+     *
+     * @return {@code true} if the class is a portable type
+     */
+    boolean isPortableType()
+        {
+        return portableType;
+        }
+
+    /**
+     * Return the POF type identifier of the class, as declared by its {@code @PortableType} annotation.
+     *
+     * @return the type identifier, or {@code -1} if the class is not a portable type
+     */
+    int getTypeId()
+        {
+        return typeId;
+        }
+
+    /**
+     * Return the version of the class, as declared by its {@code @PortableType} annotation.
+     *
+     * @return the type version, or {@code -1} if the class is not a portable type
+     */
+    int getTypeVersion()
+        {
+        return typeVersion;
+        }
+
+    /**
+     * Return the fields declared by the class.
+     *
+     * @return the declared fields
+     */
+    List<FieldInfo> getFields()
+        {
+        return fields;
+        }
+
+    /**
+     * Return the internal names of all classes this class depends on for the
+     * purpose of POF instrumentation, i.e. its super class and the types of its
+     * fields, including the type arguments of generic fields, as the element
+     * types of collection properties affect the generated code.
+     *
+     * @return the internal names of the referenced classes
+     */
+    Set<String> getReferencedClassNames()
+        {
+        Set<String> setNames = new LinkedHashSet<>();
+        if (superName != null)
+            {
+            setNames.add(superName);
+            }
+        for (FieldInfo field : fields)
+            {
+            String sType = field.getClassName();
+            if (sType != null)
+                {
+                setNames.add(sType);
+                }
+            if (field.getSignature() != null)
+                {
+                Matcher matcher = CLASS_TYPE.matcher(field.getSignature());
+                while (matcher.find())
+                    {
+                    setNames.add(matcher.group(1));
+                    }
+                }
+            }
+        return setNames;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private static void skip(ByteBuffer buf, int cb)
+        {
+        if (cb < 0 || cb > buf.remaining())
+            {
+            throw new BufferUnderflowException();
+            }
+        buf.position(buf.position() + cb);
+        }
+
+    private static void skipAttributes(ByteBuffer buf)
+        {
+        int cAttributes = buf.getShort() & 0xFFFF;
+        for (int i = 0; i < cAttributes; i++)
+            {
+            skip(buf, 2);
+            skip(buf, buf.getInt());
+            }
+        }
+
+    /**
+     * Read the annotations of an annotations attribute and return the type identifier and
+     * version of the {@code @PortableType} annotation, or {@code null} if there is none.
+     */
+    private static int[] readPortableType(ByteBuffer buf, ConstantPool pool)
+        {
+        int[] anPortableType = null;
+        int   cAnnotations   = buf.getShort() & 0xFFFF;
+        for (int i = 0; i < cAnnotations; i++)
+            {
+            if (!PORTABLE_TYPE_DESCRIPTOR.equals(pool.getUtf8(buf.getShort() & 0xFFFF)))
+                {
+                skipElementValuePairs(buf);
+                continue;
+                }
+
+            anPortableType = new int[] {-1, DEFAULT_TYPE_VERSION};
+            int cPairs = buf.getShort() & 0xFFFF;
+            for (int j = 0; j < cPairs; j++)
+                {
+                String sElement = pool.getUtf8(buf.getShort() & 0xFFFF);
+                int    nTag     = buf.get(buf.position()) & 0xFF;
+                int    nElement = "id".equals(sElement) ? 0 : "version".equals(sElement) ? 1 : -1;
+                if (nElement >= 0 && nTag == 'I')
+                    {
+                    buf.get();
+                    anPortableType[nElement] = pool.getInt(buf.getShort() & 0xFFFF);
+                    }
+                else
+                    {
+                    skipElementValue(buf);
+                    }
+                }
+            }
+        return anPortableType;
+        }
+
+    private static void skipElementValuePairs(ByteBuffer buf)
+        {
+        int cPairs = buf.getShort() & 0xFFFF;
+        for (int i = 0; i < cPairs; i++)
+            {
+            skip(buf, 2);
+            skipElementValue(buf);
+            }
+        }
+
+    private static void skipElementValue(ByteBuffer buf)
+        {
+        int nTag = buf.get() & 0xFF;
+        switch (nTag)
+            {
+            case 'e':
+                skip(buf, 4);
+                break;
+            case '@':
+                skip(buf, 2);
+                skipElementValuePairs(buf);
+                break;
+            case '[':
+                int cValues = buf.getShort() & 0xFFFF;
+                for (int i = 0; i < cValues; i++)
+                    {
+                    skipElementValue(buf);
+                    }
+                break;
+            default:
+                skip(buf, 2);
+            }
+        }
+
+    // ----- inner class: ConstantPool --------------------------------------
+
+    /**
+     * The constant pool of a class file. Only the offsets of the entries are
+     * recorded while the pool is read; {@code CONSTANT_Utf8} entries are decoded
+     * on demand.
+     */
+    private static final class ConstantPool
+        {
+        ConstantPool(ByteBuffer bufClass) throws IOException
+            {
+            ByteBuffer buf = bufClass.duplicate().order(ByteOrder.BIG_ENDIAN);
+            buf.position(0);
+            if (buf.getInt() != MAGIC)
+                {
+                throw new IOException("Not a class file.");
+                }
+            buf.getShort(); // minor version
+            buf.getShort(); // major version
+
+            int     cConstants    = buf.getShort() & 0xFFFF;
+            int[]   anOffsets     = new int[cConstants];
+            boolean fPortableType = false;
+            for (int i = 1; i < cConstants; i++)
+                {
+                int nTag = buf.get() & 0xFF;
+                anOffsets[i] = buf.position();
+                switch (nTag)
+                    {
+                    case CONSTANT_UTF8:
+                        int cb = buf.getShort() & 0xFFFF;
+                        fPortableType = fPortableType || matches(buf, buf.position(), cb);
+                        skip(buf, cb);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        skip(buf, 8);
+                        i++;
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        skip(buf, 4);
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        skip(buf, 3);
+                        break;
+                    case CONSTANT_CLASS:
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        skip(buf, 2);
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + nTag + ".");
+                    }
+                }
+
+            this.buf          = buf;
+            this.anOffsets    = anOffsets;
+            this.end          = buf.position();
+            this.portableType = fPortableType;
+            }
+
+        /**
+         * Return the offset of the first byte following the constant pool.
+         */
+        int getEnd()
+            {
+            return end;
+            }
+
+        /**
+         * Return {@code true} if the pool contains the {@code @PortableType} descriptor.
+         */
+        boolean containsPortableTypeDescriptor()
+            {
+            return portableType;
+            }
+
+        /**
+         * Return the decoded {@code CONSTANT_Utf8} entry at the specified index.
+         */
+        String getUtf8(int nIndex)
+            {
+            int    nOffset = anOffsets[nIndex];
+            byte[] abUtf8  = new byte[2 + (buf.getShort(nOffset) & 0xFFFF)];
+            for (int i = 0; i < abUtf8.length; i++)
+                {
+                abUtf8[i] = buf.get(nOffset + i);
+                }
+            try
+                {
+                return new DataInputStream(new ByteArrayInputStream(abUtf8)).readUTF();
+                }
+            catch (IOException e)
+                {
+                throw new IllegalArgumentException("Malformed CONSTANT_Utf8 entry " + nIndex + ".", e);
+                }
+            }
+
+        /**
+         * Return the value of the {@code CONSTANT_Integer} entry at the specified index.
+         */
+        int getInt(int nIndex)
+            {
+            return buf.getInt(anOffsets[nIndex]);
+            }
+
+        /**
+         * Return the internal class name of the {@code CONSTANT_Class} entry at
+         * the specified index, or {@code null} if the index is zero.
+         */
+        String getClassName(int nIndex)
+            {
+            if (nIndex == 0)
+                {
+                return null;
+                }
+            return getUtf8(buf.getShort(anOffsets[nIndex]) & 0xFFFF);
+            }
+
+        private static boolean matches(ByteBuffer buf, int nOffset, int cb)
+            {
+            if (cb != PORTABLE_TYPE_DESCRIPTOR_BYTES.length || nOffset + cb > buf.limit())
+                {
+                return false;
+                }
+            for (int i = cb - 1; i >= 0; i--)
+                {
+                if (buf.get(nOffset + i) != PORTABLE_TYPE_DESCRIPTOR_BYTES[i])
+                    {
+                    return false;
+                    }
+                }
+            return true;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final ByteBuffer buf;
+
+        private final int[] anOffsets;
+
+        private final int end;
+
+        private final boolean portableType;
+        }
+
+    // ----- inner class: FieldInfo -----------------------------------------
+
+    /**
+     * Lightweight view of a field declared by a class.
+     */
+    static final class FieldInfo
+        {
+        FieldInfo(int access, String name, String descriptor, String signature)
+            {
+            this.access     = access;
+            this.name       = name;
+            this.descriptor = descriptor;
+            this.signature  = signature;
+            }
+
+        /**
+         * Return the name of the field.
+         *
+         * @return the name of the field
+         */
+        String getName()
+            {
+            return name;
+            }
+
+        /**
+         * Return the field descriptor, e.g. {@code Ljava/lang/String;}.
+         *
+         * @return the field descriptor
+         */
+        String getDescriptor()
+            {
+            return descriptor;
+            }
+
+        /**
+         * Return the generic signature of the field, e.g. {@code Ljava/util/List<Ljava/lang/String;>;}.
+         *
+         * @return the generic signature, or {@code null} if the field's type is not generic
+         */
+        String getSignature()
+            {
+            return signature;
+            }
+
+        /**
+         * Return {@code true} if the field is serialized, i.e. if it is neither static,
+         * transient nor synthetic.
+         *
+         * @return {@code true} if the field is serialized
+         */
+        boolean isSerialized()
+            {
+            return (access & (ACC_STATIC | ACC_TRANSIENT | ACC_SYNTHETIC)) == 0;
+            }
+
+        /**
+         * Return the internal name of the field's (element) class, or {@code null}
+         * if the field is of a primitive type.
+         *
+         * @return the internal name of the field's class
+         */
+        String getClassName()
+            {
+            int nStart = descriptor.lastIndexOf('[') + 1;
+            return descriptor.charAt(nStart) == 'L'
+                   ? descriptor.substring(nStart + 1, descriptor.length() - 1)
+                   : null;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final int access;
+
+        private final String name;
+
+        private final String descriptor;
+
+        private final String signature;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The class types of a generic signature, e.g. {@code Ljava/util/List<} and {@code Lpetstore/Dog;}.
+     */
+    private static final Pattern CLASS_TYPE = Pattern.compile("L([^;<>.]+)[;<]");
+
+    /**
+     * The descriptor of the {@code @PortableType} annotation.
+     */
+    static final String PORTABLE_TYPE_DESCRIPTOR = "Lcom/tangosol/io/pof/schema/annotation/PortableType;";
+
+    /**
+     * The {@link #PORTABLE_TYPE_DESCRIPTOR} as stored in a {@code CONSTANT_Utf8} entry.
+     */
+    private static final byte[] PORTABLE_TYPE_DESCRIPTOR_BYTES =
+            PORTABLE_TYPE_DESCRIPTOR.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of a portable type that does not declare one.
+     */
+    private static final int DEFAULT_TYPE_VERSION = 0;
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private static final String RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+
+    private static final String SIGNATURE = "Signature";
+
+    private static final int ACC_STATIC    = 0x0008;
+    private static final int ACC_FINAL     = 0x0010;
+    private static final int ACC_TRANSIENT = 0x0080;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_ENUM      = 0x4000;
+
+    private static final int CONSTANT_UTF8                = 1;
+    private static final int CONSTANT_INTEGER             = 3;
+    private static final int CONSTANT_FLOAT               = 4;
+    private static final int CONSTANT_LONG                = 5;
+    private static final int CONSTANT_DOUBLE              = 6;
+    private static final int CONSTANT_CLASS               = 7;
+    private static final int CONSTANT_STRING              = 8;
+    private static final int CONSTANT_FIELDREF            = 9;
+    private static final int CONSTANT_METHODREF           = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE       = 12;
+    private static final int CONSTANT_METHOD_HANDLE       = 15;
+    private static final int CONSTANT_METHOD_TYPE         = 16;
+    private static final int CONSTANT_DYNAMIC             = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC      = 18;
+    private static final int CONSTANT_MODULE              = 19;
+    private static final int CONSTANT_PACKAGE             = 20;
+
+    // ----- data members ---------------------------------------------------
+
+    private final int access;
+
+    private final String className;
+
+    private final String superName;
+
+    private final List<String> interfaces;
+
+    private final boolean portableType;
+
+    private final int typeId;
+
+    private final int typeVersion;
+
+    private final List<FieldInfo> fields;
+    }
@@ -7,6 +7,8 @@
 package com.oracle.coherence.gradle;
 
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 
 /**
@@ -18,6 +20,104 @@ public abstract class CoherenceExtension
 
     public abstract Property<Boolean> getInstrumentTestClasses();
 
+    /**
+     * The names of the source sets whose classes are instrumented, each by its own task, e.g.
+     * {@code coherencePofMain}. Defaults to {@code main}, and {@code test} if
+     * {@link #getInstrumentTestClasses() instrumentTestClasses} is enabled.
+     */
+    public abstract ListProperty<String> getSourceSets();
+
+    /**
+     * The maximum number of dependency jars and class directories that are scanned for
+     * portable types concurrently. Defaults to the number of available processors.
+     */
+    public abstract Property<Integer> getScanParallelism();
+
+    /**
+     * The version of {@code com.oracle.coherence.ce:coherence} used to instrument the classes.
+     * Defaults to {@code 22.09}.
+     */
+    public abstract Property<String> getCoherenceVersion();
+
+    /**
+     * The names of the configurations whose dependencies are scanned for portable types.
+     * Defaults to the runtime classpath of the instrumented source set, e.g. {@code runtimeClasspath}.
+     */
+    public abstract ListProperty<String> getSchemaConfigurations();
+
+    /**
+     * Patterns of the dependencies to scan for portable types, e.g. {@code com.mycompany:*}.
+     * External modules are matched by {@code group[:module[:version]]} patterns, project
+     * dependencies by their path, e.g. {@code :model}. If empty, all dependencies are scanned.
+     */
+    public abstract ListProperty<String> getSchemaIncludes();
+
+    /**
+     * Patterns of the dependencies that are never scanned for portable types, in the same
+     * format as {@link #getSchemaIncludes()}.
+     */
+    public abstract ListProperty<String> getSchemaExcludes();
+
+    /**
+     * Whether to fail the build if a portable type references a class from a dependency
+     * that is not scanned for portable types. Defaults to {@code false}.
+     */
+    public abstract Property<Boolean> getStrictSchemaClasspath();
+
+    /**
+     * Whether to add the element types of {@code List}, {@code Set} and {@code Map} properties, as declared by
+     * their type arguments, to the schema, so that their elements are serialized with the uniform encoding.
+     * As this changes the serialized form of these properties, it has to be enabled for all clients and servers
+     * exchanging the types at the same time. Defaults to {@code false}.
+     */
+    public abstract Property<Boolean> getInferElementTypes();
+
+    /**
+     * Whether to add only those portable types of the dependencies to the schema that are reachable from the
+     * portable types of the project through their fields and super classes, instead of all portable types found
+     * on the classpath. Defaults to {@code false}.
+     */
+    public abstract Property<Boolean> getLazySchemaResolution();
+
+    /**
+     * Whether to instrument the portable types of the dependency jars on the runtime classpaths
+     * of all source sets using a cacheable artifact transform. Defaults to {@code false}.
+     */
+    public abstract Property<Boolean> getInstrumentDependencies();
+
+    /**
+     * Whether to instrument the portable types with a Java agent attached to the {@code Test} tasks
+     * when the tests load them, instead of rewriting the classes at build time. Intended for fast
+     * edit-test loops only, as the classes of the source sets, and therefore the jars, are not
+     * instrumented in this mode. Defaults to the Gradle property {@code coherence.pof.runtimeInstrumentation},
+     * or {@code false}.
+     */
+    public abstract Property<Boolean> getRuntimeInstrumentation();
+
+    /**
+     * The relative growth of the serialized size of a portable type, compared to the baseline, that is
+     * reported by the {@code coherencePofSizeReport} task, e.g. {@code 0.25} for 25%. Defaults to {@code 0.1}.
+     */
+    public abstract Property<Double> getSizeGrowthThreshold();
+
+    /**
+     * The serialized size baseline of the {@code coherencePofSizeReport} task. Defaults to
+     * {@code pof-size-baseline.properties} in the project directory.
+     */
+    public abstract RegularFileProperty getSizeBaselineFile();
+
+    /**
+     * Whether the {@code coherencePofLint} task fails if it reports a warning, e.g. on CI. Defaults to
+     * the Gradle property {@code coherence.pof.failOnLintWarnings}, or {@code false}.
+     */
+    public abstract Property<Boolean> getFailOnLintWarnings();
+
+    /**
+     * The maximum number of portable types in a class hierarchy before it is reported by the
+     * {@code coherencePofLint} task. Defaults to {@code 3}.
+     */
+    public abstract Property<Integer> getLintMaxHierarchyDepth();
+
     abstract DirectoryProperty getTestClassesDirectory();
 
     abstract DirectoryProperty getMainClassesDirectory();
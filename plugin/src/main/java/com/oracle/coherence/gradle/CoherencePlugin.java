@@ -9,7 +9,26 @@ package com.oracle.coherence.gradle;
 import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
-import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.dsl.DependencyHandler;
+import org.gradle.api.artifacts.type.ArtifactTypeDefinition;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.testing.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Gunnar Hillert
@@ -19,6 +38,26 @@ public class CoherencePlugin implements Plugin<Project>
 
     private static final String POF_TASK_NAME = "coherencePof";
 
+    private static final String COHERENCE_MODULE = "com.oracle.coherence.ce:coherence";
+
+    private static final String MAX_SHARED_JARS_PROPERTY = "coherence.pof.maxSharedJars";
+
+    private static final String MAX_SHARED_CLASS_NAMES_PROPERTY = "coherence.pof.maxSharedClassNames";
+
+    private static final String RUNTIME_INSTRUMENTATION_PROPERTY = "coherence.pof.runtimeInstrumentation";
+
+    private static final String SCHEMA_TASK_NAME = "coherenceSchema";
+
+    private static final String POF_AGENT_TASK_NAME = "coherencePofAgent";
+
+    private static final String POF_SIZE_REPORT_TASK_NAME = "coherencePofSizeReport";
+
+    private static final String UPDATE_SIZE_BASELINE_PROPERTY = "coherence.pof.updateSizeBaseline";
+
+    private static final String POF_LINT_TASK_NAME = "coherencePofLint";
+
+    private static final String FAIL_ON_LINT_WARNINGS_PROPERTY = "coherence.pof.failOnLintWarnings";
+
     private static final int MINIMAL_SUPPORTED_GRADLE_VERSION = 7;
     @Override
     public void apply(Project project)
@@ -37,45 +76,409 @@ public class CoherencePlugin implements Plugin<Project>
             throw new GradleException("The Java Gradle plugin has not been applied.");
             }
 
-        project.getExtensions().create(POF_TASK_NAME, CoherenceExtension.class);
-        project.getTasks().register(POF_TASK_NAME, CoherenceTask.class, coherencePofTask ->
+        final CoherenceExtension extension = project.getExtensions().create(POF_TASK_NAME, CoherenceExtension.class);
+        extension.getSourceSets().convention(extension.getInstrumentTestClasses()
+                .map(fInstrument -> fInstrument
+                                    ? Arrays.asList(SourceSet.MAIN_SOURCE_SET_NAME, SourceSet.TEST_SOURCE_SET_NAME)
+                                    : Collections.singletonList(SourceSet.MAIN_SOURCE_SET_NAME))
+                .orElse(Collections.singletonList(SourceSet.MAIN_SOURCE_SET_NAME)));
+
+        // Coherence is resolved from a detached configuration, so that the version used for instrumentation can be
+        // configured independently of the plugin release and is never loaded by the build's own classloader
+        final Configuration coherenceClasspath = project.getConfigurations().detachedConfiguration();
+        coherenceClasspath.defaultDependencies(dependencies -> dependencies.add(project.getDependencies().create(
+                COHERENCE_MODULE + ":" + extension.getCoherenceVersion().getOrElse(CoherenceTask.DEFAULT_COHERENCE_VERSION))));
+
+        // The schema fragments of dependency jars are shared by the tasks of all projects of the build
+        final Provider<SchemaFragmentService> schemaFragmentService = project.getGradle().getSharedServices()
+                .registerIfAbsent(SchemaFragmentService.NAME, SchemaFragmentService.class, spec ->
+                    {
+                    spec.getParameters().getMaxEntries().set(project.getProviders().gradleProperty(MAX_SHARED_JARS_PROPERTY)
+                            .map(Integer::valueOf).orElse(SchemaFragmentService.DEFAULT_MAX_ENTRIES));
+                    spec.getParameters().getMaxClassNames().set(project.getProviders().gradleProperty(MAX_SHARED_CLASS_NAMES_PROPERTY)
+                            .map(Integer::valueOf).orElse(SchemaFragmentService.DEFAULT_MAX_CLASS_NAMES));
+                    });
+
+        // Dependency jars with portable types are instrumented by an artifact transform, if enabled, whose results
+        // are kept in the transforms cache shared by all projects and builds on the machine
+        final DependencyHandler dependencies = project.getDependencies();
+        dependencies.getAttributesSchema().attribute(InstrumentJarTransform.INSTRUMENTED_ATTRIBUTE);
+        dependencies.getArtifactTypes().maybeCreate(ArtifactTypeDefinition.JAR_TYPE).getAttributes()
+                .attribute(InstrumentJarTransform.INSTRUMENTED_ATTRIBUTE, false);
+        dependencies.registerTransform(InstrumentJarTransform.class, spec ->
             {
+            spec.getFrom().attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.JAR_TYPE)
+                    .attribute(InstrumentJarTransform.INSTRUMENTED_ATTRIBUTE, false);
+            spec.getTo().attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.JAR_TYPE)
+                    .attribute(InstrumentJarTransform.INSTRUMENTED_ATTRIBUTE, true);
+            spec.getParameters().getCoherenceClasspath().from(coherenceClasspath);
+            spec.getParameters().getDebug().set(extension.getDebug().orElse(false));
+            });
+
+        final Provider<Directory> schemaCacheDirectory = project.getLayout().dir(project.provider(() ->
+                new File(project.getGradle().getGradleUserHomeDir(), "caches/coherence-pof/schema-fragments")));
+
+        extension.getRuntimeInstrumentation().convention(project.getProviders().gradleProperty(RUNTIME_INSTRUMENTATION_PROPERTY)
+                .map(Boolean::parseBoolean).orElse(false));
 
-            coherencePofTask.dependsOn("compileJava", "processResources");
+        // TODO At support for Scala and Groovy Projects
+
+        // Each source set is instrumented by its own task, e.g. coherencePofMain, so that the source sets have
+        // their own inputs, outputs and cache entries and are instrumented independently of each other
+        final SourceSetContainer sourceSets = project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+        final SourceSet          main       = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+        sourceSets.all(sourceSet ->
+            {
+            // the dependencies are scanned for portable types by a separate task, so that the instrumentation
+            // only has the fingerprint of their portable types as an input and reuses the scanned fragments
+            final TaskProvider<DependencySchemaTask> schemaTask = project.getTasks().register(getSchemaTaskName(sourceSet),
+                    DependencySchemaTask.class, task ->
+                {
+                task.setDescription("Scans the dependencies of the " + sourceSet.getName() + " classes for portable types.");
+                task.getClasspath().from(getSchemaClasspath(project, extension, sourceSet, true));
+                if (sourceSet != main)
+                    {
+                    // the portable types of the main source set are part of the schema of all other source sets
+                    task.getClasspath().from(main.getOutput().getClassesDirs());
+                    }
+                task.getSchemaFragmentService().set(schemaFragmentService);
+                task.usesService(schemaFragmentService);
+                task.getSchemaCacheDirectory().convention(schemaCacheDirectory);
 
-            final CoherenceExtension coherenceExtension = project.getExtensions().getByType(CoherenceExtension.class);
+                if (extension.getScanParallelism().isPresent())
+                    {
+                    task.getScanParallelism().set(extension.getScanParallelism());
+                    }
+
+                // with lazy schema resolution, the reachable dependency types depend on the project's classes
+                task.getLazySchemaResolution().set(extension.getLazySchemaResolution().orElse(false));
+                task.getClassesDirectory().set(task.getLazySchemaResolution().flatMap(fLazy -> fLazy
+                        ? getClassesDirectory(extension, sourceSet)
+                        : project.provider(() -> (Directory) null)));
+                });
+
+            project.getTasks().register(getPofTaskName(sourceSet), CoherenceTask.class, coherencePofTask ->
+                {
+
+                coherencePofTask.setDescription("Instruments the portable types of the " + sourceSet.getName() + " classes.");
+                coherencePofTask.dependsOn(sourceSet.getCompileJavaTaskName(), sourceSet.getProcessResourcesTaskName());
+                coherencePofTask.getSourceSetName().set(sourceSet.getName());
+                coherencePofTask.getPublishTypeRegistry().set(sourceSet == main);
+
+                coherencePofTask.getClasspath().from(schemaTask.map(DependencySchemaTask::getClasspath));
+                coherencePofTask.getClasspathSchemaFile().set(schemaTask.flatMap(DependencySchemaTask::getFingerprintFile));
+                coherencePofTask.getSchemaFragmentsDirectory().set(schemaTask.flatMap(DependencySchemaTask::getFragmentsDirectory));
+                coherencePofTask.getExcludedClasspath().from(coherencePofTask.getStrictSchemaClasspath()
+                        .flatMap(fStrict -> fStrict
+                                            ? getSchemaClasspath(project, extension, sourceSet, false)
+                                            : project.provider(Collections::<FileCollection>emptyList)));
+                coherencePofTask.getSchemaFragmentService().set(schemaFragmentService);
+                coherencePofTask.usesService(schemaFragmentService);
+
+                coherencePofTask.getClassesDirectory().convention(getClassesDirectory(extension, sourceSet));
+                coherencePofTask.getResourcesDirectories().add(project.provider(() -> sourceSet.getOutput().getResourcesDir()));
+
+                if (sourceSet != main)
+                    {
+                    coherencePofTask.getResourcesDirectories().add(project.provider(() -> main.getOutput().getResourcesDir()));
+                    }
+
+                final CoherenceExtension coherenceExtension = project.getExtensions().getByType(CoherenceExtension.class);
+
+                coherencePofTask.getCoherenceClasspath().from(coherenceClasspath);
+
+                if (coherenceExtension.getCoherenceVersion().isPresent())
+                    {
+                    coherencePofTask.getCoherenceVersion().set(coherenceExtension.getCoherenceVersion());
+                    }
+
+                if (coherenceExtension.getDebug().isPresent())
+                    {
+                    coherencePofTask.getDebug().set(coherenceExtension.getDebug().get());
+                    }
+
+                if (coherenceExtension.getStrictSchemaClasspath().isPresent())
+                    {
+                    coherencePofTask.getStrictSchemaClasspath().set(coherenceExtension.getStrictSchemaClasspath());
+                    }
+
+                if (coherenceExtension.getInferElementTypes().isPresent())
+                    {
+                    coherencePofTask.getInferElementTypes().set(coherenceExtension.getInferElementTypes());
+                    }
+
+                if (coherenceExtension.getLazySchemaResolution().isPresent())
+                    {
+                    coherencePofTask.getLazySchemaResolution().set(coherenceExtension.getLazySchemaResolution());
+                    }
+                });
+            });
+
+        final TaskProvider<Task> pofTask = project.getTasks().register(POF_TASK_NAME, task ->
+                task.setDescription("Instruments the portable types of all instrumented source sets."));
+
+        // The serialized size of the portable types is measured using the type registry of the main source set
+        final TaskProvider<CoherenceTask> mainPofTask = project.getTasks().named(getPofTaskName(main), CoherenceTask.class);
+        project.getTasks().register(POF_SIZE_REPORT_TASK_NAME, PofSizeReportTask.class, task ->
+            {
+            task.setDescription("Reports the POF serialized size of the portable types of the main classes.");
+            task.getClasspath().from(mainPofTask.flatMap(CoherenceTask::getOutputDirectory), main.getOutput().getResourcesDir(),
+                    main.getRuntimeClasspath().minus(main.getOutput()));
+            task.getTypeRegistry().set(mainPofTask.flatMap(mainTask -> mainTask.getOutputDirectory().file(PofTypeRegistry.REGISTRY_RESOURCE)));
+            task.getCoherenceClasspath().from(coherenceClasspath);
+            task.getUpdateBaseline().set(project.getProviders().gradleProperty(UPDATE_SIZE_BASELINE_PROPERTY)
+                    .map(Boolean::parseBoolean).orElse(false));
+            if (extension.getSizeGrowthThreshold().isPresent())
+                {
+                task.getSizeGrowthThreshold().set(extension.getSizeGrowthThreshold());
+                }
+            if (extension.getSizeBaselineFile().isPresent())
+                {
+                task.getBaselineFile().set(extension.getSizeBaselineFile());
+                }
+            });
 
-            if (coherenceExtension.getDebug().isPresent())
+        // The portable types of the instrumented source sets are linted from their compiled classes
+        extension.getFailOnLintWarnings().convention(project.getProviders().gradleProperty(FAIL_ON_LINT_WARNINGS_PROPERTY)
+                .map(Boolean::parseBoolean).orElse(false));
+        final TaskProvider<PofLintTask> lintTask = project.getTasks().register(POF_LINT_TASK_NAME, PofLintTask.class, task ->
+            {
+            task.setDescription("Reports performance anti-patterns of the portable types of all instrumented source sets.");
+            task.getFailOnWarning().set(extension.getFailOnLintWarnings());
+            if (extension.getLintMaxHierarchyDepth().isPresent())
                 {
-                coherencePofTask.getDebug().set(coherenceExtension.getDebug().get());
+                task.getMaxHierarchyDepth().set(extension.getLintMaxHierarchyDepth());
                 }
+            });
 
-            if (coherenceExtension.getMainClassesDirectory().isPresent())
+        // Replace the compiled classes of the instrumented source sets with the instrumented classes, so that the
+        // compileJava outputs are never modified and all consumers of the source set output (jar, test runtime
+        // classpath, compile classpath of other source sets, ...) pick up the instrumented classes.
+        // In runtime instrumentation mode, the compiled classes are used as they are and the portable types are
+        // instrumented by a Java agent attached to the Test tasks instead.
+        project.afterEvaluate(p ->
+            {
+            boolean fRuntimeInstrumentation = extension.getRuntimeInstrumentation().get();
+            for (String sSourceSet : extension.getSourceSets().get())
                 {
-                coherencePofTask.getMainClassesDirectory().set(coherenceExtension.getMainClassesDirectory().getAsFile());
+                SourceSet sourceSet = sourceSets.findByName(sSourceSet);
+                if (sourceSet == null)
+                    {
+                    throw new GradleException("The source set '" + sSourceSet + "' configured to be instrumented does not exist.");
+                    }
+
+                TaskProvider<CoherenceTask> sourceSetPofTask = project.getTasks().named(getPofTaskName(sourceSet), CoherenceTask.class);
+                if (!fRuntimeInstrumentation)
+                    {
+                    useInstrumentedClasses(project, sourceSet, sourceSetPofTask, sourceSetPofTask.flatMap(CoherenceTask::getOutputDirectory));
+                    }
+                pofTask.configure(task -> task.dependsOn(sourceSetPofTask));
+                lintTask.configure(task ->
+                    {
+                    task.getClassesDirectories().from(sourceSet.getJava().getClassesDirectory());
+                    task.getXmlSchemas().from(project.files(project.provider(() ->
+                            new File(sourceSet.getOutput().getResourcesDir(), "META-INF/schema.xml")))
+                            .builtBy(sourceSet.getProcessResourcesTaskName()));
+                    task.getClasspath().from(project.getConfigurations().getByName(sourceSet.getRuntimeClasspathConfigurationName()));
+                    });
                 }
 
-            if (coherenceExtension.getInstrumentTestClasses().isPresent())
+            if (fRuntimeInstrumentation)
                 {
-                coherencePofTask.dependsOn("compileTestJava", "processTestResources");
-                coherencePofTask.getInstrumentTestClasses().set(coherenceExtension.getInstrumentTestClasses());
+                project.getLogger().warn("Coherence POF runtime instrumentation is enabled for {}. The portable types are "
+                                         + "instrumented by a Java agent in the test JVMs and the classes of the source sets "
+                                         + "are not instrumented at build time.", project.getPath());
+                // tasks must not be registered while a task is configured, so the agent tasks are registered on
+                // demand by a rule, which also covers test tasks that are registered later, e.g. by other plugins
+                project.getTasks().addRule("Pattern: " + POF_AGENT_TASK_NAME + "<TestTask>: Prepares the Coherence POF "
+                                           + "agent for a Test task.", sTaskName ->
+                        registerAgentTask(project, extension, sTaskName, schemaFragmentService, schemaCacheDirectory));
+                project.getTasks().withType(Test.class).configureEach(test -> attachAgent(project, test));
                 }
 
-            if (coherenceExtension.getTestClassesDirectory().isPresent())
+            if (extension.getInstrumentDependencies().getOrElse(false))
                 {
-                coherencePofTask.getTestClassesDirectory().set(coherenceExtension.getTestClassesDirectory().getAsFile());
+                for (SourceSet sourceSet : sourceSets)
+                    {
+                    project.getConfigurations().getByName(sourceSet.getRuntimeClasspathConfigurationName())
+                            .getAttributes().attribute(InstrumentJarTransform.INSTRUMENTED_ATTRIBUTE, true);
+                    }
                 }
             });
+        }
+
+    /**
+     * Register the task preparing the {@link PofAgent} for a test task, if the specified name is the name
+     * of the agent task of a test task.
+     *
+     * @param project                the project
+     * @param extension              the extension
+     * @param sTaskName              the name of the requested task
+     * @param schemaFragmentService  the build service sharing the schema fragments of dependency jars
+     * @param schemaCacheDirectory   the root directory of the persistent schema fragment cache
+     */
+    private static void registerAgentTask(Project project, CoherenceExtension extension, String sTaskName,
+                                          Provider<SchemaFragmentService> schemaFragmentService,
+                                          Provider<Directory> schemaCacheDirectory)
+        {
+        for (String sTest : project.getTasks().withType(Test.class).getNames())
+            {
+            if (getAgentTaskName(sTest).equals(sTaskName))
+                {
+                // a task added by a rule is only found if it is realized by the rule
+                TaskProvider<Test> testTask = project.getTasks().named(sTest, Test.class);
+                project.getTasks().register(sTaskName, PofAgentTask.class, task ->
+                    {
+                    task.setDescription("Prepares the Coherence POF agent for the " + sTest + " task.");
+                    task.getClasspath().from(project.provider(() -> testTask.get().getClasspath()));
+                    task.getDebug().set(extension.getDebug().orElse(false));
+                    task.getSchemaFragmentService().set(schemaFragmentService);
+                    task.usesService(schemaFragmentService);
+                    task.getSchemaCacheDirectory().convention(schemaCacheDirectory);
+                    if (extension.getScanParallelism().isPresent())
+                        {
+                        task.getScanParallelism().set(extension.getScanParallelism());
+                        }
+                    }).get();
+                return;
+                }
+            }
+        }
 
-        final JavaCompile javaCompileTask = (JavaCompile) project.getTasks().findByName("compileJava");
+    /**
+     * Attach the {@link PofAgent} prepared by its agent task to the specified test task. The agent task is
+     * referenced by name, so that it is registered by the rule when the task graph is built.
+     *
+     * @param project   the project
+     * @param testTask  the test task
+     */
+    private static void attachAgent(Project project, Test testTask)
+        {
+        String            sAgentTask     = getAgentTaskName(testTask.getName());
+        DirectoryProperty buildDirectory = project.getLayout().getBuildDirectory();
 
-        // TODO At support for Scala and Groovy Projects
-        // final ScalaCompile scalaCompileTask = (ScalaCompile) project.getTasks().findByName("compileScala");
-        // final GroovyCompile groovyCompileTask = (GroovyCompile) project.getTasks().findByName("compileGroovy");
+        testTask.dependsOn(sAgentTask);
+        testTask.getJvmArgumentProviders().add(new PofAgentTask.AgentArgumentProvider(
+                buildDirectory.file(PofAgentTask.getAgentJarPath(sAgentTask)),
+                buildDirectory.file(PofAgentTask.getSchemaFilePath(sAgentTask))));
+        }
 
-        if (javaCompileTask != null)
+    /**
+     * Return the name of the task preparing the {@link PofAgent} for the specified test task,
+     * e.g. {@code coherencePofAgentTest}.
+     *
+     * @param sTestTask  the name of the test task
+     *
+     * @return the name of the agent task
+     */
+    static String getAgentTaskName(String sTestTask)
+        {
+        return POF_AGENT_TASK_NAME + Character.toUpperCase(sTestTask.charAt(0)) + sTestTask.substring(1);
+        }
+
+    /**
+     * Return the name of the task instrumenting the specified source set, e.g. {@code coherencePofMain}.
+     *
+     * @param sourceSet  the source set
+     *
+     * @return the name of the task
+     */
+    static String getPofTaskName(SourceSet sourceSet)
+        {
+        String sName = sourceSet.getName();
+        return POF_TASK_NAME + Character.toUpperCase(sName.charAt(0)) + sName.substring(1);
+        }
+
+    /**
+     * Return the classes directory of the specified source set whose portable types are instrumented,
+     * i.e. the configured main or test classes directory or the Java classes directory of the source set.
+     *
+     * @param extension  the extension
+     * @param sourceSet  the source set
+     *
+     * @return the classes directory
+     */
+    private static Provider<Directory> getClassesDirectory(CoherenceExtension extension, SourceSet sourceSet)
+        {
+        if (SourceSet.MAIN_SOURCE_SET_NAME.equals(sourceSet.getName()) && extension.getMainClassesDirectory().isPresent())
+            {
+            return extension.getMainClassesDirectory();
+            }
+        if (SourceSet.TEST_SOURCE_SET_NAME.equals(sourceSet.getName()) && extension.getTestClassesDirectory().isPresent())
             {
-            javaCompileTask.finalizedBy(POF_TASK_NAME);
+            return extension.getTestClassesDirectory();
             }
+        return sourceSet.getJava().getClassesDirectory();
+        }
+
+    /**
+     * Return the name of the task scanning the dependencies of the specified source set for portable types,
+     * e.g. {@code coherenceSchemaMain}.
+     *
+     * @param sourceSet  the source set
+     *
+     * @return the name of the task
+     */
+    static String getSchemaTaskName(SourceSet sourceSet)
+        {
+        String sName = sourceSet.getName();
+        return SCHEMA_TASK_NAME + Character.toUpperCase(sName.charAt(0)) + sName.substring(1);
+        }
+
+    /**
+     * Return the dependencies of the configured schema configurations that are selected,
+     * or filtered out, by the include and exclude patterns of the extension. If no schema
+     * configurations are configured, the runtime classpath of the source set is used.
+     *
+     * @param project    the project
+     * @param extension  the extension
+     * @param sourceSet  the instrumented source set
+     * @param fSelected  {@code true} for the selected dependencies, {@code false} for the filtered out ones
+     *
+     * @return the files of the matching dependencies
+     */
+    private static Provider<List<FileCollection>> getSchemaClasspath(Project project, CoherenceExtension extension,
+                                                                     SourceSet sourceSet, boolean fSelected)
+        {
+        return project.provider(() ->
+            {
+            DependencyFilter filter = new DependencyFilter(extension.getSchemaIncludes().getOrElse(Collections.emptyList()),
+                    extension.getSchemaExcludes().getOrElse(Collections.emptyList()), fSelected);
+
+            List<String> listConfigurations = extension.getSchemaConfigurations().getOrElse(Collections.emptyList());
+            if (listConfigurations.isEmpty())
+                {
+                listConfigurations = Collections.singletonList(sourceSet.getRuntimeClasspathConfigurationName());
+                }
+
+            List<FileCollection> listFiles = new ArrayList<>();
+            for (String sConfiguration : listConfigurations)
+                {
+                listFiles.add(project.getConfigurations().getByName(sConfiguration).getIncoming()
+                        .artifactView(view -> view.componentFilter(filter)).getFiles());
+                }
+            return listFiles;
+            });
+        }
+
+    /**
+     * Use the instrumented classes produced by the specified task instead of the Java classes directory in the
+     * classes output of the given source set. The classes directories of other languages, e.g. Groovy or Kotlin,
+     * are retained.
+     *
+     * @param project              the project
+     * @param sourceSet            the source set
+     * @param pofTask              the task producing the instrumented classes
+     * @param instrumentedClasses  the directory containing the instrumented classes
+     */
+    private static void useInstrumentedClasses(Project project, SourceSet sourceSet, TaskProvider<? extends Task> pofTask,
+                                               Provider<Directory> instrumentedClasses)
+        {
+        ConfigurableFileCollection classesDirs = (ConfigurableFileCollection) sourceSet.getOutput().getClassesDirs();
+        FileCollection             otherDirs   = project.files(new ArrayList<>(classesDirs.getFrom()))
+                .minus(project.files(sourceSet.getJava().getClassesDirectory()));
+        classesDirs.setFrom(instrumentedClasses, otherDirs);
+        project.getTasks().named(sourceSet.getClassesTaskName()).configure(task -> task.dependsOn(pofTask));
         }
     }
@@ -6,35 +6,68 @@
  */
 package com.oracle.coherence.gradle;
 
-import com.oracle.coherence.common.schema.ClassFileSchemaSource;
-import com.oracle.coherence.common.schema.Schema;
-import com.oracle.coherence.common.schema.SchemaBuilder;
-import com.oracle.coherence.common.schema.XmlSchemaSource;
-import com.tangosol.io.pof.generator.PortableTypeGenerator;
-import com.tangosol.io.pof.schema.annotation.PortableType;
 import org.gradle.api.DefaultTask;
-import org.gradle.api.Project;
-import org.gradle.api.artifacts.Configuration;
-import org.gradle.api.file.Directory;
-import org.gradle.api.logging.Logger;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.FileType;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-
-import static com.oracle.coherence.common.schema.ClassFileSchemaSource.Filters.hasAnnotation;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
+ * Instruments the compiled classes of a single source set annotated with
+ * {@code @PortableType}. The compiled classes are treated as inputs only; the
+ * instrumented classes are written to the task's own output directory. The
+ * plugin registers one task per instrumented source set, e.g.
+ * {@code coherencePofMain}, so that the source sets are instrumented
+ * independently of each other.
+ *
  * @author Gunnar Hillert
  */
+@CacheableTask
 abstract class CoherenceTask extends DefaultTask
     {
 
@@ -42,182 +75,864 @@ abstract class CoherenceTask extends DefaultTask
     @Optional
     public abstract Property<Boolean> getDebug();
 
-    @Input
+    /**
+     * The name of the source set whose classes are instrumented.
+     **/
+    @Internal
+    abstract Property<String> getSourceSetName();
+
+    /**
+     * The classes directory of the source set.
+     **/
+    @Incremental
+    @InputFiles
     @Optional
-    public abstract Property<Boolean> getInstrumentTestClasses();
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract DirectoryProperty getClassesDirectory();
 
     /**
-     * Set the project test classes directory.
+     * The resources directories whose {@code META-INF/schema.xml} files are added to the schema,
+     * i.e. the resources directory of the source set and, for source sets other than {@code main},
+     * the main resources directory.
      **/
-     @InputFiles
-     @Optional
-     abstract Property<File> getTestClassesDirectory();
+    @Internal
+    abstract ListProperty<File> getResourcesDirectories();
 
-     @InputFiles
-     @Optional
-     abstract Property<File> getTestResourcesDirectory();
+    /**
+     * The directory the instrumented classes are written to.
+     **/
+    @OutputDirectory
+    abstract DirectoryProperty getOutputDirectory();
 
-    @InputFiles
+    /**
+     * Whether to write the {@link SchemaIndexResource schema index} and the {@link PofTypeRegistry
+     * type registry} to the output directory, so that they are packaged with the instrumented classes.
+     **/
+    @Input
+    abstract Property<Boolean> getPublishTypeRegistry();
+
+    /**
+     * Whether to add the element types of the collection and map properties, as declared by their generic
+     * signatures, to the schema. See {@link ElementTypeAnnotator}.
+     **/
+    @Input
+    abstract Property<Boolean> getInferElementTypes();
+
+    /**
+     * Whether to add only the portable types of the dependencies to the schema that are reachable from
+     * the project's portable types through their fields and super classes. See {@link ReachableSchemaTypes}.
+     **/
+    @Input
+    abstract Property<Boolean> getLazySchemaResolution();
+
+    /**
+     * The file holding the {@link PortableTypeIndex} used for incremental instrumentation.
+     **/
+    @OutputFile
+    abstract RegularFileProperty getPortableTypeIndexFile();
+
+    /**
+     * The directory holding the {@link InstrumentationManifest}. It is kept across
+     * non-incremental executions, so that classes instrumented before can be
+     * restored instead of being instrumented again.
+     **/
+    @LocalState
+    abstract DirectoryProperty getInstrumentationStateDirectory();
+
+    /**
+     * The dependencies of the project, as scanned for portable types by the {@link DependencySchemaTask}.
+     * The dependencies are not an input by themselves, only the {@link #getClasspathSchemaFile()
+     * fingerprint} of their portable types is.
+     **/
+    @Internal
+    abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * The fingerprint of the portable types of the {@link #getClasspath() dependencies}, i.e. of their
+     * type identifiers, versions, super types, properties and whether they are final or enums, written by
+     * the {@link DependencySchemaTask}.
+     * Changes to the dependencies that do not affect their portable types, e.g. the upgrade of a library
+     * without portable types, leave the task up to date, while any other change requires a full
+     * instrumentation.
+     **/
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    abstract RegularFileProperty getClasspathSchemaFile();
+
+    /**
+     * The schema fragments of the {@link #getClasspath() dependencies} written by the
+     * {@link DependencySchemaTask}. Only their {@link #getClasspathSchemaFile() fingerprint} is an input.
+     **/
+    @Internal
+    abstract DirectoryProperty getSchemaFragmentsDirectory();
+
+    /**
+     * Whether to fail if a portable type references a class of a dependency that is not
+     * scanned for portable types.
+     **/
+    @Input
     @Optional
-    abstract Property<File> getMainClassesDirectory();
+    abstract Property<Boolean> getStrictSchemaClasspath();
+
+    /**
+     * The dependencies filtered out of the {@link #getClasspath() classpath} by the configured
+     * include and exclude patterns. Only populated in strict mode.
+     **/
+    @Classpath
+    abstract ConfigurableFileCollection getExcludedClasspath();
+
+    /**
+     * The build service sharing the class listings of dependency jars between the tasks of a build.
+     **/
+    @Internal
+    abstract Property<SchemaFragmentService> getSchemaFragmentService();
+
+    /**
+     * The version of Coherence used to instrument the classes.
+     **/
+    @Input
+    abstract Property<String> getCoherenceVersion();
+
+    /**
+     * The JSON report of the time and work of each phase of the last execution. The report
+     * describes a single execution and is therefore not a cacheable output of the task.
+     **/
+    @Internal
+    abstract RegularFileProperty getReportFile();
 
+    /**
+     * The classpath containing the configured version of Coherence, used for the isolated instrumentation workers.
+     **/
+    @Internal
+    abstract ConfigurableFileCollection getCoherenceClasspath();
+
+    @Inject
+    abstract FileSystemOperations getFileSystemOperations();
+
+    @Inject
+    abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * Return the {@code META-INF/schema.xml} files of the resources directories, if present.
+     * Any change to these files triggers a full (non-incremental) instrumentation.
+     **/
     @InputFiles
-    @Optional
-    abstract Property<File> getMainResourcesDirectory();
+    @PathSensitive(PathSensitivity.RELATIVE)
+    List<File> getXmlSchemaFiles()
+        {
+        List<File> listSchemaFiles = new ArrayList<>();
+        for (File resourcesDirectory : getResourcesDirectories().getOrElse(Collections.emptyList()))
+            {
+            File xmlSchema = getXmlSchemaFile(resourcesDirectory);
+            if (xmlSchema.exists())
+                {
+                listSchemaFiles.add(xmlSchema);
+                }
+            }
+        return listSchemaFiles;
+        }
 
     @Inject
-    public CoherenceTask(Project project)
+    public CoherenceTask(ProjectLayout layout)
         {
 
         getLogger().info("Setting up Task property conventions.");
         getDebug().convention(false);
-        getInstrumentTestClasses().convention(false);
+        getCoherenceVersion().convention(DEFAULT_COHERENCE_VERSION);
+        getStrictSchemaClasspath().convention(false);
+        getPublishTypeRegistry().convention(false);
+        getInferElementTypes().convention(false);
+        getLazySchemaResolution().convention(false);
+
+        final DirectoryProperty buildDirectory = layout.getBuildDirectory();
+        getOutputDirectory().convention(buildDirectory.dir(getSourceSetName().map(sName -> "classes/coherence/" + sName)));
+        getPortableTypeIndexFile().convention(buildDirectory.file("coherence/" + getName() + "/" + PORTABLE_TYPE_INDEX));
+        getInstrumentationStateDirectory().convention(buildDirectory.dir("coherence/" + getName() + "/state"));
+        getReportFile().convention(buildDirectory.file("reports/coherence/" + getName() + ".json"));
+        }
 
-        final Directory mainJavaOutputDir = PluginUtils.getMainJavaOutputDir(project);
-        getMainClassesDirectory().convention(mainJavaOutputDir.getAsFile());
+    @TaskAction
+    public void instrumentPofClasses(InputChanges inputChanges)
+        {
+        InstrumentationMetrics metrics  = new InstrumentationMetrics();
+        long                   ldtStart = System.nanoTime();
+        try
+            {
+            instrumentPofClasses(inputChanges, metrics);
+            }
+        finally
+            {
+            metrics.recordPhase(InstrumentationMetrics.PHASE_TOTAL, ldtStart);
+            writeReport(metrics, inputChanges.isIncremental());
+            }
+        }
+
+    /**
+     * Instrument the portable types, recording the time and work of each phase in the specified metrics.
+     *
+     * @param inputChanges  the incremental changes
+     * @param metrics       the metrics of this execution
+     */
+    private void instrumentPofClasses(InputChanges inputChanges, InstrumentationMetrics metrics)
+        {
+        getLogger().info("Start executing Gradle task instrumentPofClasses...");
+        getLogger().info("The following configuration properties are configured:");
+        getLogger().info("Property debug = {}", this.getDebug().get());
+        getLogger().info("Property sourceSet = {}", this.getSourceSetName().get());
+        getLogger().info("Property classesDirectory = {}", this.getClassesDirectory().getAsFile().getOrNull());
+        getLogger().info("Property coherenceVersion = {}", this.getCoherenceVersion().get());
+        getLogger().info("Property strictSchemaClasspath = {}", this.getStrictSchemaClasspath().get());
+        getLogger().info("Property inferElementTypes = {}", this.getInferElementTypes().get());
+        getLogger().info("Property lazySchemaResolution = {}", this.getLazySchemaResolution().get());
+
+        List<File> listInstrument = new ArrayList<>();
+        List<File> listXmlSchemas = new ArrayList<>();
 
-        final Directory testJavaOutputDir = PluginUtils.getTestJavaOutputDir(project);
-        getTestClassesDirectory().convention(testJavaOutputDir.getAsFile());
+        Map<File, File> classesDirectories = new LinkedHashMap<>();
 
-        final File mainResourcesOutputDir = PluginUtils.getMainResourcesOutputDir(project);
-        if (mainResourcesOutputDir != null)
+        for (File resourcesDirectory : getResourcesDirectories().getOrElse(Collections.emptyList()))
             {
-            getMainResourcesDirectory().convention(mainResourcesOutputDir);
+            addSchemaSourceIfExists(listXmlSchemas, resourcesDirectory);
             }
 
-        final File testResourcesOutputDir = PluginUtils.getTestResourcesOutputDir(project);
-        if (testResourcesOutputDir != null)
+        if (getClassesDirectory().isPresent()
+            && getClassesDirectory().getAsFile().get().exists())
             {
-            getTestResourcesDirectory().convention(testResourcesOutputDir);
+            File classesDirectoryAsFile = getClassesDirectory().getAsFile().get();
+            classesDirectories.put(classesDirectoryAsFile, getOutputDirectory().getAsFile().get());
             }
+        else
+            {
+            getLogger().error("PortableTypeGenerator skipping {} classes directory as it does not exist.",
+                    getSourceSetName().get());
+            }
+
+        listInstrument.addAll(classesDirectories.keySet());
+
+        if (!listInstrument.isEmpty())
+            {
+            Map<File, Set<String>> mapAffected = null;
+            File               indexFile       = getPortableTypeIndexFile().getAsFile().get();
+            PortableTypeIndex  index           = inputChanges.isIncremental() ? PortableTypeIndex.load(indexFile) : null;
+            List<File>         listSchemaTypes;
+            long               ldtPhase        = System.nanoTime();
+
+            try
+                {
+                if (index == null)
+                    {
+                    getLogger().info("Performing a full instrumentation of all portable types.");
+                    index = PortableTypeIndex.scan(listInstrument);
+                    }
+                else
+                    {
+                    File classesDirectory = getClassesDirectory().getAsFile().get();
+                    mapAffected = applyChanges(inputChanges, index, classesDirectory,
+                                               classesDirectories.get(classesDirectory));
+                    }
+
+                metrics.recordPhase(InstrumentationMetrics.PHASE_INDEX, ldtPhase);
+                metrics.increment(InstrumentationMetrics.COUNT_CLASSES_PARSED, index.getParsedClassCount());
+                metrics.increment(InstrumentationMetrics.COUNT_PORTABLE_TYPES,
+                        index.getPortableTypes().values().stream().mapToInt(Set::size).sum());
+
+                if (mapAffected != null && mapAffected.isEmpty())
+                    {
+                    getLogger().lifecycle("No portable types are affected by the changed classes.");
+                    writeTypeResources(index);
+                    index.store(indexFile);
+                    return;
+                    }
+
+                // without any portable types in the project there is nothing to instrument, so the dependencies
+                // do not have to be resolved and scanned at all
+                if (!index.hasPortableTypes())
+                    {
+                    getLogger().lifecycle("No portable types found in the classes directories.");
+                    for (File dir : listInstrument)
+                        {
+                        File outputDir = classesDirectories.get(dir);
+                        getFileSystemOperations().sync(spec -> spec.from(dir).into(outputDir));
+                        }
+                    writeTypeResources(index);
+                    index.store(indexFile);
+                    return;
+                    }
 
+                if (getStrictSchemaClasspath().get())
+                    {
+                    verifyExcludedDependencies(index);
+                    }
+
+                listSchemaTypes = stagePortableTypes(index);
+                }
+            catch (IOException e)
+                {
+                throw new RuntimeException(e);
+                }
+
+            ldtPhase = System.nanoTime();
+            List<File> listDeps = resolveDependencies();
+            metrics.recordPhase(InstrumentationMetrics.PHASE_RESOLVE, ldtPhase);
+
+            // only the portable types of each dependency, or those reachable from the project's portable types,
+            // are added to the schema, as scanned by the DependencySchemaTask along with their fingerprint
+            ldtPhase = System.nanoTime();
+            List<File> listFragments = getLazySchemaResolution().get()
+                                       ? getReachableTypes(metrics)
+                                       : getFragments(listDeps, metrics);
+            if (getInferElementTypes().get())
+                {
+                annotateElementTypes(index, listSchemaTypes, listFragments);
+                }
+            metrics.recordPhase(InstrumentationMetrics.PHASE_SCAN, ldtPhase);
+
+            try
+                {
+                if (mapAffected == null)
+                    {
+                    for (File dir : listInstrument)
+                        {
+                        File outputDir = classesDirectories.get(dir);
+                        getFileSystemOperations().sync(spec -> spec.from(dir).into(outputDir));
+                        }
+                    mapAffected = index.getPortableTypes();
+                    }
+
+                // classes that have been instrumented before from the same bytes and with the same schema are
+                // restored from the instrumentation manifest rather than handed to the PortableTypeGenerator again
+                List<File> listSchemaSources = new ArrayList<>(listXmlSchemas);
+                listSchemaSources.addAll(listFragments);
+                listSchemaSources.addAll(listSchemaTypes);
+
+                InstrumentationManifest manifest = InstrumentationManifest.load(
+                        getInstrumentationStateDirectory().getAsFile().get(),
+                        InstrumentationManifest.fingerprint(getInstrumentationParameters(), listSchemaSources));
+                manifest.retain(index.getPortableTypes());
+
+                ldtPhase = System.nanoTime();
+
+                Map<File, Set<String>> mapInstrument = new LinkedHashMap<>();
+                int                    cRestored     = 0;
+                for (Map.Entry<File, Set<String>> entry : mapAffected.entrySet())
+                    {
+                    File outputDir = classesDirectories.get(entry.getKey());
+                    for (String sRelativePath : entry.getValue())
+                        {
+                        if (manifest.restore(entry.getKey(), sRelativePath, outputDir))
+                            {
+                            cRestored++;
+                            }
+                        else
+                            {
+                            mapInstrument.computeIfAbsent(entry.getKey(), k -> new LinkedHashSet<>()).add(sRelativePath);
+                            }
+                        }
+                    }
+
+                metrics.recordPhase(InstrumentationMetrics.PHASE_RESTORE, ldtPhase);
+                metrics.increment(InstrumentationMetrics.COUNT_RESTORED, cRestored);
+
+                if (cRestored > 0)
+                    {
+                    getLogger().info("Restored {} previously instrumented classes.", cRestored);
+                    }
+
+                if (!mapInstrument.isEmpty())
+                    {
+                    // the instrumentation of each classes directory is submitted as a separate work item, executed in
+                    // parallel in a classloader isolated from the build that contains the configured Coherence version
+                    ldtPhase = System.nanoTime();
+                    WorkQueue workQueue = getWorkerExecutor().classLoaderIsolation(spec ->
+                            spec.getClasspath().from(getCoherenceClasspath()));
+
+                    File stagingRoot = new File(getTemporaryDir(), "staging");
+                    getFileSystemOperations().delete(spec -> spec.delete(stagingRoot));
+
+                    Map<File, File> mapStaged = new LinkedHashMap<>();
+                    for (Map.Entry<File, Set<String>> entry : mapInstrument.entrySet())
+                        {
+                        File stagingDir = new File(stagingRoot, String.valueOf(mapStaged.size()));
+                        stageClasses(entry.getKey(), stagingDir, entry.getValue());
+                        mapStaged.put(entry.getKey(), stagingDir);
+
+                        getLogger().info("Running PortableTypeGenerator for {} classes in {}",
+                                entry.getValue().size(), entry.getKey().getCanonicalPath());
+                        submitInstrumentation(workQueue, stagingDir, new File(stagingRoot, stagingDir.getName() + METRICS_SUFFIX),
+                                listXmlSchemas, listFragments, listSchemaTypes);
+                        }
+
+                    workQueue.await();
+                    metrics.recordPhase(InstrumentationMetrics.PHASE_INSTRUMENT, ldtPhase);
+
+                    for (Map.Entry<File, File> entry : mapStaged.entrySet())
+                        {
+                        File        outputDir = classesDirectories.get(entry.getKey());
+                        Set<String> setPaths  = mapInstrument.get(entry.getKey());
+
+                        copyStagedClasses(entry.getValue(), outputDir, setPaths);
+                        for (String sRelativePath : setPaths)
+                            {
+                            if (manifest.record(entry.getKey(), sRelativePath, outputDir))
+                                {
+                                metrics.increment(InstrumentationMetrics.COUNT_REWRITTEN, 1);
+                                }
+                            }
+                        readWorkerMetrics(new File(stagingRoot, entry.getValue().getName() + METRICS_SUFFIX), metrics);
+                        }
+                    }
+
+                manifest.store();
+                writeTypeResources(index);
+                index.store(indexFile);
+                }
+            catch (IOException e)
+                {
+                throw new RuntimeException(e);
+                }
+            }
         }
 
-    @TaskAction
-    public void instrumentPofClasses()
+    /**
+     * Write the {@link SchemaIndexResource schema index} and the {@link PofTypeRegistry type registry}
+     * of the portable types to the output directory, if enabled for the source set, so that they
+     * are packaged with the instrumented classes. Consumers of the jar do not have to scan its classes
+     * for portable types, and Coherence members can register its types without scanning the classpath.
+     *
+     * @param index  the index of the project's classes
+     *
+     * @throws GradleException if a type identifier is used by more than one portable type
+     */
+    private void writeTypeResources(PortableTypeIndex index) throws IOException
         {
+        if (getPublishTypeRegistry().get() && getClassesDirectory().isPresent()
+            && getClassesDirectory().getAsFile().get().exists())
+            {
+            File            classesDir = getClassesDirectory().getAsFile().get();
+            File            outputDir  = getOutputDirectory().getAsFile().get();
+            Set<String>     setPaths   = index.getPortableTypes().get(classesDir);
+            PofTypeRegistry registry   = index.getTypeRegistry(classesDir);
 
-        getLogger().lifecycle("Start executing Gradle task instrumentPofClasses...");
-        getLogger().info("The following configuration properties are configured:");
-        getLogger().info("Property debug = {}", this.getDebug().get());
-        getLogger().info("Property instrumentTestClasses = {}", this.getInstrumentTestClasses().get());
-        getLogger().info("Property testClassesDirectory = {}", this.getTestClassesDirectory());
-        getLogger().info("Property mainClassesDirectory = {}", this.getMainClassesDirectory());
+            List<String> listConflicts = registry.getConflicts();
+            if (!listConflicts.isEmpty())
+                {
+                throw new GradleException("Portable types must have unique type ids:\n  "
+                                          + String.join("\n  ", listConflicts));
+                }
 
-        ClassFileSchemaSource source = new ClassFileSchemaSource();
-        List<File> listInstrument = new ArrayList<>();
-        SchemaBuilder schemaBuilder = new SchemaBuilder();
+            SchemaIndexResource.write(outputDir, setPaths == null ? Collections.emptySet() : setPaths);
+            registry.write(outputDir);
+            getLogger().info("Registered {} portable types in {}.", registry.size(),
+                    new File(outputDir, PofTypeRegistry.POF_CONFIG_RESOURCE));
+            }
+        }
 
-        List<File> classesDirectories = new ArrayList<>();
+    /**
+     * Submit the instrumentation of the classes in the specified directory to the given work queue.
+     *
+     * @param workQueue            the work queue
+     * @param instrumentDirectory  the directory containing the classes to instrument
+     * @param metricsFile          the file the worker writes its metrics to
+     * @param listXmlSchemas       the XML schema files
+     * @param listFragments        the schema fragments of the dependencies
+     * @param listClassesDirs      the directories holding the portable types of the project
+     */
+    private void submitInstrumentation(WorkQueue workQueue, File instrumentDirectory, File metricsFile,
+                                       List<File> listXmlSchemas, List<File> listFragments, List<File> listClassesDirs)
+        {
+        workQueue.submit(InstrumentPofAction.class, parameters ->
+            {
+            parameters.getXmlSchemaFiles().from(listXmlSchemas);
+            parameters.getDependencyFragments().from(listFragments);
+            parameters.getClassesDirectories().from(listClassesDirs);
+            parameters.getInstrumentDirectory().set(instrumentDirectory);
+            parameters.getDebug().set(getDebug());
+            parameters.getMetricsFile().set(metricsFile);
+            });
+        }
 
-        addSchemaSourceIfExists(schemaBuilder, getTestResourcesDirectory());
-        addSchemaSourceIfExists(schemaBuilder, getMainResourcesDirectory());
+    /**
+     * Return the parameters of the task that affect the bytecode generated for a portable type, besides
+     * the schema. Classes instrumented with other parameters are never restored from the manifest.
+     *
+     * @return the parameters, as {@code name=value} pairs
+     */
+    private List<String> getInstrumentationParameters()
+        {
+        return Arrays.asList("coherenceVersion=" + getCoherenceVersion().get(),
+                             "debug=" + getDebug().get(),
+                             "inferElementTypes=" + getInferElementTypes().get(),
+                             "lazySchemaResolution=" + getLazySchemaResolution().get());
+        }
 
-        if (getTestClassesDirectory().isPresent()
-            && getTestClassesDirectory().get().exists())
+    /**
+     * Add the metrics written by an instrumentation worker to the specified metrics.
+     *
+     * @param metricsFile  the file the worker has written its metrics to
+     * @param metrics      the metrics of this execution
+     */
+    private static void readWorkerMetrics(File metricsFile, InstrumentationMetrics metrics) throws IOException
+        {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(metricsFile.toPath()))
             {
-            File testClassesDirectoryAsFile = getTestClassesDirectory().get();
-            classesDirectories.add(testClassesDirectoryAsFile);
+            properties.load(in);
             }
-        else
+        for (String sPhase : properties.stringPropertyNames())
             {
-            getLogger().error("PortableTypeGenerator skipping test classes directory as it does not exist.");
+            metrics.addPhaseTime(sPhase, Long.parseLong(properties.getProperty(sPhase)));
             }
+        }
 
-        if (getMainClassesDirectory().isPresent()
-                && getMainClassesDirectory().get().exists())
+    /**
+     * Write the JSON report of the specified metrics and log a summary of them.
+     *
+     * @param metrics       the metrics of this execution
+     * @param fIncremental  whether the execution was incremental
+     */
+    private void writeReport(InstrumentationMetrics metrics, boolean fIncremental)
+        {
+        File reportFile = getReportFile().getAsFile().get();
+        try
             {
-            File mainClassesDirectoryAsFile = getMainClassesDirectory().get();
-            classesDirectories.add(mainClassesDirectoryAsFile);
+            metrics.writeJson(reportFile, getPath(), fIncremental);
             }
-        else
+        catch (IOException e)
             {
-            getLogger().error("PortableTypeGenerator skipping main classes directory as it does not exist.");
+            getLogger().warn("Unable to write the instrumentation report to {}.", reportFile, e);
             }
 
-        if (!classesDirectories.isEmpty()) {
-            source.withTypeFilter(hasAnnotation(PortableType.class))
-                  .withMissingPropertiesAsObject();
-            for (File classesDir : classesDirectories)
+        getLogger().lifecycle("Instrumented {} of {} portable types ({} restored) in {} ms with {} portable types "
+                              + "of the dependencies. See {}",
+                metrics.getCounter(InstrumentationMetrics.COUNT_REWRITTEN),
+                metrics.getCounter(InstrumentationMetrics.COUNT_PORTABLE_TYPES),
+                metrics.getCounter(InstrumentationMetrics.COUNT_RESTORED),
+                metrics.getPhaseTime(InstrumentationMetrics.PHASE_TOTAL),
+                metrics.getCounter(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES),
+                reportFile.getAbsolutePath());
+        }
+
+    /**
+     * Apply the incremental file changes to the output directory and the specified
+     * index, and return the portable types that need to be re-instrumented as a result.
+     *
+     * @param inputChanges      the incremental changes
+     * @param index             the index of the previous execution
+     * @param classesDirectory  the classes directory of the source set
+     * @param outputDirectory   the output directory of the classes directory
+     *
+     * @return the affected portable types, keyed by their classes directory
+     */
+    private Map<File, Set<String>> applyChanges(InputChanges inputChanges, PortableTypeIndex index,
+                                                File classesDirectory, File outputDirectory)
+            throws IOException
+        {
+        Set<String> setChanged = new HashSet<>();
+        Path        root       = classesDirectory.toPath();
+        Path        outputDir  = outputDirectory.toPath();
+        for (FileChange change : inputChanges.getFileChanges(getClassesDirectory()))
+            {
+            if (change.getFileType() == FileType.DIRECTORY)
                 {
-                source.withClassesFromDirectory(classesDir);
-                listInstrument.add(classesDir);
+                continue;
                 }
+
+            Path file   = change.getFile().toPath();
+            Path target = outputDir.resolve(change.getNormalizedPath());
+            if (change.getChangeType() == ChangeType.REMOVED)
+                {
+                Files.deleteIfExists(target);
+                }
+            else
+                {
+                Files.createDirectories(target.getParent());
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+            if (!file.toString().endsWith(".class"))
+                {
+                continue;
+                }
+
+            String sClassName = change.getChangeType() == ChangeType.REMOVED
+                    ? index.remove(file)
+                    : index.update(root, file);
+
+            if (sClassName != null)
+                {
+                getLogger().info("Detected {} class {}.", change.getChangeType().name().toLowerCase(), sClassName);
+                setChanged.add(sClassName);
+                }
+            }
+        return index.getAffectedPortableTypes(setChanged);
         }
 
-        if (!listInstrument.isEmpty())
-            {
-            List<File> listDeps = resolveDependencies();
-            ClassFileSchemaSource dependencies =
-                    new ClassFileSchemaSource()
-                            .withTypeFilter(hasAnnotation(PortableType.class))
-                            .withPropertyFilter(fieldNode -> false);
+    /**
+     * Copy the portable types of the project's classes directories to the temporary
+     * directory, so that the schema is built from the portable types only, rather
+     * than from every class in the classes directories.
+     *
+     * @param index  the index of the project's classes
+     *
+     * @return the directories holding the portable types, one per classes directory
+     */
+    private List<File> stagePortableTypes(PortableTypeIndex index) throws IOException
+        {
+        File typesRoot = new File(getTemporaryDir(), "types");
+        getFileSystemOperations().delete(spec -> spec.delete(typesRoot));
 
-            listDeps.stream()
-                    .filter(File::isDirectory)
-                    .peek(f -> getLogger().lifecycle("Adding classes from " + f + " to schema"))
-                    .forEach(dependencies::withClassesFromDirectory);
+        List<File> listTypesDirs = new ArrayList<>();
+        for (Map.Entry<File, Set<String>> entry : index.getPortableTypes().entrySet())
+            {
+            File typesDir = new File(typesRoot, String.valueOf(listTypesDirs.size()));
+            stageClasses(entry.getKey(), typesDir, entry.getValue());
+            listTypesDirs.add(typesDir);
+            }
+        return listTypesDirs;
+        }
 
-            listDeps.stream()
-                    .filter(f -> f.isFile() && f.getName().endsWith(".jar"))
-                    .peek(f -> getLogger().lifecycle("Adding classes from " + f + " to schema"))
-                    .forEach(dependencies::withClassesFromJarFile);
+    /**
+     * Add the element types of the collection and map properties to the staged portable types
+     * the schema is built from. Only element types of which all instances are of exactly the
+     * declared type, i.e. enums and final portable types of the project or its dependencies,
+     * in addition to the types handled by the {@link ElementTypeAnnotator} itself, are added.
+     *
+     * @param index            the index of the project's classes
+     * @param listSchemaTypes  the directories holding the staged portable types, one per classes directory
+     * @param listFragments    the schema fragments of the dependencies, in classpath order
+     */
+    private void annotateElementTypes(PortableTypeIndex index, List<File> listSchemaTypes, List<File> listFragments)
+        {
+        List<File> listLookup = new ArrayList<>(index.getPortableTypes().keySet());
+        listLookup.addAll(listFragments);
 
-            Schema schema = schemaBuilder
-                    .addSchemaSource(dependencies)
-                    .addSchemaSource(source)
-                    .build();
+        Map<String, Boolean> mapMonomorphic   = new HashMap<>();
+        Predicate<String>    monomorphicTypes = sClassName -> mapMonomorphic.computeIfAbsent(sClassName,
+                name -> isMonomorphic(listLookup, name));
 
-            for (File dir : listInstrument)
+        int i = 0;
+        for (Set<String> setRelativePaths : index.getPortableTypes().values())
+            {
+            Path root       = listSchemaTypes.get(i++).toPath();
+            int  cAnnotated = 0;
+            for (String sRelativePath : setRelativePaths)
                 {
+                Path classFile = root.resolve(sRelativePath);
                 try
                     {
-                    getLogger().warn("Running PortableTypeGenerator for classes in " + dir.getCanonicalPath());
-                    PortableTypeGenerator.instrumentClasses(dir, schema, this.getDebug().get(), new GradleLogger(getLogger()));
+                    byte[] abClass = ElementTypeAnnotator.annotate(Files.readAllBytes(classFile), monomorphicTypes);
+                    if (abClass != null)
+                        {
+                        Files.write(classFile, abClass);
+                        cAnnotated++;
+                        }
                     }
                 catch (IOException e)
                     {
                     throw new RuntimeException(e);
                     }
                 }
+            getLogger().info("Added the element types of collection properties of {} portable types in {} to the schema.",
+                    cAnnotated, root);
             }
         }
 
-        private void addSchemaSourceIfExists(SchemaBuilder builder, Property<File> resourcesDirectory)
+    /**
+     * Return {@code true} if the class with the specified internal name is a final enum or a final
+     * portable type, looking it up in the specified directories in order. An enum whose constants
+     * have bodies is not final, as each of these constants is an instance of a sub-class.
+     *
+     * @param listDirectories  the directories to look the class up in
+     * @param sClassName       the internal name of the class
+     *
+     * @return {@code true} if all instances of the class are of exactly that class
+     */
+    private static boolean isMonomorphic(List<File> listDirectories, String sClassName)
+        {
+        for (File directory : listDirectories)
             {
-                if (resourcesDirectory.isPresent())
+            Path classFile = directory.toPath().resolve(sClassName + ".class");
+            if (Files.isRegularFile(classFile))
+                {
+                try
+                    {
+                    ClassFileInfo info = ClassFileInfo.parse(classFile);
+                    return info.isFinal() && (info.isEnum() || info.isPortableType());
+                    }
+                catch (IOException e)
                     {
-                        File resourcesDirectoryAsFile = resourcesDirectory.get();
+                    return false;
+                    }
+                }
+            }
+        return false;
+        }
 
-                        if (resourcesDirectoryAsFile.exists())
-                            {
-                                File xmlSchema = Paths.get(resourcesDirectoryAsFile.getPath(), "META-INF", "schema.xml").toFile();
-                                if (xmlSchema.exists())
-                                    {
-                                    getLogger().lifecycle("Add XmlSchemaSource '{}'.", xmlSchema.getAbsolutePath());
-                                    builder.addSchemaSource(new XmlSchemaSource(xmlSchema));
-                                    }
-                                else
-                                    {
-                                    getLogger().info("No schema.xml file found at {}", xmlSchema.getAbsolutePath());
-                                    }
-                        }
-                        else {
-                            getLogger().info("The specified resources directory '{}' does not exist.");
-                        }
+    /**
+     * Copy a subset of the classes in the specified classes directory to a staging
+     * directory, so that the {@code PortableTypeGenerator} only has to process the
+     * affected classes.
+     *
+     * @param classesDirectory  the classes directory
+     * @param stagingDirectory  the staging directory
+     * @param relativePaths     the paths of the class files to stage, relative to the classes directory
+     */
+    private static void stageClasses(File classesDirectory, File stagingDirectory, Set<String> relativePaths)
+            throws IOException
+        {
+        Path root    = classesDirectory.toPath();
+        Path staging = stagingDirectory.toPath();
+        for (String sRelativePath : relativePaths)
+            {
+            Path target = staging.resolve(sRelativePath);
+            Files.createDirectories(target.getParent());
+            Files.copy(root.resolve(sRelativePath), target);
+            }
+        }
+
+    /**
+     * Copy the instrumented classes from the specified staging directory to the output directory.
+     *
+     * @param stagingDirectory  the staging directory
+     * @param outputDirectory   the output directory
+     * @param relativePaths     the paths of the staged class files, relative to the staging directory
+     */
+    private static void copyStagedClasses(File stagingDirectory, File outputDirectory, Set<String> relativePaths)
+            throws IOException
+        {
+        Path staging = stagingDirectory.toPath();
+        Path output  = outputDirectory.toPath();
+        for (String sRelativePath : relativePaths)
+            {
+            Path target = output.resolve(sRelativePath);
+            Files.createDirectories(target.getParent());
+            Files.copy(staging.resolve(sRelativePath), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+    /**
+     * Verify that none of the portable types references a class of a dependency
+     * that has been filtered out of the schema classpath.
+     *
+     * @param index  the index of the project's classes
+     *
+     * @throws GradleException if a portable type references a class of a filtered out dependency
+     */
+    private void verifyExcludedDependencies(PortableTypeIndex index) throws IOException
+        {
+        Map<String, Set<String>> mapReferences  = index.getExternalReferences();
+        List<String>             listViolations = new ArrayList<>();
+        for (File file : getExcludedClasspath())
+            {
+            Set<String> setClassNames = getSchemaFragmentService().isPresent()
+                                        ? getSchemaFragmentService().get().getClassNames(file)
+                                        : SchemaFragmentScanner.listClassNames(file);
+            for (String sClassName : setClassNames)
+                {
+                Set<String> setTypes = mapReferences.get(sClassName);
+                if (setTypes != null)
+                    {
+                    listViolations.add(String.join(", ", setTypes) + " references " + sClassName
+                                       + " from " + file.getName());
                     }
-                else
+                }
+            }
+
+        if (!listViolations.isEmpty())
+            {
+            Collections.sort(listViolations);
+            throw new GradleException("Portable types reference classes of dependencies that are not scanned for "
+                                      + "portable types:\n  " + String.join("\n  ", listViolations));
+            }
+        }
+
+    /**
+     * Return the portable types of the dependencies that are reachable from the project's portable types,
+     * as written by the {@link DependencySchemaTask}.
+     *
+     * @param metrics  the metrics of this execution
+     *
+     * @return the directory holding the reachable dependency types, or an empty list if there are none
+     */
+    private List<File> getReachableTypes(InstrumentationMetrics metrics)
+        {
+        File reachableTypes = DependencySchemaTask.getReachableTypesDirectory(getSchemaFragmentsDirectory().getAsFile().get());
+        if (!reachableTypes.isDirectory())
+            {
+            return new ArrayList<>();
+            }
+
+        try
+            {
+            metrics.increment(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES_USED,
+                    DependencySchemaTask.countPortableTypes(reachableTypes));
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to read the portable types of the dependencies.", e);
+            }
+        return new ArrayList<>(Collections.singletonList(reachableTypes));
+        }
+
+    /**
+     * Return the schema fragments of the specified dependencies written by the {@link DependencySchemaTask}.
+     *
+     * @param listDeps  the dependencies, in classpath order
+     * @param metrics   the metrics of this execution
+     *
+     * @return the schema fragments of the dependencies containing portable types, in classpath order
+     */
+    private List<File> getFragments(List<File> listDeps, InstrumentationMetrics metrics)
+        {
+        File fragmentsDirectory = getSchemaFragmentsDirectory().getAsFile().get();
+        try
+            {
+            List<File> listFragments = new ArrayList<>();
+            for (int i = 0; i < listDeps.size(); i++)
+                {
+                File fragment = DependencySchemaTask.getFragmentDirectory(fragmentsDirectory, i);
+                if (fragment.isDirectory())
                     {
-                        getLogger().info("The resources directory property is not present.");
+                    getLogger().info("Adding classes from {} to schema", listDeps.get(i));
+                    listFragments.add(fragment);
+                    metrics.increment(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES,
+                            DependencySchemaTask.countPortableTypes(fragment));
                     }
+                }
+            return listFragments;
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to read the portable types of the dependencies.", e);
             }
+        }
 
-    private List<File> resolveDependencies() //throws ArtifactResolverException
+    private void addSchemaSourceIfExists(List<File> listXmlSchemas, File resourcesDirectory)
+        {
+        if (resourcesDirectory.exists())
+            {
+            File xmlSchema = getXmlSchemaFile(resourcesDirectory);
+            if (xmlSchema.exists())
+                {
+                getLogger().info("Add XmlSchemaSource '{}'.", xmlSchema.getAbsolutePath());
+                listXmlSchemas.add(xmlSchema);
+                }
+            else
+                {
+                getLogger().info("No schema.xml file found at {}", xmlSchema.getAbsolutePath());
+                }
+            }
+        else
+            {
+            getLogger().info("The specified resources directory '{}' does not exist.", resourcesDirectory);
+            }
+        }
+
+    private List<File> resolveDependencies()
         {
         List<File> listArtifacts = new ArrayList<>();
 
-        Configuration configuration = this.getProject().getConfigurations().getByName("runtimeClasspath"); // TODO May need to be configurable
-        configuration.forEach(file -> {
+        getClasspath().forEach(file -> {
             getLogger().info("Adding dependency '{}'.", file.getAbsolutePath());
             if (file.exists())
                 {
@@ -229,7 +944,27 @@ abstract class CoherenceTask extends DefaultTask
                 }
 
         });
-        getLogger().lifecycle("Resolved {} dependencies.", listArtifacts.size());
+        getLogger().info("Resolved {} dependencies.", listArtifacts.size());
         return listArtifacts;
         }
+
+    private static File getXmlSchemaFile(File resourcesDirectory)
+        {
+        return Paths.get(resourcesDirectory.getPath(), "META-INF", "schema.xml").toFile();
+        }
+
+    /**
+     * The version of Coherence used for instrumentation, unless configured otherwise.
+     */
+    static final String DEFAULT_COHERENCE_VERSION = "22.09";
+
+    /**
+     * The name of the file that holds the {@link PortableTypeIndex}.
+     */
+    private static final String PORTABLE_TYPE_INDEX = "portable-types.idx";
+
+    /**
+     * The suffix of the files the instrumentation workers write their metrics to.
+     */
+    private static final String METRICS_SUFFIX = ".metrics";
     }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.specs.Spec;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the dependencies that are scanned for portable types, based on include
+ * and exclude patterns. External modules are matched by patterns of the form
+ * {@code group[:module[:version]]}, project dependencies by their project path,
+ * e.g. {@code :model}. Each part of a pattern may contain {@code *} wildcards,
+ * and omitted parts match anything.
+ * <p>
+ * A dependency is selected if it matches at least one include pattern, or if
+ * there are no include patterns, and does not match any exclude pattern. Other
+ * dependencies, such as local file dependencies, are only selected if there are
+ * no include patterns.
+ *
+ * @author Gunnar Hillert
+ */
+final class DependencyFilter
+        implements Spec<ComponentIdentifier>, Serializable
+    {
+    /**
+     * Create a new filter.
+     *
+     * @param listIncludes  the include patterns
+     * @param listExcludes  the exclude patterns
+     * @param fSelected     {@code true} to select the dependencies matched by the patterns,
+     *                      {@code false} to select the dependencies filtered out by them
+     */
+    DependencyFilter(List<String> listIncludes, List<String> listExcludes, boolean fSelected)
+        {
+        this.includes = new ArrayList<>(listIncludes);
+        this.excludes = new ArrayList<>(listExcludes);
+        this.selected = fSelected;
+        }
+
+    // ----- Spec interface -------------------------------------------------
+
+    @Override
+    public boolean isSatisfiedBy(ComponentIdentifier id)
+        {
+        boolean fMatch = (includes.isEmpty() || matchesAny(includes, id)) && !matchesAny(excludes, id);
+        return fMatch == selected;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private static boolean matchesAny(List<String> listPatterns, ComponentIdentifier id)
+        {
+        for (String sPattern : listPatterns)
+            {
+            if (matches(sPattern.trim(), id))
+                {
+                return true;
+                }
+            }
+        return false;
+        }
+
+    private static boolean matches(String sPattern, ComponentIdentifier id)
+        {
+        if (id instanceof ProjectComponentIdentifier)
+            {
+            return sPattern.startsWith(":") && glob(sPattern, ((ProjectComponentIdentifier) id).getProjectPath());
+            }
+        if (id instanceof ModuleComponentIdentifier && !sPattern.startsWith(":"))
+            {
+            ModuleComponentIdentifier module  = (ModuleComponentIdentifier) id;
+            String[]                  asPart  = sPattern.split(":", -1);
+            String[]                  asValue = {module.getGroup(), module.getModule(), module.getVersion()};
+            if (asPart.length > asValue.length)
+                {
+                return false;
+                }
+            for (int i = 0; i < asPart.length; i++)
+                {
+                if (!glob(asPart[i], asValue[i]))
+                    {
+                    return false;
+                    }
+                }
+            return true;
+            }
+        return false;
+        }
+
+    private static boolean glob(String sGlob, String sValue)
+        {
+        String[]      asLiteral = sGlob.split("\\*", -1);
+        StringBuilder sb        = new StringBuilder(Pattern.quote(asLiteral[0]));
+        for (int i = 1; i < asLiteral.length; i++)
+            {
+            sb.append(".*").append(Pattern.quote(asLiteral[i]));
+            }
+        return Pattern.matches(sb.toString(), sValue);
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    private final List<String> includes;
+
+    private final List<String> excludes;
+
+    private final boolean selected;
+    }
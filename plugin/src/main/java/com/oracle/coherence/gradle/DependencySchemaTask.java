@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Scans the dependencies of a source set for portable types. The task copies
+ * the schema fragment of each dependency containing portable types to its
+ * output directory and writes the fingerprint of these portable types to a
+ * file, which is the only input the {@link CoherenceTask} has on the
+ * dependencies. The dependencies are therefore scanned once per change of the
+ * classpath rather than on every up-to-date check, and changes that do not
+ * affect the portable types, e.g. the upgrade of a library without portable
+ * types, leave the instrumentation up to date.
+ * <p>
+ * With {@link #getLazySchemaResolution() lazy schema resolution}, only the
+ * dependency portable types {@link ReachableSchemaTypes reachable} from the
+ * portable types of the source set's classes are written and fingerprinted,
+ * and only the dependencies containing reachable classes are scanned.
+ *
+ * @author Gunnar Hillert
+ */
+@CacheableTask
+abstract class DependencySchemaTask extends DefaultTask
+    {
+    /**
+     * The dependencies of the source set, in classpath order.
+     **/
+    @Classpath
+    abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * Whether to only scan the dependencies containing classes that are reachable from the portable
+     * types of the {@link #getClassesDirectory() classes directory}.
+     **/
+    @Input
+    abstract Property<Boolean> getLazySchemaResolution();
+
+    /**
+     * The classes directory of the source set, whose portable types the reachable dependency types are
+     * resolved from. Only set with {@link #getLazySchemaResolution() lazy schema resolution}, so that
+     * the dependencies are not scanned again whenever the project's classes change otherwise.
+     **/
+    @InputFiles
+    @Optional
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract DirectoryProperty getClassesDirectory();
+
+    /**
+     * The root directory of the persistent {@link SchemaFragmentCache} for dependency jars.
+     **/
+    @Internal
+    abstract DirectoryProperty getSchemaCacheDirectory();
+
+    /**
+     * The build service sharing the schema fragments of dependency jars between the tasks of a build.
+     **/
+    @Internal
+    abstract Property<SchemaFragmentService> getSchemaFragmentService();
+
+    /**
+     * The maximum number of dependencies to scan for portable types concurrently.
+     **/
+    @Internal
+    abstract Property<Integer> getScanParallelism();
+
+    /**
+     * The directory holding the schema fragments of the dependencies. The fragment of a dependency is
+     * written to the {@link #getFragmentDirectory(File, int) subdirectory} named after its position
+     * among the existing dependencies of the classpath. With {@link #getLazySchemaResolution() lazy
+     * schema resolution}, the reachable portable types of all dependencies are written to a single
+     * {@link #getReachableTypesDirectory(File) subdirectory} instead.
+     **/
+    @OutputDirectory
+    abstract DirectoryProperty getFragmentsDirectory();
+
+    /**
+     * The file holding the fingerprint of the portable types of the dependencies.
+     **/
+    @OutputFile
+    abstract RegularFileProperty getFingerprintFile();
+
+    /**
+     * The JSON report of the time and work of the last execution.
+     **/
+    @Internal
+    abstract RegularFileProperty getReportFile();
+
+    @Inject
+    abstract FileSystemOperations getFileSystemOperations();
+
+    @Inject
+    public DependencySchemaTask(ProjectLayout layout)
+        {
+        getScanParallelism().convention(Runtime.getRuntime().availableProcessors());
+        getLazySchemaResolution().convention(false);
+
+        final DirectoryProperty buildDirectory = layout.getBuildDirectory();
+        getFragmentsDirectory().convention(buildDirectory.dir("coherence/" + getName() + "/fragments"));
+        getFingerprintFile().convention(buildDirectory.file("coherence/" + getName() + "/" + FINGERPRINT_FILE));
+        getReportFile().convention(buildDirectory.file("reports/coherence/" + getName() + ".json"));
+        }
+
+    @TaskAction
+    public void scanDependencies()
+        {
+        InstrumentationMetrics metrics            = new InstrumentationMetrics();
+        long                   ldtStart           = System.nanoTime();
+        File                   fragmentsDirectory = getFragmentsDirectory().getAsFile().get();
+        File                   workingDirectory   = new File(getTemporaryDir(), "fragments");
+        getFileSystemOperations().delete(spec -> spec.delete(fragmentsDirectory, workingDirectory));
+
+        try
+            {
+            List<File> listDeps = existing(getClasspath());
+
+            // the dependencies are scanned concurrently and the portable types of unchanged jars are taken
+            // from the build service or the persistent cache
+            SchemaFragmentScanner scanner = new SchemaFragmentScanner(
+                    new SchemaFragmentCache(getSchemaCacheDirectory().getAsFile().get()),
+                    getSchemaFragmentService().getOrNull(), workingDirectory, getScanParallelism().get());
+
+            List<File> listFragments = getLazySchemaResolution().get()
+                                       ? resolveReachableTypes(scanner, listDeps, fragmentsDirectory, metrics)
+                                       : copyFragments(scanner, listDeps, fragmentsDirectory, metrics);
+            Files.createDirectories(fragmentsDirectory.toPath());
+            scanner.recordMetrics(metrics);
+            metrics.recordPhase(InstrumentationMetrics.PHASE_SCAN, ldtStart);
+
+            Files.write(getFingerprintFile().getAsFile().get().toPath(),
+                    InstrumentationManifest.fingerprintPortableTypes(listFragments).getBytes(StandardCharsets.UTF_8));
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to scan the dependencies for portable types.", e);
+            }
+        finally
+            {
+            getFileSystemOperations().delete(spec -> spec.delete(workingDirectory));
+            metrics.recordPhase(InstrumentationMetrics.PHASE_TOTAL, ldtStart);
+            writeReport(metrics);
+            }
+        }
+
+    /**
+     * Return the directory holding the reachable portable types of the dependencies with
+     * {@link #getLazySchemaResolution() lazy schema resolution}.
+     *
+     * @param fragmentsDirectory  the {@link #getFragmentsDirectory() fragments directory}
+     *
+     * @return the directory of the reachable types, which only exists if there are any
+     */
+    static File getReachableTypesDirectory(File fragmentsDirectory)
+        {
+        return new File(fragmentsDirectory, REACHABLE_TYPES);
+        }
+
+    /**
+     * Return the directory holding the schema fragment of the dependency at the specified position.
+     *
+     * @param fragmentsDirectory  the {@link #getFragmentsDirectory() fragments directory}
+     * @param nIndex              the position of the dependency among the existing dependencies of the classpath
+     *
+     * @return the fragment directory, which only exists if the dependency contains portable types
+     */
+    static File getFragmentDirectory(File fragmentsDirectory, int nIndex)
+        {
+        return new File(fragmentsDirectory, String.valueOf(nIndex));
+        }
+
+    /**
+     * Return the number of portable types in the specified schema fragment.
+     *
+     * @param fragment  the fragment directory
+     *
+     * @return the number of portable types
+     *
+     * @throws IOException if the fragment cannot be read
+     */
+    static long countPortableTypes(File fragment) throws IOException
+        {
+        try (Stream<Path> stream = Files.walk(fragment.toPath()))
+            {
+            return stream.filter(PortableTypeIndex::isClassFile).count();
+            }
+        }
+
+    /**
+     * Return the files of the specified classpath that exist, in classpath order.
+     *
+     * @param files  the classpath
+     *
+     * @return the existing files
+     */
+    static List<File> existing(Iterable<File> files)
+        {
+        List<File> listFiles = new ArrayList<>();
+        for (File file : files)
+            {
+            if (file.exists())
+                {
+                listFiles.add(file);
+                }
+            }
+        return listFiles;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Scan the specified dependencies for portable types and copy the schema fragment of each dependency
+     * containing portable types to its subdirectory of the fragments directory.
+     *
+     * @param scanner             the scanner
+     * @param listDeps            the dependencies, in classpath order
+     * @param fragmentsDirectory  the fragments directory
+     * @param metrics             the metrics of this execution
+     *
+     * @return the copied fragments, in classpath order
+     *
+     * @throws IOException if a dependency cannot be scanned
+     */
+    private List<File> copyFragments(SchemaFragmentScanner scanner, List<File> listDeps, File fragmentsDirectory,
+                                     InstrumentationMetrics metrics) throws IOException
+        {
+        Map<File, Integer> mapIndexes = new HashMap<>();
+        for (int i = 0; i < listDeps.size(); i++)
+            {
+            mapIndexes.put(listDeps.get(i), i);
+            }
+
+        List<File> listFragments = new ArrayList<>();
+        for (SchemaFragmentScanner.Fragment fragment : scanner.scan(listDeps))
+            {
+            getLogger().info("Adding classes from {} to schema", fragment.getSource());
+            File target = getFragmentDirectory(fragmentsDirectory, mapIndexes.get(fragment.getSource()));
+            getFileSystemOperations().copy(spec -> spec.from(fragment.getDirectory()).into(target));
+            listFragments.add(target);
+            metrics.increment(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES, countPortableTypes(target));
+            }
+        return listFragments;
+        }
+
+    /**
+     * Copy the portable types of the dependencies that are reachable from the portable types of the
+     * classes directory to the reachable types directory. The dependencies are only listed, and just
+     * the ones containing reachable classes are scanned.
+     *
+     * @param scanner             the scanner
+     * @param listDeps            the dependencies, in classpath order
+     * @param fragmentsDirectory  the fragments directory
+     * @param metrics             the metrics of this execution
+     *
+     * @return the reachable types directory, or an empty list if there are no reachable types
+     *
+     * @throws IOException if a dependency cannot be listed or scanned
+     */
+    private List<File> resolveReachableTypes(SchemaFragmentScanner scanner, List<File> listDeps, File fragmentsDirectory,
+                                             InstrumentationMetrics metrics) throws IOException
+        {
+        File                  classesDirectory = getClassesDirectory().getAsFile().getOrNull();
+        File                  reachableTypes   = getReachableTypesDirectory(fragmentsDirectory);
+        SchemaFragmentService service          = getSchemaFragmentService().getOrNull();
+
+        List<File> listSchemaTypes = classesDirectory == null
+                                     ? Collections.emptyList()
+                                     : Collections.singletonList(classesDirectory);
+        int cTypes = ReachableSchemaTypes.stage(listSchemaTypes, listDeps, new ReachableSchemaTypes.Dependencies()
+            {
+            @Override
+            public Set<String> getClassNames(File dependency) throws IOException
+                {
+                return service == null
+                       ? SchemaFragmentScanner.listClassNames(dependency)
+                       : service.getClassNames(dependency);
+                }
+
+            @Override
+            public Map<File, File> getFragments(List<File> listDependencies) throws IOException
+                {
+                Map<File, File> mapFragments = new HashMap<>();
+                for (SchemaFragmentScanner.Fragment fragment : scanner.scan(listDependencies))
+                    {
+                    mapFragments.put(fragment.getSource(), fragment.getDirectory());
+                    metrics.increment(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES,
+                            countPortableTypes(fragment.getDirectory()));
+                    }
+                return mapFragments;
+                }
+            }, reachableTypes);
+
+        metrics.increment(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES_USED, cTypes);
+        getLogger().info("Added {} portable types of the dependencies reachable from the project's portable types to the schema.",
+                cTypes);
+        return cTypes == 0 ? Collections.emptyList() : Collections.singletonList(reachableTypes);
+        }
+
+    private void writeReport(InstrumentationMetrics metrics)
+        {
+        File reportFile = getReportFile().getAsFile().get();
+        try
+            {
+            metrics.writeJson(reportFile, getPath(), false);
+            }
+        catch (IOException e)
+            {
+            getLogger().warn("Unable to write the scan report to {}.", reportFile, e);
+            }
+
+        getLogger().info("Scanned {} jars ({} cached) and {} class directories with {} portable types in {} ms. See {}",
+                metrics.getCounter(InstrumentationMetrics.COUNT_JARS),
+                metrics.getCounter(InstrumentationMetrics.COUNT_JARS_CACHED)
+                + metrics.getCounter(InstrumentationMetrics.COUNT_JARS_SHARED),
+                metrics.getCounter(InstrumentationMetrics.COUNT_DIRECTORIES),
+                metrics.getCounter(InstrumentationMetrics.COUNT_DEPENDENCY_PORTABLE_TYPES),
+                metrics.getPhaseTime(InstrumentationMetrics.PHASE_TOTAL),
+                reportFile.getAbsolutePath());
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The name of the file holding the fingerprint of the portable types of the dependencies.
+     */
+    private static final String FINGERPRINT_FILE = "schema-fingerprint";
+
+    /**
+     * The name of the directory holding the reachable portable types of the dependencies.
+     */
+    private static final String REACHABLE_TYPES = "reachable";
+    }
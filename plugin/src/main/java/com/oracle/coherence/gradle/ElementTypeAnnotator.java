@@ -0,0 +1,639 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Adds the element types of the collection and map properties of a portable
+ * type, as declared by the generic signatures of the fields, to the class file
+ * that the schema is built from. The {@code ClassFileSchemaSource} of Coherence
+ * only reads the erased field types, so a {@code List<Integer>} property is
+ * serialized as a collection of self-describing {@code Object} values unless its
+ * element type is declared by a {@code @PortableList(elementClass = ...)}
+ * annotation. For each {@code List}, {@code Set} and {@code Map} field with
+ * monomorphic type arguments, and without such an annotation, the annotator
+ * adds a {@code @PortableList}, {@code @PortableSet} or {@code @PortableMap}
+ * annotation, which replaces a {@code @Portable} annotation of the field and
+ * retains its values. The schema then declares the element types, so that the
+ * generated code can use the uniform collection encoding. The annotation also
+ * declares the class of the field, or the matching implementation for the
+ * {@code Sorted}, {@code Navigable} and {@code Concurrent} interfaces, as its
+ * {@code clazz}, so that the properties are still deserialized into instances
+ * of their declared types.
+ * <p>
+ * The uniform encoding omits the type of each element, so it is only used if
+ * every element is known to be of exactly the declared type, i.e. for
+ * {@code String}, the boxed primitives, arrays of primitives and the classes
+ * accepted by the predicate passed to {@link #annotate(byte[], Predicate)},
+ * such as final enums and final portable types. Fields with interfaces, abstract
+ * or other non-final element types, e.g. {@code List<Pet>} holding a {@code Dog}
+ * or a list of an enum whose constants have bodies, are left as they are.
+ * <p>
+ * The annotated class files are only used to build the schema; the classes
+ * that are instrumented and packaged are left as they are.
+ *
+ * @author Gunnar Hillert
+ */
+final class ElementTypeAnnotator
+    {
+    private ElementTypeAnnotator(Predicate<String> monomorphicTypes)
+        {
+        this.monomorphicTypes = monomorphicTypes;
+        }
+
+    // ----- ElementTypeAnnotator methods -----------------------------------
+
+    /**
+     * Add the element types of the collection and map fields to the specified class file.
+     *
+     * @param abClass           the class file bytes
+     * @param monomorphicTypes  the predicate returning {@code true} for the internal name of a class
+     *                          whose instances are all of exactly that class and that can be serialized
+     *                          without type information, e.g. an enum or a final portable type
+     *
+     * @return the annotated class file, or {@code null} if no field has been annotated
+     *
+     * @throws IOException if the class file is malformed
+     */
+    static byte[] annotate(byte[] abClass, Predicate<String> monomorphicTypes) throws IOException
+        {
+        try
+            {
+            return new ElementTypeAnnotator(monomorphicTypes).rewrite(ByteBuffer.wrap(abClass));
+            }
+        catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e)
+            {
+            throw new IOException("Malformed class file.", e);
+            }
+        }
+
+    /**
+     * Return the descriptors of the element types declared by the specified generic signature, e.g.
+     * {@code [Ljava/lang/String;, Ljava/util/List;]} for {@code Ljava/util/Map<Ljava/lang/String;Ljava/util/List<TT;>;>;}.
+     * The type arguments of the element types are erased.
+     *
+     * @param sSignature  the generic signature of a field
+     *
+     * @return the descriptors of the element types, or {@code null} if the signature has no type arguments,
+     *         or any of them is a wildcard, a type variable or {@code Object}
+     */
+    static List<String> getElementTypes(String sSignature)
+        {
+        int ofStart = sSignature == null ? -1 : sSignature.indexOf('<');
+        if (ofStart < 0)
+            {
+            return null;
+            }
+
+        List<String> listTypes = new ArrayList<>();
+        int          of        = ofStart + 1;
+        while (of < sSignature.length() && sSignature.charAt(of) != '>')
+            {
+            int ofArg = of;
+            while (sSignature.charAt(of) == '[')
+                {
+                of++;
+                }
+
+            char ch = sSignature.charAt(of);
+            if (ch != 'L')
+                {
+                if ("ZBCSIJFD".indexOf(ch) < 0 || of == ofArg)
+                    {
+                    // a wildcard, a bounded wildcard or a type variable
+                    return null;
+                    }
+                listTypes.add(sSignature.substring(ofArg, ++of));
+                continue;
+                }
+
+            // a class type, whose type arguments are erased
+            StringBuilder sb       = new StringBuilder(sSignature.substring(ofArg, of));
+            int           cNesting = 0;
+            for (; ; of++)
+                {
+                ch = sSignature.charAt(of);
+                if (ch == '<')
+                    {
+                    cNesting++;
+                    }
+                else if (ch == '>')
+                    {
+                    cNesting--;
+                    }
+                else if (cNesting == 0)
+                    {
+                    if (ch == '.')
+                        {
+                        // an inner class of a generic class
+                        return null;
+                        }
+                    sb.append(ch);
+                    if (ch == ';')
+                        {
+                        of++;
+                        break;
+                        }
+                    }
+                }
+
+            String sType = sb.toString();
+            if (OBJECT_DESCRIPTOR.equals(sType))
+                {
+                return null;
+                }
+            listTypes.add(sType);
+            }
+        return listTypes.isEmpty() ? null : listTypes;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Rewrite the class file in the specified buffer.
+     */
+    private byte[] rewrite(ByteBuffer buf) throws IOException
+        {
+        if (buf.getInt() != MAGIC)
+            {
+            throw new IOException("Not a class file.");
+            }
+        buf.position(8);
+        int cConstants = buf.getShort() & 0xFFFF;
+        for (int i = 1; i < cConstants; i++)
+            {
+            int nTag = buf.get() & 0xFF;
+            switch (nTag)
+                {
+                case CONSTANT_UTF8:
+                    int cb = buf.getShort() & 0xFFFF;
+                    String sValue = new DataInputStream(new ByteArrayInputStream(buf.array(), buf.position() - 2, cb + 2)).readUTF();
+                    utf8.put(i, sValue);
+                    utf8Indexes.putIfAbsent(sValue, i);
+                    skip(buf, cb);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    skip(buf, 8);
+                    i++;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(buf, 3);
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skip(buf, 2);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skip(buf, 4);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + nTag);
+                }
+            }
+        int ofConstantsEnd = buf.position();
+        nextConstant = cConstants;
+
+        skip(buf, 6);
+        skip(buf, 2 * (buf.getShort() & 0xFFFF));
+        int ofFields = buf.position();
+
+        ByteArrayOutputStream outFields  = new ByteArrayOutputStream();
+        DataOutputStream      out        = new DataOutputStream(outFields);
+        int                   cFields    = buf.getShort() & 0xFFFF;
+        int                   cAnnotated = 0;
+        out.writeShort(cFields);
+        for (int i = 0; i < cFields; i++)
+            {
+            cAnnotated += rewriteField(buf, out) ? 1 : 0;
+            }
+
+        if (cAnnotated == 0)
+            {
+            return null;
+            }
+
+        ByteArrayOutputStream outClass = new ByteArrayOutputStream(buf.capacity() + 256);
+        DataOutputStream      outData  = new DataOutputStream(outClass);
+        outData.write(buf.array(), 0, 8);
+        outData.writeShort(nextConstant);
+        outData.write(buf.array(), 10, ofConstantsEnd - 10);
+        for (String sValue : newConstants.keySet())
+            {
+            outData.writeByte(CONSTANT_UTF8);
+            outData.writeUTF(sValue);
+            }
+        outData.write(buf.array(), ofConstantsEnd, ofFields - ofConstantsEnd);
+        outFields.writeTo(outData);
+        outData.write(buf.array(), buf.position(), buf.capacity() - buf.position());
+        outData.flush();
+        return outClass.toByteArray();
+        }
+
+    /**
+     * Copy the field at the current position of the buffer, adding the element types of the field if it
+     * is a collection or a map.
+     *
+     * @return {@code true} if the element types have been added
+     */
+    private boolean rewriteField(ByteBuffer buf, DataOutputStream out) throws IOException
+        {
+        int    nAccess       = buf.getShort() & 0xFFFF;
+        int    nName         = buf.getShort() & 0xFFFF;
+        int    nDescriptor   = buf.getShort() & 0xFFFF;
+        int    cAttributes   = buf.getShort() & 0xFFFF;
+        int    ofAttributes  = buf.position();
+        String sSignature    = null;
+        int    ofAnnotations = -1;
+        for (int i = 0; i < cAttributes; i++)
+            {
+            String sAttribute = utf8.get(buf.getShort() & 0xFFFF);
+            int    cbValue    = buf.getInt();
+            if (SIGNATURE.equals(sAttribute))
+                {
+                sSignature = utf8.get(buf.getShort(buf.position()) & 0xFFFF);
+                }
+            else if (RUNTIME_VISIBLE_ANNOTATIONS.equals(sAttribute))
+                {
+                ofAnnotations = buf.position();
+                }
+            skip(buf, cbValue);
+            }
+        int ofEnd = buf.position();
+
+        out.writeShort(nAccess);
+        out.writeShort(nName);
+        out.writeShort(nDescriptor);
+
+        String       sAnnotation = (nAccess & (ACC_STATIC | ACC_TRANSIENT)) == 0
+                                   ? COLLECTION_ANNOTATIONS.get(utf8.get(nDescriptor)) : null;
+        List<String> listTypes   = sAnnotation == null ? null : getElementTypes(sSignature);
+        if (listTypes == null || listTypes.size() != (sAnnotation.equals(PORTABLE_MAP) ? 2 : 1)
+            || !listTypes.stream().allMatch(this::isMonomorphic))
+            {
+            out.writeShort(cAttributes);
+            out.write(buf.array(), ofAttributes, ofEnd - ofAttributes);
+            return false;
+            }
+
+        // the pairs of the element types, e.g. elementClass = Integer.class
+        ByteArrayOutputStream outPairs  = new ByteArrayOutputStream();
+        DataOutputStream      pairs     = new DataOutputStream(outPairs);
+        List<String>          listNames = sAnnotation.equals(PORTABLE_MAP)
+                                          ? Arrays.asList("keyClass", "valueClass")
+                                          : Collections.singletonList("elementClass");
+        for (int i = 0; i < listNames.size(); i++)
+            {
+            pairs.writeShort(getUtf8(listNames.get(i)));
+            pairs.writeByte('c');
+            pairs.writeShort(getUtf8(listTypes.get(i)));
+            }
+
+        // the class the property is deserialized into, e.g. clazz = TreeSet.class
+        ByteArrayOutputStream outClazz = new ByteArrayOutputStream();
+        DataOutputStream      clazz    = new DataOutputStream(outClazz);
+        clazz.writeShort(getUtf8(CLAZZ));
+        clazz.writeByte('c');
+        clazz.writeShort(getUtf8(COLLECTION_CLASSES.get(utf8.get(nDescriptor))));
+
+        if (ofAnnotations < 0)
+            {
+            // add a RuntimeVisibleAnnotations attribute with the annotation
+            out.writeShort(cAttributes + 1);
+            out.write(buf.array(), ofAttributes, ofEnd - ofAttributes);
+            out.writeShort(getUtf8(RUNTIME_VISIBLE_ANNOTATIONS));
+            out.writeInt(2 + 4 + outPairs.size() + outClazz.size());
+            out.writeShort(1);
+            out.writeShort(getUtf8(sAnnotation));
+            out.writeShort(listNames.size() + 1);
+            outPairs.writeTo(out);
+            outClazz.writeTo(out);
+            buf.position(ofEnd);
+            return true;
+            }
+
+        // rewrite the RuntimeVisibleAnnotations attribute, unless it already declares the element types
+        ByteArrayOutputStream outAnnotations = new ByteArrayOutputStream();
+        DataOutputStream      annotations    = new DataOutputStream(outAnnotations);
+        buf.position(ofAnnotations);
+        int     cAnnotations = buf.getShort() & 0xFFFF;
+        boolean fReplaced    = false;
+        annotations.writeShort(cAnnotations);
+        for (int i = 0; i < cAnnotations; i++)
+            {
+            int    ofAnnotation = buf.position();
+            String sType        = utf8.get(buf.getShort() & 0xFFFF);
+            if (COLLECTION_ANNOTATION_TYPES.contains(sType))
+                {
+                buf.position(ofEnd);
+                out.writeShort(cAttributes);
+                out.write(buf.array(), ofAttributes, ofEnd - ofAttributes);
+                return false;
+                }
+
+            int     cPairs = buf.getShort() & 0xFFFF;
+            boolean fClazz = false;
+            for (int j = 0; j < cPairs; j++)
+                {
+                fClazz |= CLAZZ.equals(utf8.get(buf.getShort() & 0xFFFF));
+                skipElementValue(buf);
+                }
+
+            if (PORTABLE.equals(sType))
+                {
+                // replace @Portable, retaining its values, including the class of the property, if declared
+                annotations.writeShort(getUtf8(sAnnotation));
+                annotations.writeShort(cPairs + listNames.size() + (fClazz ? 0 : 1));
+                annotations.write(buf.array(), ofAnnotation + 4, buf.position() - ofAnnotation - 4);
+                outPairs.writeTo(annotations);
+                if (!fClazz)
+                    {
+                    outClazz.writeTo(annotations);
+                    }
+                fReplaced = true;
+                }
+            else
+                {
+                annotations.write(buf.array(), ofAnnotation, buf.position() - ofAnnotation);
+                }
+            }
+        if (!fReplaced)
+            {
+            annotations.writeShort(getUtf8(sAnnotation));
+            annotations.writeShort(listNames.size() + 1);
+            outPairs.writeTo(annotations);
+            outClazz.writeTo(annotations);
+            }
+        annotations.flush();
+        byte[] abAnnotations = outAnnotations.toByteArray();
+        if (!fReplaced)
+            {
+            abAnnotations[0] = (byte) ((cAnnotations + 1) >>> 8);
+            abAnnotations[1] = (byte) (cAnnotations + 1);
+            }
+
+        // copy the other attributes, replacing the annotations attribute
+        out.writeShort(cAttributes);
+        buf.position(ofAttributes);
+        for (int i = 0; i < cAttributes; i++)
+            {
+            int ofAttribute = buf.position();
+            int nAttribute  = buf.getShort() & 0xFFFF;
+            int cbValue     = buf.getInt();
+            if (buf.position() == ofAnnotations)
+                {
+                out.writeShort(nAttribute);
+                out.writeInt(abAnnotations.length);
+                out.write(abAnnotations);
+                }
+            else
+                {
+                out.write(buf.array(), ofAttribute, 6 + cbValue);
+                }
+            skip(buf, cbValue);
+            }
+        return true;
+        }
+
+    /**
+     * Return {@code true} if all values of the type with the specified descriptor are of exactly that type.
+     */
+    private boolean isMonomorphic(String sDescriptor)
+        {
+        if (sDescriptor.length() == 2 && sDescriptor.charAt(0) == '[')
+            {
+            // an array of primitives
+            return true;
+            }
+        return INTRINSIC_TYPES.contains(sDescriptor)
+               || sDescriptor.charAt(0) == 'L' && monomorphicTypes.test(sDescriptor.substring(1, sDescriptor.length() - 1));
+        }
+
+    /**
+     * Return the index of the {@code CONSTANT_Utf8} entry with the specified value, adding the entry if
+     * the constant pool does not contain it yet.
+     */
+    private int getUtf8(String sValue)
+        {
+        Integer nIndex = utf8Indexes.get(sValue);
+        if (nIndex != null)
+            {
+            return nIndex;
+            }
+
+        nIndex = newConstants.get(sValue);
+        if (nIndex == null)
+            {
+            if (nextConstant >= 0xFFFF)
+                {
+                throw new IllegalArgumentException("The constant pool is full.");
+                }
+            nIndex = nextConstant++;
+            newConstants.put(sValue, nIndex);
+            }
+        return nIndex;
+        }
+
+    private static void skip(ByteBuffer buf, int cb)
+        {
+        if (cb < 0 || cb > buf.remaining())
+            {
+            throw new BufferUnderflowException();
+            }
+        buf.position(buf.position() + cb);
+        }
+
+    private static void skipElementValue(ByteBuffer buf)
+        {
+        int nTag = buf.get() & 0xFF;
+        switch (nTag)
+            {
+            case 'e':
+                skip(buf, 4);
+                break;
+            case '@':
+                skip(buf, 2);
+                int cPairs = buf.getShort() & 0xFFFF;
+                for (int i = 0; i < cPairs; i++)
+                    {
+                    skip(buf, 2);
+                    skipElementValue(buf);
+                    }
+                break;
+            case '[':
+                int cValues = buf.getShort() & 0xFFFF;
+                for (int i = 0; i < cValues; i++)
+                    {
+                    skipElementValue(buf);
+                    }
+                break;
+            default:
+                skip(buf, 2);
+            }
+        }
+
+    private static Map<String, String> collectionAnnotations()
+        {
+        Map<String, String> map = new HashMap<>();
+        for (String sType : Arrays.asList("java/util/List", "java/util/ArrayList", "java/util/LinkedList"))
+            {
+            map.put("L" + sType + ";", PORTABLE_LIST);
+            }
+        for (String sType : Arrays.asList("java/util/Set", "java/util/HashSet", "java/util/LinkedHashSet",
+                                          "java/util/SortedSet", "java/util/NavigableSet", "java/util/TreeSet"))
+            {
+            map.put("L" + sType + ";", PORTABLE_SET);
+            }
+        for (String sType : Arrays.asList("java/util/Map", "java/util/HashMap", "java/util/LinkedHashMap",
+                                          "java/util/SortedMap", "java/util/NavigableMap", "java/util/TreeMap",
+                                          "java/util/concurrent/ConcurrentMap", "java/util/concurrent/ConcurrentHashMap"))
+            {
+            map.put("L" + sType + ";", PORTABLE_MAP);
+            }
+        return Collections.unmodifiableMap(map);
+        }
+
+    private static Map<String, String> collectionClasses()
+        {
+        Map<String, String> map = new HashMap<>();
+        for (String sType : COLLECTION_ANNOTATIONS.keySet())
+            {
+            // the concrete classes are instantiated themselves
+            map.put(sType, sType);
+            }
+        map.put("Ljava/util/List;", "Ljava/util/ArrayList;");
+        map.put("Ljava/util/Set;", "Ljava/util/HashSet;");
+        map.put("Ljava/util/SortedSet;", "Ljava/util/TreeSet;");
+        map.put("Ljava/util/NavigableSet;", "Ljava/util/TreeSet;");
+        map.put("Ljava/util/Map;", "Ljava/util/HashMap;");
+        map.put("Ljava/util/SortedMap;", "Ljava/util/TreeMap;");
+        map.put("Ljava/util/NavigableMap;", "Ljava/util/TreeMap;");
+        map.put("Ljava/util/concurrent/ConcurrentMap;", "Ljava/util/concurrent/ConcurrentHashMap;");
+        return Collections.unmodifiableMap(map);
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    private static final String ANNOTATION_PACKAGE = "Lcom/tangosol/io/pof/schema/annotation/";
+
+    private static final String PORTABLE = ANNOTATION_PACKAGE + "Portable;";
+
+    private static final String PORTABLE_LIST = ANNOTATION_PACKAGE + "PortableList;";
+
+    private static final String PORTABLE_SET = ANNOTATION_PACKAGE + "PortableSet;";
+
+    private static final String PORTABLE_MAP = ANNOTATION_PACKAGE + "PortableMap;";
+
+    /**
+     * The annotations that declare the types of a property, which are never replaced.
+     */
+    private static final Set<String> COLLECTION_ANNOTATION_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            PORTABLE_LIST, PORTABLE_SET, PORTABLE_MAP, ANNOTATION_PACKAGE + "PortableArray;",
+            ANNOTATION_PACKAGE + "PortableCollection;")));
+
+    /**
+     * The annotation added to the fields, keyed by field descriptor.
+     */
+    private static final Map<String, String> COLLECTION_ANNOTATIONS = collectionAnnotations();
+
+    /**
+     * The class the properties are deserialized into, keyed by field descriptor.
+     */
+    private static final Map<String, String> COLLECTION_CLASSES = collectionClasses();
+
+    /**
+     * The final classes that are serialized as POF intrinsics.
+     */
+    private static final Set<String> INTRINSIC_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "Ljava/lang/String;", "Ljava/lang/Boolean;", "Ljava/lang/Byte;", "Ljava/lang/Character;",
+            "Ljava/lang/Short;", "Ljava/lang/Integer;", "Ljava/lang/Long;", "Ljava/lang/Float;", "Ljava/lang/Double;")));
+
+    private static final String CLAZZ = "clazz";
+
+    private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+
+    private static final String SIGNATURE = "Signature";
+
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private static final int ACC_STATIC    = 0x0008;
+    private static final int ACC_TRANSIENT = 0x0080;
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8                = 1;
+    private static final int CONSTANT_INTEGER             = 3;
+    private static final int CONSTANT_FLOAT               = 4;
+    private static final int CONSTANT_LONG                = 5;
+    private static final int CONSTANT_DOUBLE              = 6;
+    private static final int CONSTANT_CLASS               = 7;
+    private static final int CONSTANT_STRING              = 8;
+    private static final int CONSTANT_FIELDREF            = 9;
+    private static final int CONSTANT_METHODREF           = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE       = 12;
+    private static final int CONSTANT_METHOD_HANDLE       = 15;
+    private static final int CONSTANT_METHOD_TYPE         = 16;
+    private static final int CONSTANT_DYNAMIC             = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC      = 18;
+    private static final int CONSTANT_MODULE              = 19;
+    private static final int CONSTANT_PACKAGE             = 20;
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The predicate returning {@code true} for the classes whose instances are all of exactly that class.
+     */
+    private final Predicate<String> monomorphicTypes;
+
+    /**
+     * The {@code CONSTANT_Utf8} entries of the constant pool, keyed by index.
+     */
+    private final Map<Integer, String> utf8 = new HashMap<>();
+
+    /**
+     * The indexes of the {@code CONSTANT_Utf8} entries of the constant pool, keyed by value.
+     */
+    private final Map<String, Integer> utf8Indexes = new HashMap<>();
+
+    /**
+     * The {@code CONSTANT_Utf8} entries added to the constant pool, keyed by value.
+     */
+    private final Map<String, Integer> newConstants = new LinkedHashMap<>();
+
+    /**
+     * The index of the next entry added to the constant pool.
+     */
+    private int nextConstant;
+    }
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.transform.CacheableTransform;
+import org.gradle.api.artifacts.transform.InputArtifact;
+import org.gradle.api.artifacts.transform.InputArtifactDependencies;
+import org.gradle.api.artifacts.transform.TransformAction;
+import org.gradle.api.artifacts.transform.TransformOutputs;
+import org.gradle.api.artifacts.transform.TransformParameters;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Instruments the {@code @PortableType} classes of a dependency jar. The
+ * transform is registered by the {@link CoherencePlugin} for the runtime
+ * classpaths if {@link CoherenceExtension#getInstrumentDependencies()} is
+ * enabled, so that the instrumented jars are kept in the transforms cache
+ * and shared by all projects and builds on the machine. Jars without portable
+ * types, signed jars and jars whose portable types are instrumented already
+ * are passed through unchanged.
+ *
+ * @author Gunnar Hillert
+ */
+@CacheableTransform
+public abstract class InstrumentJarTransform implements TransformAction<InstrumentJarTransform.Parameters>
+    {
+    /**
+     * The jar to instrument.
+     */
+    @InputArtifact
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public abstract Provider<FileSystemLocation> getInputArtifact();
+
+    /**
+     * The dependencies of the jar, which are read for the schema only.
+     */
+    @InputArtifactDependencies
+    @Classpath
+    public abstract FileCollection getInputArtifactDependencies();
+
+    @Override
+    public void transform(TransformOutputs outputs)
+        {
+        File jarFile = getInputArtifact().get().getAsFile();
+        try
+            {
+            Map<String, byte[]> mapPortableTypes = jarFile.isFile() ? readPortableTypes(jarFile) : null;
+            if (mapPortableTypes == null || mapPortableTypes.isEmpty())
+                {
+                outputs.file(jarFile);
+                return;
+                }
+
+            Path workDir = Files.createTempDirectory("coherence-pof-transform");
+            try
+                {
+                extract(jarFile, workDir);
+                for (String sMessage : instrument(workDir.toFile()))
+                    {
+                    LOGGER.info(sMessage);
+                    }
+
+                if (!isModified(workDir, mapPortableTypes))
+                    {
+                    LOGGER.info("The portable types of {} are already instrumented.", jarFile.getName());
+                    outputs.file(jarFile);
+                    return;
+                    }
+
+                write(jarFile, workDir, outputs.file(jarFile.getName()));
+                LOGGER.info("Instrumented {} portable types of {}.", mapPortableTypes.size(), jarFile.getName());
+                }
+            finally
+                {
+                SchemaFragmentCache.deleteRecursively(workDir);
+                }
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to instrument the portable types in " + jarFile, e);
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Return the class files of the portable types in the specified jar, keyed by entry name.
+     *
+     * @return the class files of the portable types, or {@code null} if the jar is signed
+     */
+    private static Map<String, byte[]> readPortableTypes(File jarFile) throws IOException
+        {
+        Map<String, byte[]> mapPortableTypes = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(jarFile))
+            {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+                {
+                ZipEntry zipEntry = entries.nextElement();
+                String   sName    = zipEntry.getName();
+                if (isSignature(sName))
+                    {
+                    LOGGER.warn("Skipping the instrumentation of the signed jar {}.", jarFile.getName());
+                    return null;
+                    }
+                if (zipEntry.isDirectory() || !sName.endsWith(".class"))
+                    {
+                    continue;
+                    }
+
+                byte[] abClass;
+                try (InputStream in = zip.getInputStream(zipEntry))
+                    {
+                    abClass = SchemaFragmentCache.readAllBytes(in);
+                    }
+                if (ClassFileInfo.mayBePortableType(abClass) && ClassFileInfo.parse(abClass).isPortableType())
+                    {
+                    mapPortableTypes.put(sName, abClass);
+                    }
+                }
+            }
+        return mapPortableTypes;
+        }
+
+    /**
+     * Extract the class files and the XML schema of the specified jar to the given directory.
+     */
+    private static void extract(File jarFile, Path workDir) throws IOException
+        {
+        try (ZipFile zip = new ZipFile(jarFile))
+            {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+                {
+                ZipEntry zipEntry = entries.nextElement();
+                String   sName    = zipEntry.getName();
+                if (zipEntry.isDirectory() || !(sName.endsWith(".class") || sName.equals(XML_SCHEMA)))
+                    {
+                    continue;
+                    }
+
+                Path target = resolve(workDir, sName);
+                if (!Files.exists(target))
+                    {
+                    Files.createDirectories(target.getParent());
+                    try (InputStream in = zip.getInputStream(zipEntry))
+                        {
+                        Files.copy(in, target);
+                        }
+                    }
+                }
+            }
+        }
+
+    /**
+     * Instrument the extracted jar using the {@code PortableTypeGenerator} of the configured Coherence version.
+     *
+     * @return the messages logged by the {@code PortableTypeGenerator}
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> instrument(File classesDirectory) throws IOException
+        {
+        List<URL> listUrls = new ArrayList<>();
+        for (File file : getParameters().getCoherenceClasspath())
+            {
+            listUrls.add(file.toURI().toURL());
+            }
+        listUrls.add(InstrumentJarTransform.class.getProtectionDomain().getCodeSource().getLocation());
+
+        // the instrumenter and Coherence are loaded in isolation from the build, like the instrumentation workers
+        try (URLClassLoader loader = new URLClassLoader(listUrls.toArray(new URL[0]),
+                                                        ClassLoader.getSystemClassLoader().getParent()))
+            {
+            Method method = loader.loadClass(INSTRUMENTER_CLASS).getMethod("instrument", File.class, List.class, boolean.class);
+            return (List<String>) method.invoke(null, classesDirectory,
+                    new ArrayList<>(getInputArtifactDependencies().getFiles()), getParameters().getDebug().get());
+            }
+        catch (InvocationTargetException e)
+            {
+            if (e.getCause() instanceof IOException)
+                {
+                throw (IOException) e.getCause();
+                }
+            throw new GradleException("The PortableTypeGenerator failed to instrument " + classesDirectory, e.getCause());
+            }
+        catch (ReflectiveOperationException e)
+            {
+            throw new GradleException("Unable to load the PortableTypeGenerator of Coherence.", e);
+            }
+        }
+
+    /**
+     * Return {@code true} if any of the specified portable types has been rewritten by the instrumentation.
+     */
+    private static boolean isModified(Path workDir, Map<String, byte[]> mapPortableTypes) throws IOException
+        {
+        for (Map.Entry<String, byte[]> entry : mapPortableTypes.entrySet())
+            {
+            if (!Arrays.equals(entry.getValue(), Files.readAllBytes(resolve(workDir, entry.getKey()))))
+                {
+                return true;
+                }
+            }
+        return false;
+        }
+
+    /**
+     * Write a copy of the specified jar, replacing its class files with the instrumented ones. The
+     * order and timestamps of the entries are retained.
+     */
+    private static void write(File jarFile, Path workDir, File outputFile) throws IOException
+        {
+        Set<String> setWritten = new HashSet<>();
+        try (ZipFile zip = new ZipFile(jarFile);
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(outputFile.toPath())))
+            {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+                {
+                ZipEntry zipEntry = entries.nextElement();
+                String   sName    = zipEntry.getName();
+                if (!setWritten.add(sName))
+                    {
+                    continue;
+                    }
+
+                ZipEntry target = new ZipEntry(sName);
+                target.setTime(zipEntry.getTime());
+                out.putNextEntry(target);
+                if (!zipEntry.isDirectory())
+                    {
+                    if (sName.endsWith(".class"))
+                        {
+                        Files.copy(resolve(workDir, sName), out);
+                        }
+                    else
+                        {
+                        try (InputStream in = zip.getInputStream(zipEntry))
+                            {
+                            copy(in, out);
+                            }
+                        }
+                    }
+                out.closeEntry();
+                }
+            }
+        }
+
+    private static Path resolve(Path workDir, String sName) throws IOException
+        {
+        Path path = workDir.resolve(sName).normalize();
+        if (!path.startsWith(workDir))
+            {
+            throw new IOException("Invalid jar entry " + sName);
+            }
+        return path;
+        }
+
+    private static boolean isSignature(String sName)
+        {
+        if (!sName.startsWith("META-INF/") || sName.indexOf('/', "META-INF/".length()) >= 0)
+            {
+            return false;
+            }
+        return sName.endsWith(".SF") || sName.endsWith(".RSA") || sName.endsWith(".DSA") || sName.endsWith(".EC");
+        }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException
+        {
+        byte[] abBuffer = new byte[8192];
+        int    cb;
+        while ((cb = in.read(abBuffer)) != -1)
+            {
+            out.write(abBuffer, 0, cb);
+            }
+        }
+
+    // ----- inner interface: Parameters ------------------------------------
+
+    /**
+     * The parameters of the transform.
+     */
+    public interface Parameters extends TransformParameters
+        {
+        /**
+         * The classpath of the Coherence version used for instrumentation.
+         */
+        @Classpath
+        ConfigurableFileCollection getCoherenceClasspath();
+
+        /**
+         * Whether to generate debug code.
+         */
+        @Input
+        Property<Boolean> getDebug();
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The attribute requested by the runtime classpaths to select the instrumented jars.
+     */
+    public static final Attribute<Boolean> INSTRUMENTED_ATTRIBUTE =
+            Attribute.of("com.oracle.coherence.pof.instrumented", Boolean.class);
+
+    /**
+     * The class instrumenting the extracted jars, which is loaded in isolation from the build.
+     */
+    private static final String INSTRUMENTER_CLASS = "com.oracle.coherence.gradle.PofJarInstrumenter";
+
+    /**
+     * The XML schema of a jar.
+     */
+    private static final String XML_SCHEMA = "META-INF/schema.xml";
+
+    private static final Logger LOGGER = Logging.getLogger(InstrumentJarTransform.class);
+    }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.oracle.coherence.common.schema.ClassFileSchemaSource;
+import com.oracle.coherence.common.schema.Schema;
+import com.oracle.coherence.common.schema.SchemaBuilder;
+import com.oracle.coherence.common.schema.XmlSchemaSource;
+import com.tangosol.io.pof.generator.PortableTypeGenerator;
+import com.tangosol.io.pof.schema.annotation.PortableType;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.workers.WorkAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.oracle.coherence.common.schema.ClassFileSchemaSource.Filters.hasAnnotation;
+
+/**
+ * Builds the schema and instruments the classes of a single directory. The
+ * action is executed by the Gradle Worker API in a classloader that is isolated
+ * from the build and contains the configured Coherence version. Like the other
+ * code accessing Coherence classes, i.e. the {@link PofJarInstrumenter} of the
+ * dependency jars, the {@link PofAgent} and the {@link PofSizeReportAction},
+ * it is never loaded by the classloader of the plugin itself.
+ *
+ * @author Gunnar Hillert
+ */
+public abstract class InstrumentPofAction implements WorkAction<InstrumentPofParameters>
+    {
+    @Override
+    public void execute()
+        {
+        InstrumentPofParameters parameters    = getParameters();
+        SchemaBuilder           schemaBuilder = new SchemaBuilder();
+        long                    ldtStart      = System.nanoTime();
+
+        for (File xmlSchema : parameters.getXmlSchemaFiles())
+            {
+            schemaBuilder.addSchemaSource(new XmlSchemaSource(xmlSchema));
+            }
+
+        ClassFileSchemaSource dependencies =
+                new ClassFileSchemaSource()
+                        .withTypeFilter(hasAnnotation(PortableType.class))
+                        .withPropertyFilter(fieldNode -> false);
+        for (File fragment : parameters.getDependencyFragments())
+            {
+            dependencies.withClassesFromDirectory(fragment);
+            }
+
+        ClassFileSchemaSource source =
+                new ClassFileSchemaSource()
+                        .withTypeFilter(hasAnnotation(PortableType.class))
+                        .withMissingPropertiesAsObject();
+        for (File classesDir : parameters.getClassesDirectories())
+            {
+            source.withClassesFromDirectory(classesDir);
+            }
+
+        Schema schema = schemaBuilder
+                .addSchemaSource(dependencies)
+                .addSchemaSource(source)
+                .build();
+
+        long ldtSchemaBuilt = System.nanoTime();
+
+        File instrumentDirectory = parameters.getInstrumentDirectory().getAsFile().get();
+        try
+            {
+            PortableTypeGenerator.instrumentClasses(instrumentDirectory, schema, parameters.getDebug().get(),
+                    new GradleLogger(LOGGER));
+
+            Properties metrics = new Properties();
+            metrics.setProperty(InstrumentationMetrics.PHASE_SCHEMA,
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(ldtSchemaBuilt - ldtStart)));
+            metrics.setProperty(InstrumentationMetrics.PHASE_GENERATE,
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ldtSchemaBuilt)));
+            try (OutputStream out = Files.newOutputStream(parameters.getMetricsFile().getAsFile().get().toPath()))
+                {
+                metrics.store(out, null);
+                }
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to instrument the classes in " + instrumentDirectory, e);
+            }
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    private static final Logger LOGGER = Logging.getLogger(InstrumentPofAction.class);
+    }
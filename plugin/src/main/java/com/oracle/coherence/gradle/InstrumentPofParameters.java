@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * The parameters of the {@link InstrumentPofAction}.
+ *
+ * @author Gunnar Hillert
+ */
+public interface InstrumentPofParameters extends WorkParameters
+    {
+    /**
+     * The {@code META-INF/schema.xml} files to add to the schema.
+     */
+    ConfigurableFileCollection getXmlSchemaFiles();
+
+    /**
+     * The directories containing the portable types of the dependencies, in classpath order.
+     */
+    ConfigurableFileCollection getDependencyFragments();
+
+    /**
+     * The (non-instrumented) classes directories of the project that make up the schema.
+     */
+    ConfigurableFileCollection getClassesDirectories();
+
+    /**
+     * The directory containing the classes to instrument.
+     */
+    DirectoryProperty getInstrumentDirectory();
+
+    /**
+     * Whether the {@code PortableTypeGenerator} should generate debug code.
+     */
+    Property<Boolean> getDebug();
+
+    /**
+     * The file the action writes the time spent building the schema and
+     * instrumenting the classes to.
+     */
+    RegularFileProperty getMetricsFile();
+    }
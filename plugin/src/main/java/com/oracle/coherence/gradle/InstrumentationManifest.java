@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records the state of previously instrumented classes. For each portable type
+ * the manifest holds the hash of the class before and after instrumentation,
+ * together with the fingerprint of the schema it was instrumented with. The
+ * instrumented class files themselves are kept in the manifest's directory,
+ * keyed by their hash, so that a class whose bytes and schema are unchanged
+ * can be restored without being instrumented again, even after the task's
+ * outputs have been removed.
+ *
+ * @author Gunnar Hillert
+ */
+final class InstrumentationManifest
+    {
+    private InstrumentationManifest(Path directory, String schemaFingerprint)
+        {
+        this.directory         = directory;
+        this.schemaFingerprint = schemaFingerprint;
+        }
+
+    // ----- factory methods ------------------------------------------------
+
+    /**
+     * Load the manifest stored in the specified directory. Entries recorded
+     * with a different schema fingerprint are discarded.
+     *
+     * @param directory          the directory holding the manifest
+     * @param schemaFingerprint  the fingerprint of the schema used for this execution
+     *
+     * @return the manifest
+     */
+    static InstrumentationManifest load(File directory, String schemaFingerprint)
+        {
+        InstrumentationManifest manifest = new InstrumentationManifest(directory.toPath(), schemaFingerprint);
+        Path                    file     = manifest.directory.resolve(MANIFEST);
+        if (!Files.isRegularFile(file))
+            {
+            return manifest;
+            }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+            {
+            if (!schemaFingerprint.equals(reader.readLine()))
+                {
+                return manifest;
+                }
+
+            String sLine;
+            while ((sLine = reader.readLine()) != null)
+                {
+                String[] asPart = sLine.split("\t", -1);
+                if (asPart.length != 4)
+                    {
+                    manifest.entries.clear();
+                    return manifest;
+                    }
+                manifest.entries.put(key(new File(asPart[0]), asPart[1]), new Entry(asPart[2], asPart[3]));
+                }
+            }
+        catch (IOException e)
+            {
+            manifest.entries.clear();
+            }
+        return manifest;
+        }
+
+    /**
+     * Compute the fingerprint of the instrumentation with the specified parameters and the schema
+     * built from the specified files.
+     *
+     * @param listParameters     the parameters affecting the generated bytecode, e.g. the version of
+     *                           Coherence used for instrumentation and whether debug code is generated
+     * @param listSchemaSources  the XML schema files and the directories holding portable types
+     *
+     * @return the fingerprint of the instrumentation
+     *
+     * @throws IOException if one of the files cannot be read
+     */
+    static String fingerprint(List<String> listParameters, List<File> listSchemaSources) throws IOException
+        {
+        MessageDigest digest = newDigest();
+        for (String sParameter : listParameters)
+            {
+            digest.update(sParameter.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            }
+        for (File source : listSchemaSources)
+            {
+            Path root = source.toPath();
+            List<Path> listFiles;
+            try (Stream<Path> stream = Files.walk(root))
+                {
+                listFiles = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+            for (Path file : listFiles)
+                {
+                digest.update((byte) 0);
+                digest.update(root.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(file));
+                }
+            }
+        return toHex(digest.digest());
+        }
+
+    /**
+     * Compute the fingerprint of the portable types in the specified directories, i.e. of their names,
+     * type identifiers, versions, super types, serialized fields and whether they are final or enums,
+     * which decides whether the element types of collection properties are added to the schema. Unlike the bytes of the class files,
+     * the fingerprint does not change if a portable type is merely recompiled, e.g. with different line
+     * numbers, or if the jar it was extracted from has changed in any other way.
+     *
+     * @param listDirectories  the directories holding the portable types, in classpath order
+     *
+     * @return the fingerprint of the portable types
+     *
+     * @throws IOException if a class file cannot be read
+     */
+    static String fingerprintPortableTypes(List<File> listDirectories) throws IOException
+        {
+        MessageDigest digest = newDigest();
+        for (File directory : listDirectories)
+            {
+            List<Path> listFiles;
+            try (Stream<Path> stream = Files.walk(directory.toPath()))
+                {
+                listFiles = stream.filter(PortableTypeIndex::isClassFile).sorted().collect(Collectors.toList());
+                }
+
+            digest.update((byte) 1);
+            for (Path file : listFiles)
+                {
+                ClassFileInfo info = ClassFileInfo.parse(file);
+                StringBuilder sb   = new StringBuilder();
+                sb.append(info.getClassName()).append('\t').append(info.getSuperName())
+                  .append('\t').append(String.join(",", info.getInterfaces()))
+                  .append('\t').append(info.getTypeId()).append('\t').append(info.getTypeVersion())
+                  .append('\t').append(info.isFinal()).append('\t').append(info.isEnum());
+                for (ClassFileInfo.FieldInfo field : info.getFields())
+                    {
+                    if (field.isSerialized())
+                        {
+                        sb.append('\t').append(field.getName()).append(':').append(field.getDescriptor())
+                          .append(':').append(field.getSignature());
+                        }
+                    }
+                digest.update((byte) 0);
+                digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        return toHex(digest.digest());
+        }
+
+    // ----- InstrumentationManifest methods --------------------------------
+
+    /**
+     * Bring the output of the specified class up to date without instrumenting
+     * it, if it has been instrumented before from identical bytes and with the
+     * same schema.
+     *
+     * @param classesDirectory  the classes directory of the class
+     * @param sRelativePath     the path of the class file, relative to the classes directory
+     * @param outputDirectory   the output directory of the classes directory
+     *
+     * @return {@code true} if the output is up to date and the class does not
+     *         need to be instrumented
+     *
+     * @throws IOException if a class file cannot be read or written
+     */
+    boolean restore(File classesDirectory, String sRelativePath, File outputDirectory) throws IOException
+        {
+        Entry entry = entries.get(key(classesDirectory, sRelativePath));
+        if (entry == null || !entry.preHash.equals(hash(classesDirectory.toPath().resolve(sRelativePath))))
+            {
+            return false;
+            }
+
+        Path output = outputDirectory.toPath().resolve(sRelativePath);
+        if (Files.isRegularFile(output) && entry.postHash.equals(hash(output)))
+            {
+            return true;
+            }
+
+        Path instrumented = getClassesDirectory().resolve(entry.postHash);
+        if (!Files.isRegularFile(instrumented))
+            {
+            return false;
+            }
+        Files.createDirectories(output.getParent());
+        Files.copy(instrumented, output, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+        }
+
+    /**
+     * Record the instrumentation of the specified class.
+     *
+     * @param classesDirectory  the classes directory of the class
+     * @param sRelativePath     the path of the class file, relative to the classes directory
+     * @param outputDirectory   the output directory holding the instrumented class
+     *
+     * @return {@code true} if the class has been rewritten by the instrumentation
+     *
+     * @throws IOException if a class file cannot be read or written
+     */
+    boolean record(File classesDirectory, String sRelativePath, File outputDirectory) throws IOException
+        {
+        Path   output    = outputDirectory.toPath().resolve(sRelativePath);
+        String sPostHash = hash(output);
+        Path   target    = getClassesDirectory().resolve(sPostHash);
+        if (!Files.exists(target))
+            {
+            Files.createDirectories(target.getParent());
+            Files.copy(output, target);
+            }
+        String sPreHash = hash(classesDirectory.toPath().resolve(sRelativePath));
+        entries.put(key(classesDirectory, sRelativePath), new Entry(sPreHash, sPostHash));
+        return !sPreHash.equals(sPostHash);
+        }
+
+    /**
+     * Remove the entries of all classes that are not portable types anymore.
+     *
+     * @param mapPortableTypes  the current portable types, keyed by their classes directory
+     */
+    void retain(Map<File, Set<String>> mapPortableTypes)
+        {
+        Set<String> setKeys = new HashSet<>();
+        mapPortableTypes.forEach((dir, setPaths) -> setPaths.forEach(sPath -> setKeys.add(key(dir, sPath))));
+        entries.keySet().retainAll(setKeys);
+        }
+
+    /**
+     * Store this manifest and remove the instrumented class files that are no
+     * longer referenced by it.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    void store() throws IOException
+        {
+        Files.createDirectories(directory);
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(MANIFEST), StandardCharsets.UTF_8))
+            {
+            writer.write(schemaFingerprint);
+            writer.newLine();
+            for (Map.Entry<String, Entry> mapEntry : new TreeMap<>(entries).entrySet())
+                {
+                writer.write(mapEntry.getKey() + '\t' + mapEntry.getValue().preHash + '\t' + mapEntry.getValue().postHash);
+                writer.newLine();
+                }
+            }
+
+        Path classes = getClassesDirectory();
+        if (Files.isDirectory(classes))
+            {
+            Set<String> setReferenced = entries.values().stream().map(e -> e.postHash).collect(Collectors.toSet());
+            try (Stream<Path> stream = Files.list(classes))
+                {
+                for (Path file : stream.collect(Collectors.toList()))
+                    {
+                    if (!setReferenced.contains(file.getFileName().toString()))
+                        {
+                        Files.delete(file);
+                        }
+                    }
+                }
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private Path getClassesDirectory()
+        {
+        return directory.resolve(CLASSES);
+        }
+
+    private static String key(File classesDirectory, String sRelativePath)
+        {
+        return classesDirectory.getAbsolutePath() + '\t' + sRelativePath;
+        }
+
+    private static String hash(Path file) throws IOException
+        {
+        return toHex(newDigest().digest(Files.readAllBytes(file)));
+        }
+
+    private static MessageDigest newDigest()
+        {
+        try
+            {
+            return MessageDigest.getInstance("SHA-256");
+            }
+        catch (NoSuchAlgorithmException e)
+            {
+            throw new IllegalStateException(e);
+            }
+        }
+
+    private static String toHex(byte[] abDigest)
+        {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : abDigest)
+            {
+            sb.append(String.format("%02x", b));
+            }
+        return sb.toString();
+        }
+
+    // ----- inner class: Entry ---------------------------------------------
+
+    /**
+     * The recorded state of a single instrumented class.
+     */
+    private static final class Entry
+        {
+        Entry(String preHash, String postHash)
+            {
+            this.preHash  = preHash;
+            this.postHash = postHash;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        /**
+         * The hash of the class file before instrumentation.
+         */
+        private final String preHash;
+
+        /**
+         * The hash of the class file after instrumentation.
+         */
+        private final String postHash;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The name of the manifest file.
+     */
+    private static final String MANIFEST = "instrumentation.manifest";
+
+    /**
+     * The name of the directory holding the instrumented class files, keyed by their hash.
+     */
+    private static final String CLASSES = "classes";
+
+    // ----- data members ---------------------------------------------------
+
+    private final Path directory;
+
+    private final String schemaFingerprint;
+
+    /**
+     * The manifest entries keyed by classes directory and relative path.
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+    }
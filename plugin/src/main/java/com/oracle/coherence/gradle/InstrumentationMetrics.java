@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the wall time of the phases of a single execution of the
+ * {@link CoherenceTask} or the {@link DependencySchemaTask}, together with
+ * counters of the work done in each phase, and writes them as a JSON report.
+ *
+ * @author Gunnar Hillert
+ */
+final class InstrumentationMetrics
+    {
+    // ----- InstrumentationMetrics methods ---------------------------------
+
+    /**
+     * Record the time elapsed since the specified start time for the given phase.
+     *
+     * @param sPhase         the name of the phase
+     * @param ldtStartNanos  the start of the phase, as returned by {@link System#nanoTime()}
+     */
+    void recordPhase(String sPhase, long ldtStartNanos)
+        {
+        addPhaseTime(sPhase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ldtStartNanos));
+        }
+
+    /**
+     * Add the specified time to the given phase.
+     *
+     * @param sPhase   the name of the phase
+     * @param cMillis  the time to add, in milliseconds
+     */
+    void addPhaseTime(String sPhase, long cMillis)
+        {
+        phases.merge(sPhase, cMillis, Long::sum);
+        }
+
+    /**
+     * Add the specified amount to the given counter.
+     *
+     * @param sCounter  the name of the counter
+     * @param c         the amount to add
+     */
+    void increment(String sCounter, long c)
+        {
+        counters.merge(sCounter, c, Long::sum);
+        }
+
+    /**
+     * Return the value of the specified counter.
+     *
+     * @param sCounter  the name of the counter
+     *
+     * @return the value of the counter, or zero if it has not been incremented
+     */
+    long getCounter(String sCounter)
+        {
+        return counters.getOrDefault(sCounter, 0L);
+        }
+
+    /**
+     * Return the time recorded for the specified phase.
+     *
+     * @param sPhase  the name of the phase
+     *
+     * @return the time of the phase in milliseconds, or zero if it has not been recorded
+     */
+    long getPhaseTime(String sPhase)
+        {
+        return phases.getOrDefault(sPhase, 0L);
+        }
+
+    /**
+     * Write the metrics to the specified file as JSON.
+     *
+     * @param file          the report file
+     * @param sTaskPath     the path of the task the metrics were collected for
+     * @param fIncremental  whether the execution was incremental
+     *
+     * @throws IOException if the report cannot be written
+     */
+    void writeJson(File file, String sTaskPath, boolean fIncremental) throws IOException
+        {
+        Files.createDirectories(file.toPath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+            {
+            writer.write("{\n");
+            writer.write("  \"task\": \"" + sTaskPath + "\",\n");
+            writer.write("  \"incremental\": " + fIncremental + ",\n");
+            writer.write("  \"phasesMillis\": ");
+            writeObject(writer, phases);
+            writer.write(",\n  \"counters\": ");
+            writeObject(writer, counters);
+            writer.write("\n}\n");
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private static void writeObject(BufferedWriter writer, Map<String, Long> map) throws IOException
+        {
+        writer.write("{");
+        String sSeparator = "\n";
+        for (Map.Entry<String, Long> entry : map.entrySet())
+            {
+            writer.write(sSeparator + "    \"" + entry.getKey() + "\": " + entry.getValue());
+            sSeparator = ",\n";
+            }
+        writer.write(map.isEmpty() ? "}" : "\n  }");
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * Indexing the project's classes directories.
+     */
+    static final String PHASE_INDEX = "indexClasses";
+
+    /**
+     * Resolving the dependencies to scan for portable types.
+     */
+    static final String PHASE_RESOLVE = "resolveDependencies";
+
+    /**
+     * Scanning the dependencies for portable types.
+     */
+    static final String PHASE_SCAN = "scanDependencies";
+
+    /**
+     * Restoring previously instrumented classes from the instrumentation manifest.
+     */
+    static final String PHASE_RESTORE = "restoreClasses";
+
+    /**
+     * Building the schema in the instrumentation workers, including parsing the XML schemas;
+     * summed across all workers.
+     */
+    static final String PHASE_SCHEMA = "buildSchema";
+
+    /**
+     * Running the {@code PortableTypeGenerator} in the instrumentation workers; summed across all workers.
+     */
+    static final String PHASE_GENERATE = "generateClasses";
+
+    /**
+     * The wall time of all instrumentation workers.
+     */
+    static final String PHASE_INSTRUMENT = "instrument";
+
+    /**
+     * The whole execution of the task.
+     */
+    static final String PHASE_TOTAL = "total";
+
+    static final String COUNT_JARS = "jarsScanned";
+
+    static final String COUNT_JARS_CACHED = "jarsFromCache";
+
+    static final String COUNT_JARS_SHARED = "jarsSharedInBuild";
+
+    static final String COUNT_JARS_INDEXED = "jarsWithSchemaIndex";
+
+    static final String COUNT_DIRECTORIES = "classDirectoriesScanned";
+
+    static final String COUNT_CLASSES_PARSED = "classesParsed";
+
+    static final String COUNT_PORTABLE_TYPES = "portableTypesFound";
+
+    static final String COUNT_DEPENDENCY_PORTABLE_TYPES = "dependencyPortableTypesFound";
+
+    static final String COUNT_DEPENDENCY_PORTABLE_TYPES_USED = "dependencyPortableTypesUsed";
+
+    static final String COUNT_RESTORED = "classesRestored";
+
+    static final String COUNT_REWRITTEN = "classesRewritten";
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The time of each phase in milliseconds, in the order the phases were first recorded.
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * The counters, in the order they were first incremented.
+     */
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    }
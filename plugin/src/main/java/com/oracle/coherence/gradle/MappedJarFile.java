@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only view of a jar file that is memory-mapped rather than read through
+ * {@link java.util.zip.ZipFile}. The central directory is read directly from the
+ * mapped file, and class file entries are only inflated as far as needed to
+ * check their constant pool for the {@code @PortableType} descriptor. Entries
+ * are inflated in full only if they pass that check, using buffers that are
+ * reused across entries.
+ * <p>
+ * Jars that cannot be mapped this way, i.e. ZIP64 archives, archives larger than
+ * 2GB, archives with encrypted entries or unsupported compression methods and
+ * archives whose central directory is malformed or inconsistent with the size of
+ * the file, are rejected by {@link #open(File)}, so that the caller can fall back
+ * to {@link java.util.zip.ZipFile}, which reads them or reports the problem.
+ * Instances are not thread-safe.
+ * <p>
+ * A mapping cannot be released explicitly; it is released once the buffer has
+ * been garbage collected. As Windows does not allow a mapped file to be deleted
+ * or replaced, which would prevent e.g. a {@code clean} of a project whose jars
+ * are on the classpath while the daemon is running, all jars are rejected on
+ * Windows and read through {@link java.util.zip.ZipFile}, which neither maps them
+ * nor holds them in the heap.
+ *
+ * @author Gunnar Hillert
+ */
+final class MappedJarFile
+        implements Closeable
+    {
+    private MappedJarFile(File file, ByteBuffer buffer, List<Entry> entries, Entry schemaIndex)
+        {
+        this.file        = file;
+        this.buffer      = buffer;
+        this.entries     = entries;
+        this.schemaIndex = schemaIndex;
+        }
+
+    // ----- factory methods ------------------------------------------------
+
+    /**
+     * Map the specified jar file and read its central directory.
+     *
+     * @param file  the jar file
+     *
+     * @return the mapped jar file, or {@code null} if the jar file cannot be
+     *         mapped, or the build runs on Windows, and has to be read through
+     *         {@link java.util.zip.ZipFile}
+     *
+     * @throws IOException if the jar file cannot be read
+     */
+    static MappedJarFile open(File file) throws IOException
+        {
+        if (WINDOWS)
+            {
+            return null;
+            }
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+            long cbFile = channel.size();
+            if (cbFile > Integer.MAX_VALUE)
+                {
+                return null;
+                }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, cbFile);
+            }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try
+            {
+            List<Entry> listEntries = readCentralDirectory(buffer);
+            if (listEntries == null)
+                {
+                return null;
+                }
+
+            List<Entry> listClasses = new ArrayList<>(listEntries.size());
+            Entry       schemaIndex = null;
+            for (Entry entry : listEntries)
+                {
+                if (entry.getName().equals(SchemaIndexResource.RESOURCE))
+                    {
+                    schemaIndex = entry;
+                    }
+                else
+                    {
+                    listClasses.add(entry);
+                    }
+                }
+            return new MappedJarFile(file, buffer, Collections.unmodifiableList(listClasses), schemaIndex);
+            }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e)
+            {
+            return null;
+            }
+        }
+
+    // ----- MappedJarFile methods ------------------------------------------
+
+    /**
+     * Return the class file entries of the jar, in central directory order.
+     *
+     * @return the class file entries
+     */
+    List<Entry> getClassEntries()
+        {
+        return entries;
+        }
+
+    /**
+     * Return the {@link SchemaIndexResource schema index} entry of the jar.
+     *
+     * @return the schema index entry, or {@code null} if the jar does not have a schema index
+     */
+    Entry getSchemaIndexEntry()
+        {
+        return schemaIndex;
+        }
+
+    /**
+     * Return {@code true} if the specified entry may be a portable type. Only the
+     * beginning of the entry, up to the end of its constant pool, is inflated.
+     *
+     * @param entry  the class file entry
+     *
+     * @return {@code false} if the entry is definitely not a portable type
+     *
+     * @throws IOException if the entry cannot be inflated or is not a valid class file
+     */
+    boolean mayBePortableType(Entry entry) throws IOException
+        {
+        if (entry.method == METHOD_STORED)
+            {
+            ByteBuffer buf = slice(entry.dataOffset, entry.uncompressedSize);
+            try
+                {
+                return ClassFileInfo.mayBePortableType(buf);
+                }
+            catch (BufferUnderflowException e)
+                {
+                throw new ZipException("Malformed class file " + entry.getName() + " in " + file + ".");
+                }
+            }
+
+        int cbTarget = PRECHECK_SIZE;
+        while (true)
+            {
+            int cbInflated = inflate(entry, Math.min(cbTarget, entry.uncompressedSize));
+            try
+                {
+                return ClassFileInfo.mayBePortableType(ByteBuffer.wrap(output, 0, cbInflated));
+                }
+            catch (BufferUnderflowException e)
+                {
+                if (cbInflated == entry.uncompressedSize)
+                    {
+                    throw new ZipException("Malformed class file " + entry.getName() + " in " + file + ".");
+                    }
+                cbTarget *= 2;
+                }
+            }
+        }
+
+    /**
+     * Return the content of the specified entry. If the entry has just been
+     * checked by {@link #mayBePortableType(Entry)}, inflation continues where
+     * that check stopped.
+     *
+     * @param entry  the entry
+     *
+     * @return the content of the entry
+     *
+     * @throws IOException if the entry cannot be inflated or fails its CRC check
+     */
+    byte[] read(Entry entry) throws IOException
+        {
+        byte[] abContent;
+        if (entry.method == METHOD_STORED)
+            {
+            abContent = new byte[entry.uncompressedSize];
+            slice(entry.dataOffset, entry.uncompressedSize).get(abContent);
+            }
+        else
+            {
+            int cb = inflate(entry, entry.uncompressedSize);
+            if (cb != entry.uncompressedSize)
+                {
+                throw new ZipException("Unexpected end of " + entry.getName() + " in " + file + ".");
+                }
+            abContent = Arrays.copyOf(output, cb);
+            }
+
+        CRC32 crc = new CRC32();
+        crc.update(abContent, 0, abContent.length);
+        if (crc.getValue() != entry.crc)
+            {
+            throw new ZipException("Invalid CRC for " + entry.getName() + " in " + file + ".");
+            }
+        return abContent;
+        }
+
+    @Override
+    public void close()
+        {
+        // the mapping itself is released once the buffer is garbage collected, see the class documentation
+        inflater.end();
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Read the central directory of the specified mapped jar file.
+     *
+     * @return the class file entries and the schema index entry, or {@code null}
+     *         if the jar uses features this reader does not support, or if its
+     *         central directory is malformed
+     */
+    private static List<Entry> readCentralDirectory(ByteBuffer buffer)
+        {
+        int ofEnd = findEndOfCentralDirectory(buffer);
+        if (ofEnd < 0)
+            {
+            return null;
+            }
+
+        int  cEntries    = buffer.getShort(ofEnd + 10) & 0xFFFF;
+        long ofDirectory = buffer.getInt(ofEnd + 16) & 0xFFFFFFFFL;
+        if (cEntries == 0xFFFF || ofDirectory == 0xFFFFFFFFL)
+            {
+            return null; // ZIP64
+            }
+        if (ofDirectory > ofEnd)
+            {
+            return null;
+            }
+
+        List<Entry> listEntries = new ArrayList<>();
+        int         of          = (int) ofDirectory;
+        for (int i = 0; i < cEntries; i++)
+            {
+            if (of + CENTRAL_DIRECTORY_HEADER_SIZE > ofEnd || buffer.getInt(of) != CENTRAL_DIRECTORY_SIGNATURE)
+                {
+                return null;
+                }
+
+            int  nFlags         = buffer.getShort(of + 8) & 0xFFFF;
+            int  nMethod        = buffer.getShort(of + 10) & 0xFFFF;
+            long lCrc           = buffer.getInt(of + 16) & 0xFFFFFFFFL;
+            long cbCompressed   = buffer.getInt(of + 20) & 0xFFFFFFFFL;
+            long cbUncompressed = buffer.getInt(of + 24) & 0xFFFFFFFFL;
+            int  cbName         = buffer.getShort(of + 28) & 0xFFFF;
+            int  cbExtra        = buffer.getShort(of + 30) & 0xFFFF;
+            int  cbComment      = buffer.getShort(of + 32) & 0xFFFF;
+            long ofLocal        = buffer.getInt(of + 42) & 0xFFFFFFFFL;
+            int  ofName         = of + 46;
+
+            of = ofName + cbName + cbExtra + cbComment;
+            if (of > ofEnd)
+                {
+                return null;
+                }
+
+            if (!endsWith(buffer, ofName, cbName, CLASS_SUFFIX) && !isSchemaIndex(buffer, ofName, cbName))
+                {
+                continue;
+                }
+            if ((nFlags & FLAG_ENCRYPTED) != 0
+                || (nMethod != METHOD_STORED && nMethod != METHOD_DEFLATED)
+                || cbCompressed == 0xFFFFFFFFL || cbUncompressed == 0xFFFFFFFFL || ofLocal == 0xFFFFFFFFL)
+                {
+                return null;
+                }
+
+            // the sizes in the central directory are valid for entries with a data descriptor too; reject
+            // entries whose data does not fit the file, or whose uncompressed size cannot be held in an array
+            if (ofLocal + LOCAL_HEADER_SIZE > ofDirectory
+                || cbUncompressed > MAX_ENTRY_SIZE
+                || nMethod == METHOD_STORED && cbCompressed != cbUncompressed)
+                {
+                return null;
+                }
+
+            int ofLocalHeader = (int) ofLocal;
+            if (buffer.getInt(ofLocalHeader) != LOCAL_HEADER_SIGNATURE)
+                {
+                return null;
+                }
+            long ofData = ofLocalHeader + LOCAL_HEADER_SIZE
+                          + (buffer.getShort(ofLocalHeader + 26) & 0xFFFF)
+                          + (buffer.getShort(ofLocalHeader + 28) & 0xFFFF);
+            if (ofData + cbCompressed > ofDirectory)
+                {
+                return null;
+                }
+
+            byte[] abName = new byte[cbName];
+            ((ByteBuffer) buffer.duplicate().position(ofName)).get(abName);
+
+            listEntries.add(new Entry(new String(abName, StandardCharsets.UTF_8), nMethod, lCrc,
+                                      (int) ofData, (int) cbCompressed, (int) cbUncompressed));
+            }
+        return listEntries;
+        }
+
+    /**
+     * Return the offset of the end of central directory record, or {@code -1} if there is none.
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer buffer)
+        {
+        int ofMin = Math.max(0, buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE);
+        for (int of = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; of >= ofMin; of--)
+            {
+            if (buffer.getInt(of) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                {
+                return of;
+                }
+            }
+        return -1;
+        }
+
+    private static boolean endsWith(ByteBuffer buffer, int of, int cb, byte[] abSuffix)
+        {
+        if (cb < abSuffix.length)
+            {
+            return false;
+            }
+        for (int i = 0; i < abSuffix.length; i++)
+            {
+            if (buffer.get(of + cb - abSuffix.length + i) != abSuffix[i])
+                {
+                return false;
+                }
+            }
+        return true;
+        }
+
+    private static boolean isSchemaIndex(ByteBuffer buffer, int of, int cb)
+        {
+        return cb == SCHEMA_INDEX_NAME.length && endsWith(buffer, of, cb, SCHEMA_INDEX_NAME);
+        }
+
+    private ByteBuffer slice(int of, int cb)
+        {
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(of);
+        buf.limit(of + cb);
+        return buf.slice();
+        }
+
+    /**
+     * Inflate the specified entry into the output buffer until at least the
+     * given number of bytes are available, continuing the inflation of the
+     * previous call if it was for the same entry.
+     *
+     * @return the number of inflated bytes in the output buffer
+     */
+    private int inflate(Entry entry, int cbTarget) throws IOException
+        {
+        if (current != entry)
+            {
+            inflater.reset();
+            current    = entry;
+            ofInput    = entry.dataOffset;
+            cbInflated = 0;
+            if (output.length < entry.uncompressedSize)
+                {
+                output = new byte[Math.max(entry.uncompressedSize, output.length * 2)];
+                }
+            }
+
+        int ofInputEnd = entry.dataOffset + entry.compressedSize;
+        try
+            {
+            while (cbInflated < cbTarget && !inflater.finished())
+                {
+                if (inflater.needsDictionary())
+                    {
+                    throw new ZipException("Unable to inflate " + entry.getName() + " in " + file + ".");
+                    }
+                if (inflater.needsInput())
+                    {
+                    int cb = Math.min(input.length, ofInputEnd - ofInput);
+                    if (cb < 0)
+                        {
+                        throw new ZipException("Unexpected end of " + entry.getName() + " in " + file + ".");
+                        }
+                    if (cb == 0)
+                        {
+                        // like ZipFile, supply a dummy byte the inflater may need to detect the end of raw data
+                        input[0] = 0;
+                        cb       = 1;
+                        }
+                    else
+                        {
+                        slice(ofInput, cb).get(input, 0, cb);
+                        }
+                    inflater.setInput(input, 0, cb);
+                    ofInput += cb;
+                    }
+                cbInflated += inflater.inflate(output, cbInflated, entry.uncompressedSize - cbInflated);
+                }
+            }
+        catch (DataFormatException e)
+            {
+            throw new ZipException("Unable to inflate " + entry.getName() + " in " + file + ": " + e.getMessage());
+            }
+        return cbInflated;
+        }
+
+    // ----- inner class: Entry ---------------------------------------------
+
+    /**
+     * A class file or schema index entry of a {@link MappedJarFile}.
+     */
+    static final class Entry
+        {
+        Entry(String name, int method, long crc, int dataOffset, int compressedSize, int uncompressedSize)
+            {
+            this.name             = name;
+            this.method           = method;
+            this.crc              = crc;
+            this.dataOffset       = dataOffset;
+            this.compressedSize   = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+            }
+
+        /**
+         * Return the name of the entry, e.g. {@code petstore/Dog.class}.
+         *
+         * @return the name of the entry
+         */
+        String getName()
+            {
+            return name;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final String name;
+
+        private final int method;
+
+        private final long crc;
+
+        private final int dataOffset;
+
+        private final int compressedSize;
+
+        private final int uncompressedSize;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int FLAG_ENCRYPTED = 0x1;
+
+    private static final int METHOD_STORED = 0;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final byte[] CLASS_SUFFIX = ".class".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SCHEMA_INDEX_NAME = SchemaIndexResource.RESOURCE.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The number of bytes initially inflated to check the constant pool of an
+     * entry; doubled until the constant pool has been read in full.
+     */
+    private static final int PRECHECK_SIZE = 4 * 1024;
+
+    /**
+     * The largest uncompressed entry size supported, i.e. the largest array size supported by the JVM.
+     */
+    private static final long MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Whether the build runs on Windows, where jars are read through {@link java.util.zip.ZipFile} rather than mapped.
+     */
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+
+    // ----- data members ---------------------------------------------------
+
+    private final File file;
+
+    /**
+     * The mapped content of the jar file.
+     */
+    private final ByteBuffer buffer;
+
+    private final List<Entry> entries;
+
+    private final Entry schemaIndex;
+
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * The buffer compressed data is copied to from the mapped file, reused across entries.
+     */
+    private final byte[] input = new byte[8 * 1024];
+
+    /**
+     * The buffer entries are inflated into, reused across entries.
+     */
+    private byte[] output = new byte[64 * 1024];
+
+    /**
+     * The entry currently being inflated.
+     */
+    private Entry current;
+
+    /**
+     * The offset of the next compressed byte of the current entry.
+     */
+    private int ofInput;
+
+    /**
+     * The number of inflated bytes of the current entry.
+     */
+    private int cbInflated;
+    }
@@ -7,11 +7,6 @@
 package com.oracle.coherence.gradle;
 
 import org.gradle.api.Project;
-import org.gradle.api.file.Directory;
-import org.gradle.api.plugins.JavaPluginExtension;
-import org.gradle.api.tasks.SourceSet;
-
-import java.io.File;
 
 /**
  * @author Gunnar Hillert
@@ -28,80 +23,4 @@ public final class PluginUtils
         String gradleVersion = project.getGradle().getGradleVersion();
         return Integer.parseInt(gradleVersion.substring(0, gradleVersion.indexOf(".")));
         }
-
-    static Directory getMainJavaOutputDir(Project project)
-        {
-        JavaPluginExtension javaPluginExtension = project.getExtensions().getByType(JavaPluginExtension.class);
-        SourceSet sourceSet = javaPluginExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
-
-        Directory classesDir = sourceSet.getJava().getClassesDirectory().getOrNull();
-
-        if (classesDir == null)
-            {
-            project.getLogger().warn("Main Java output directory not available.");
-            }
-        else
-            {
-            project.getLogger().warn("Main Java output directory: {}.", classesDir.getAsFile().getAbsolutePath());
-            }
-        return classesDir;
-        }
-
-    static File getMainResourcesOutputDir(Project project)
-        {
-        JavaPluginExtension javaPluginExtension = project.getExtensions().getByType(JavaPluginExtension.class);
-        SourceSet sourceSet = javaPluginExtension.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
-
-        File classesDir = sourceSet.getOutput().getResourcesDir();
-
-        if (classesDir == null)
-            {
-            project.getLogger().warn("Main Resources output directory not available.");
-            }
-        else
-            {
-            project.getLogger().warn("Main Resources output directory: {}.", classesDir.getAbsolutePath());
-            }
-
-        return classesDir;
-        }
-
-    static Directory getTestJavaOutputDir(Project project)
-        {
-        JavaPluginExtension javaPluginExtension = project.getExtensions().getByType(JavaPluginExtension.class);
-        SourceSet sourceSet = javaPluginExtension.getSourceSets().getByName(SourceSet.TEST_SOURCE_SET_NAME);
-
-        Directory classesDir = sourceSet.getJava().getClassesDirectory().getOrNull();
-
-        if (classesDir == null)
-            {
-            project.getLogger().warn("Test Java output directory not available.");
-            }
-        else
-            {
-            project.getLogger().warn("Test Java output directory: {}.", classesDir.getAsFile().getAbsolutePath());
-            }
-
-        return classesDir;
-        }
-
-    static File getTestResourcesOutputDir(Project project)
-        {
-        JavaPluginExtension javaPluginExtension = project.getExtensions().getByType(JavaPluginExtension.class);
-        SourceSet sourceSet = javaPluginExtension.getSourceSets().getByName(SourceSet.TEST_SOURCE_SET_NAME);
-
-        File classesDir = sourceSet.getOutput().getResourcesDir();
-        if (classesDir == null)
-        {
-            project.getLogger().warn("Test Resources output directory not available.");
-        }
-        else
-        {
-            project.getLogger().warn("Test Resources output directory: {}.", classesDir.getAbsolutePath());
-        }
-
-        return classesDir;
-        }
     }
-
-
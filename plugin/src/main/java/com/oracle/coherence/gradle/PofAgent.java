@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.oracle.coherence.common.schema.ClassFileSchemaSource;
+import com.oracle.coherence.common.schema.Schema;
+import com.oracle.coherence.common.schema.SchemaBuilder;
+import com.oracle.coherence.common.schema.XmlSchemaSource;
+import com.tangosol.io.pof.generator.PortableTypeGenerator;
+import com.tangosol.io.pof.schema.annotation.PortableType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.oracle.coherence.common.schema.ClassFileSchemaSource.Filters.hasAnnotation;
+
+/**
+ * A Java agent instrumenting the {@code @PortableType} classes of the project's
+ * class directories when they are loaded, instead of rewriting them at build
+ * time. The agent is attached to the {@code Test} tasks by the
+ * {@link CoherencePlugin} if {@link CoherenceExtension#getRuntimeInstrumentation()}
+ * is enabled, with the path of the schema file written by the {@link PofAgentTask}
+ * as its argument. The agent runs in the test JVM, where Coherence is loaded from
+ * the test runtime classpath, so it must only depend on the JDK, on Coherence and
+ * on {@link ClassFileInfo}, which are the only classes packaged into the agent jar.
+ *
+ * @author Gunnar Hillert
+ */
+public final class PofAgent
+    {
+    private PofAgent()
+        {
+        throw new AssertionError("This is a static utility class.");
+        }
+
+    /**
+     * Install the agent.
+     *
+     * @param sArgs            the path of the schema file
+     * @param instrumentation  the instrumentation of the JVM
+     *
+     * @throws IOException if the schema file cannot be read
+     */
+    public static void premain(String sArgs, Instrumentation instrumentation) throws IOException
+        {
+        instrumentation.addTransformer(new Transformer(Paths.get(sArgs)));
+        }
+
+    // ----- inner class: Transformer ---------------------------------------
+
+    /**
+     * Instruments the portable types of the project's class directories. The
+     * schema is built once, when the first portable type is loaded.
+     */
+    static final class Transformer
+            implements ClassFileTransformer, PortableTypeGenerator.Logger
+        {
+        Transformer(Path schemaFile) throws IOException
+            {
+            try (BufferedReader reader = Files.newBufferedReader(schemaFile, StandardCharsets.UTF_8))
+                {
+                if (!HEADER.equals(reader.readLine()))
+                    {
+                    throw new IOException("Unsupported agent schema file " + schemaFile);
+                    }
+
+                String sLine;
+                while ((sLine = reader.readLine()) != null)
+                    {
+                    int    of     = sLine.indexOf('\t');
+                    String sKey   = of < 0 ? sLine : sLine.substring(0, of);
+                    String sValue = of < 0 ? "" : sLine.substring(of + 1);
+                    switch (sKey)
+                        {
+                        case KEY_DEBUG:
+                            debug = Boolean.parseBoolean(sValue);
+                            break;
+                        case KEY_CLASSES:
+                            listClassesDirectories.add(Paths.get(sValue));
+                            break;
+                        case KEY_XML_SCHEMA:
+                            listXmlSchemas.add(new File(sValue));
+                            break;
+                        case KEY_DEPENDENCY:
+                            listDependencies.add(new File(sValue));
+                            break;
+                        default:
+                            break;
+                        }
+                    }
+                }
+            }
+
+        // ----- ClassFileTransformer methods -------------------------------
+
+        @Override
+        public byte[] transform(ClassLoader loader, String sClassName, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] abClass)
+            {
+            if (classBeingRedefined != null || sClassName == null || transforming.get())
+                {
+                return null;
+                }
+
+            transforming.set(true);
+            try
+                {
+                if (!ClassFileInfo.mayBePortableType(abClass) || !ClassFileInfo.parse(abClass).isPortableType()
+                    || !isProjectClass(protectionDomain))
+                    {
+                    return null;
+                    }
+                return instrument(sClassName, abClass);
+                }
+            catch (Throwable t)
+                {
+                System.err.println("Unable to instrument the portable type " + sClassName.replace('/', '.') + ": " + t);
+                return null;
+                }
+            finally
+                {
+                transforming.set(false);
+                }
+            }
+
+        // ----- PortableTypeGenerator.Logger methods -----------------------
+
+        @Override
+        public void debug(String message)
+            {
+            }
+
+        @Override
+        public void info(String message)
+            {
+            if (debug)
+                {
+                System.out.println(message);
+                }
+            }
+
+        // ----- helpers ----------------------------------------------------
+
+        /**
+         * Return {@code true} if the class is loaded from one of the project's class directories. The
+         * portable types of dependencies are only part of the schema.
+         */
+        private boolean isProjectClass(ProtectionDomain protectionDomain) throws URISyntaxException
+            {
+            CodeSource codeSource = protectionDomain == null ? null : protectionDomain.getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null
+                || !"file".equals(codeSource.getLocation().getProtocol()))
+                {
+                return false;
+                }
+            return listClassesDirectories.contains(Paths.get(codeSource.getLocation().toURI()));
+            }
+
+        /**
+         * Instrument the specified class. The {@code PortableTypeGenerator} only instruments class
+         * directories, so the class is written to a temporary directory of its own.
+         */
+        private byte[] instrument(String sClassName, byte[] abClass) throws IOException
+            {
+            Schema schema = getSchema();
+            Path   dir    = Files.createTempDirectory("coherence-pof-agent");
+            Path   file   = dir.resolve(sClassName + ".class");
+            try
+                {
+                Files.createDirectories(file.getParent());
+                Files.write(file, abClass);
+                PortableTypeGenerator.instrumentClasses(dir.toFile(), schema, debug, this);
+                return Files.readAllBytes(file);
+                }
+            finally
+                {
+                Files.deleteIfExists(file);
+                for (Path parent = file.getParent(); parent != null && parent.startsWith(dir); parent = parent.getParent())
+                    {
+                    Files.deleteIfExists(parent);
+                    }
+                }
+            }
+
+        private synchronized Schema getSchema()
+            {
+            if (schema == null)
+                {
+                SchemaBuilder schemaBuilder = new SchemaBuilder();
+                for (File xmlSchema : listXmlSchemas)
+                    {
+                    schemaBuilder.addSchemaSource(new XmlSchemaSource(xmlSchema));
+                    }
+
+                ClassFileSchemaSource dependencies =
+                        new ClassFileSchemaSource()
+                                .withTypeFilter(hasAnnotation(PortableType.class))
+                                .withPropertyFilter(fieldNode -> false);
+                for (File fragment : listDependencies)
+                    {
+                    dependencies.withClassesFromDirectory(fragment);
+                    }
+
+                ClassFileSchemaSource source =
+                        new ClassFileSchemaSource()
+                                .withTypeFilter(hasAnnotation(PortableType.class))
+                                .withMissingPropertiesAsObject();
+                for (Path classesDir : listClassesDirectories)
+                    {
+                    source.withClassesFromDirectory(classesDir.toFile());
+                    }
+
+                schema = schemaBuilder
+                        .addSchemaSource(dependencies)
+                        .addSchemaSource(source)
+                        .build();
+                }
+            return schema;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        /**
+         * Whether a class is being instrumented by the current thread, in which case the classes
+         * loaded for the instrumentation itself are not transformed.
+         */
+        private final ThreadLocal<Boolean> transforming = ThreadLocal.withInitial(() -> false);
+
+        private final List<Path> listClassesDirectories = new ArrayList<>();
+
+        private final List<File> listXmlSchemas = new ArrayList<>();
+
+        private final List<File> listDependencies = new ArrayList<>();
+
+        private boolean debug;
+
+        private Schema schema;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The first line of the schema file.
+     */
+    static final String HEADER = "coherence-pof-agent 1";
+
+    /**
+     * The key of the line holding whether to generate debug code.
+     */
+    static final String KEY_DEBUG = "debug";
+
+    /**
+     * The key of the lines holding the class directories whose portable types are instrumented.
+     */
+    static final String KEY_CLASSES = "classes";
+
+    /**
+     * The key of the lines holding the XML schema files.
+     */
+    static final String KEY_XML_SCHEMA = "xml";
+
+    /**
+     * The key of the lines holding the schema fragments of the dependencies.
+     */
+    static final String KEY_DEPENDENCY = "dependency";
+    }
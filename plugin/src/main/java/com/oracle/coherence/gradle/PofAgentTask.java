@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.CommandLineArgumentProvider;
+
+import javax.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Prepares the {@link PofAgent} for a {@code Test} task. The task writes the
+ * agent jar and the agent's schema file, which lists the class directories of
+ * the test runtime classpath together with the schema fragments of its jars.
+ * The fragments are taken from the persistent {@link SchemaFragmentCache}, and
+ * the schema file is only rewritten if the jars or class directories of the
+ * classpath change, so that the schema is reused between test runs and a test
+ * JVM only has to read the portable types of the project's own classes.
+ *
+ * @author Gunnar Hillert
+ */
+abstract class PofAgentTask extends DefaultTask
+    {
+    /**
+     * The runtime classpath of the test task.
+     **/
+    @Internal
+    abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * The jars of the test runtime classpath, whose schema fragments are listed in the schema file.
+     **/
+    @Classpath
+    FileCollection getClasspathJars()
+        {
+        return getClasspath().filter(file -> file.isFile() && file.getName().endsWith(".jar"));
+        }
+
+    /**
+     * The class directories of the test runtime classpath, whose portable types are instrumented
+     * by the agent. Only their paths are written to the schema file.
+     **/
+    @Input
+    List<String> getClassesDirectories()
+        {
+        List<String> listPaths = new ArrayList<>();
+        for (File file : getClasspath())
+            {
+            if (file.isDirectory())
+                {
+                listPaths.add(file.getAbsolutePath());
+                }
+            }
+        return listPaths;
+        }
+
+    /**
+     * Whether the agent generates debug code.
+     **/
+    @Input
+    abstract Property<Boolean> getDebug();
+
+    /**
+     * The root directory of the persistent {@link SchemaFragmentCache} for dependency jars.
+     **/
+    @Internal
+    abstract DirectoryProperty getSchemaCacheDirectory();
+
+    /**
+     * The build service sharing the schema fragments of dependency jars between the tasks of a build.
+     **/
+    @Internal
+    abstract Property<SchemaFragmentService> getSchemaFragmentService();
+
+    /**
+     * The maximum number of dependencies to scan for portable types concurrently.
+     **/
+    @Internal
+    abstract Property<Integer> getScanParallelism();
+
+    /**
+     * The agent jar.
+     **/
+    @OutputFile
+    abstract RegularFileProperty getAgentJar();
+
+    /**
+     * The schema file passed to the agent.
+     **/
+    @OutputFile
+    abstract RegularFileProperty getSchemaFile();
+
+    @Inject
+    public PofAgentTask(ProjectLayout layout)
+        {
+        getDebug().convention(false);
+        getScanParallelism().convention(Runtime.getRuntime().availableProcessors());
+        getAgentJar().convention(layout.getBuildDirectory().file(getAgentJarPath(getName())));
+        getSchemaFile().convention(layout.getBuildDirectory().file(getSchemaFilePath(getName())));
+        }
+
+    @TaskAction
+    public void prepareAgent()
+        {
+        try
+            {
+            writeAgentJar(getAgentJar().getAsFile().get());
+
+            List<String> listClassesDirectories = getClassesDirectories();
+            List<File>   listXmlSchemas         = new ArrayList<>();
+            for (String sPath : listClassesDirectories)
+                {
+                File xmlSchema = new File(sPath, "META-INF/schema.xml");
+                if (xmlSchema.isFile())
+                    {
+                    listXmlSchemas.add(xmlSchema);
+                    }
+                }
+
+            SchemaFragmentScanner scanner = new SchemaFragmentScanner(
+                    new SchemaFragmentCache(getSchemaCacheDirectory().getAsFile().get()),
+                    getSchemaFragmentService().getOrNull(), getTemporaryDir(), getScanParallelism().get());
+            List<SchemaFragmentScanner.Fragment> listFragments =
+                    scanner.scan(new ArrayList<>(getClasspathJars().getFiles()));
+
+            try (BufferedWriter writer = Files.newBufferedWriter(getSchemaFile().getAsFile().get().toPath(),
+                                                                  StandardCharsets.UTF_8))
+                {
+                writer.write(PofAgent.HEADER);
+                writer.newLine();
+                writeLine(writer, PofAgent.KEY_DEBUG, String.valueOf(getDebug().get()));
+                for (File xmlSchema : listXmlSchemas)
+                    {
+                    writeLine(writer, PofAgent.KEY_XML_SCHEMA, xmlSchema.getAbsolutePath());
+                    }
+                for (SchemaFragmentScanner.Fragment fragment : listFragments)
+                    {
+                    writeLine(writer, PofAgent.KEY_DEPENDENCY, fragment.getDirectory().getAbsolutePath());
+                    }
+                for (String sPath : listClassesDirectories)
+                    {
+                    writeLine(writer, PofAgent.KEY_CLASSES, sPath);
+                    }
+                }
+
+            getLogger().info("The Coherence POF agent uses {} dependencies with portable types and {} class directories.",
+                    listFragments.size(), listClassesDirectories.size());
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to prepare the Coherence POF agent.", e);
+            }
+        }
+
+    /**
+     * Return the path of the agent jar written by the specified agent task, relative to the build directory.
+     *
+     * @param sTaskName  the name of the agent task
+     *
+     * @return the path of the agent jar
+     */
+    static String getAgentJarPath(String sTaskName)
+        {
+        return "coherence/" + sTaskName + "/" + AGENT_JAR;
+        }
+
+    /**
+     * Return the path of the schema file written by the specified agent task, relative to the build directory.
+     *
+     * @param sTaskName  the name of the agent task
+     *
+     * @return the path of the schema file
+     */
+    static String getSchemaFilePath(String sTaskName)
+        {
+        return "coherence/" + sTaskName + "/" + SCHEMA_FILE;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Write the agent jar, containing the {@link PofAgent} and the classes it depends on.
+     */
+    private static void writeAgentJar(File file) throws IOException
+        {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Premain-Class", PofAgent.class.getName());
+
+        ClassLoader loader = PofAgentTask.class.getClassLoader();
+        try (OutputStream out = Files.newOutputStream(file.toPath());
+             JarOutputStream jar = new JarOutputStream(out))
+            {
+            JarEntry manifestEntry = new JarEntry("META-INF/MANIFEST.MF");
+            manifestEntry.setTime(ENTRY_TIME);
+            jar.putNextEntry(manifestEntry);
+            manifest.write(jar);
+            jar.closeEntry();
+
+            for (String sClass : AGENT_CLASSES)
+                {
+                String sEntry = sClass + ".class";
+                try (InputStream in = loader.getResourceAsStream(sEntry))
+                    {
+                    if (in == null)
+                        {
+                        throw new IOException("The agent class " + sEntry + " does not exist.");
+                        }
+                    JarEntry entry = new JarEntry(sEntry);
+                    entry.setTime(ENTRY_TIME);
+                    jar.putNextEntry(entry);
+                    jar.write(SchemaFragmentCache.readAllBytes(in));
+                    jar.closeEntry();
+                    }
+                }
+            }
+        }
+
+    private static void writeLine(BufferedWriter writer, String sKey, String sValue) throws IOException
+        {
+        writer.write(sKey + '\t' + sValue);
+        writer.newLine();
+        }
+
+    // ----- inner class: AgentArgumentProvider -----------------------------
+
+    /**
+     * Adds the {@code -javaagent} argument of the {@link PofAgent} to the JVM arguments of a {@code Test} task.
+     */
+    public static class AgentArgumentProvider implements CommandLineArgumentProvider
+        {
+        AgentArgumentProvider(Provider<RegularFile> agentJar, Provider<RegularFile> schemaFile)
+            {
+            this.agentJar   = agentJar;
+            this.schemaFile = schemaFile;
+            }
+
+        /**
+         * Return the agent jar.
+         *
+         * @return the agent jar
+         */
+        @InputFile
+        @PathSensitive(PathSensitivity.NONE)
+        public Provider<RegularFile> getAgentJar()
+            {
+            return agentJar;
+            }
+
+        /**
+         * Return the schema file passed to the agent.
+         *
+         * @return the schema file
+         */
+        @InputFile
+        @PathSensitive(PathSensitivity.NONE)
+        public Provider<RegularFile> getSchemaFile()
+            {
+            return schemaFile;
+            }
+
+        @Override
+        public Iterable<String> asArguments()
+            {
+            return Collections.singletonList("-javaagent:" + agentJar.get().getAsFile().getAbsolutePath()
+                                             + "=" + schemaFile.get().getAsFile().getAbsolutePath());
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final Provider<RegularFile> agentJar;
+
+        private final Provider<RegularFile> schemaFile;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The name of the agent jar.
+     */
+    private static final String AGENT_JAR = "coherence-pof-agent.jar";
+
+    /**
+     * The name of the agent's schema file.
+     */
+    private static final String SCHEMA_FILE = "agent-schema";
+
+    /**
+     * The fixed time of the entries of the agent jar, so that the jar is reproducible.
+     */
+    private static final long ENTRY_TIME = 315532800000L;
+
+    /**
+     * The classes packaged into the agent jar. The {@link PofAgent} depends on Coherence, so the
+     * classes are copied as resources instead of being loaded by the build.
+     */
+    private static final String[] AGENT_CLASSES =
+        {
+        "com/oracle/coherence/gradle/PofAgent",
+        "com/oracle/coherence/gradle/PofAgent$Transformer",
+        "com/oracle/coherence/gradle/ClassFileInfo",
+        "com/oracle/coherence/gradle/ClassFileInfo$ConstantPool",
+        "com/oracle/coherence/gradle/ClassFileInfo$FieldInfo",
+        };
+    }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.oracle.coherence.common.schema.ClassFileSchemaSource;
+import com.oracle.coherence.common.schema.Schema;
+import com.oracle.coherence.common.schema.SchemaBuilder;
+import com.oracle.coherence.common.schema.XmlSchemaSource;
+import com.tangosol.io.pof.generator.PortableTypeGenerator;
+import com.tangosol.io.pof.schema.annotation.PortableType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.oracle.coherence.common.schema.ClassFileSchemaSource.Filters.hasAnnotation;
+
+/**
+ * Instruments the portable types of an extracted dependency jar. Artifact
+ * transforms cannot use the Gradle Worker API, so {@link InstrumentJarTransform}
+ * loads this class in a classloader containing the configured Coherence version
+ * instead. Therefore, this class must only depend on the JDK and on Coherence.
+ *
+ * @author Gunnar Hillert
+ */
+public final class PofJarInstrumenter
+    {
+    private PofJarInstrumenter()
+        {
+        throw new AssertionError("This is a static utility class.");
+        }
+
+    /**
+     * Instrument the portable types in the specified directory.
+     *
+     * @param classesDirectory  the directory holding the extracted jar
+     * @param listDependencies  the jars and directories the jar depends on, which are read for schema only
+     * @param fDebug            whether to generate debug code
+     *
+     * @return the messages logged by the {@code PortableTypeGenerator}
+     *
+     * @throws IOException if a class file cannot be read or written
+     */
+    public static List<String> instrument(File classesDirectory, List<File> listDependencies, boolean fDebug)
+            throws IOException
+        {
+        SchemaBuilder schemaBuilder = new SchemaBuilder();
+
+        File xmlSchema = new File(classesDirectory, "META-INF/schema.xml");
+        if (xmlSchema.isFile())
+            {
+            schemaBuilder.addSchemaSource(new XmlSchemaSource(xmlSchema));
+            }
+
+        ClassFileSchemaSource dependencies =
+                new ClassFileSchemaSource()
+                        .withTypeFilter(hasAnnotation(PortableType.class))
+                        .withPropertyFilter(fieldNode -> false);
+        for (File dependency : listDependencies)
+            {
+            if (dependency.isDirectory())
+                {
+                dependencies.withClassesFromDirectory(dependency);
+                }
+            else if (dependency.isFile())
+                {
+                dependencies.withClassesFromJarFile(dependency);
+                }
+            }
+
+        ClassFileSchemaSource source =
+                new ClassFileSchemaSource()
+                        .withTypeFilter(hasAnnotation(PortableType.class))
+                        .withMissingPropertiesAsObject()
+                        .withClassesFromDirectory(classesDirectory);
+
+        Schema schema = schemaBuilder
+                .addSchemaSource(dependencies)
+                .addSchemaSource(source)
+                .build();
+
+        List<String> listMessages = new ArrayList<>();
+        PortableTypeGenerator.instrumentClasses(classesDirectory, schema, fDebug, new PortableTypeGenerator.Logger()
+            {
+            @Override
+            public void debug(String message)
+                {
+                }
+
+            @Override
+            public void info(String message)
+                {
+                listMessages.add(message);
+                }
+            });
+        return listMessages;
+        }
+    }
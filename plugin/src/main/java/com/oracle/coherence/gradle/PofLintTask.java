@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports performance anti-patterns of the portable types of the instrumented
+ * source sets, such as properties that are serialized as {@code Object}, raw
+ * collections, boxed primitives, non-final property types and deep class
+ * hierarchies. The findings are logged and written to a JSON report. If
+ * {@link #getFailOnWarning() failOnWarning} is enabled, the task fails if there
+ * is any finding with the {@link PofLinter.Severity#WARNING WARNING} severity.
+ *
+ * @author Gunnar Hillert
+ */
+abstract class PofLintTask extends DefaultTask
+    {
+    /**
+     * The compiled classes directories whose portable types are linted.
+     **/
+    @InputFiles
+    @IgnoreEmptyDirectories
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract ConfigurableFileCollection getClassesDirectories();
+
+    /**
+     * The {@code META-INF/schema.xml} files of the source sets, which may declare enums and other external types.
+     **/
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract ConfigurableFileCollection getXmlSchemas();
+
+    /**
+     * The classpath the types of the properties are resolved from.
+     **/
+    @Classpath
+    abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * Whether to fail the task if there is a finding with the {@code WARNING} severity.
+     **/
+    @Input
+    abstract Property<Boolean> getFailOnWarning();
+
+    /**
+     * The maximum number of portable types in a class hierarchy before it is reported.
+     **/
+    @Input
+    abstract Property<Integer> getMaxHierarchyDepth();
+
+    /**
+     * The JSON report.
+     **/
+    @OutputFile
+    abstract RegularFileProperty getReportFile();
+
+    @Inject
+    public PofLintTask(ProjectLayout layout)
+        {
+        getFailOnWarning().convention(false);
+        getMaxHierarchyDepth().convention(DEFAULT_MAX_HIERARCHY_DEPTH);
+        getReportFile().convention(layout.getBuildDirectory().file("reports/coherence/" + getName() + ".json"));
+        }
+
+    @TaskAction
+    public void lint()
+        {
+        List<PofLinter.Finding> listFindings;
+        try (PofLinter linter = new PofLinter(existing(getClassesDirectories()), new ArrayList<>(getClasspath().getFiles()),
+                                              existing(getXmlSchemas()), getMaxHierarchyDepth().get()))
+            {
+            listFindings = linter.lint();
+            writeReport(listFindings);
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to lint the portable types.", e);
+            }
+
+        int cWarnings = 0;
+        for (PofLinter.Finding finding : listFindings)
+            {
+            if (finding.getSeverity() == PofLinter.Severity.WARNING)
+                {
+                cWarnings++;
+                getLogger().warn(finding.toString());
+                }
+            else
+                {
+                getLogger().lifecycle(finding.toString());
+                }
+            }
+
+        if (cWarnings > 0 && getFailOnWarning().get())
+            {
+            throw new GradleException("The portable types have " + cWarnings + " performance warnings. See "
+                                      + getReportFile().getAsFile().get());
+            }
+        getLogger().lifecycle("Found {} performance issues in the portable types, {} of them warnings.",
+                listFindings.size(), cWarnings);
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private static List<File> existing(FileCollection files)
+        {
+        List<File> listFiles = new ArrayList<>();
+        for (File file : files)
+            {
+            if (file.exists())
+                {
+                listFiles.add(file);
+                }
+            }
+        return listFiles;
+        }
+
+    private void writeReport(List<PofLinter.Finding> listFindings) throws IOException
+        {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"findings\": [");
+        for (int i = 0; i < listFindings.size(); i++)
+            {
+            PofLinter.Finding finding = listFindings.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"severity\": \"").append(finding.getSeverity()).append('"');
+            sb.append(", \"rule\": \"").append(finding.getRule()).append('"');
+            sb.append(", \"location\": \"").append(finding.getLocation()).append('"');
+            sb.append(", \"message\": \"").append(finding.getMessage().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"}");
+            }
+        sb.append(listFindings.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+
+        try (OutputStream out = Files.newOutputStream(getReportFile().getAsFile().get().toPath()))
+            {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The default maximum number of portable types in a class hierarchy.
+     */
+    private static final int DEFAULT_MAX_HIERARCHY_DEPTH = 3;
+    }
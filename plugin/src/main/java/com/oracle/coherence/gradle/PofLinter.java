@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reports performance anti-patterns of the portable types in the project's
+ * classes directories. The {@code PortableTypeGenerator} builds its schema from
+ * the class files, and serializes every property whose type it cannot resolve
+ * as {@code Object}, i.e. as a self-describing value with a type identifier,
+ * which is the slowest and largest POF encoding. The linter applies the same
+ * resolution to the class files: types are looked up in the classes
+ * directories, on the classpath and in the JDK, and enums and other external
+ * types are resolved through the {@code META-INF/schema.xml} files.
+ *
+ * @author Gunnar Hillert
+ */
+final class PofLinter
+        implements Closeable
+    {
+    /**
+     * Create a new linter.
+     *
+     * @param listClassesDirectories  the classes directories whose portable types are linted
+     * @param listClasspath           the classpath the types of the properties are resolved from
+     * @param listXmlSchemas          the {@code META-INF/schema.xml} files
+     * @param nMaxHierarchyDepth      the maximum number of portable types in a class hierarchy
+     *
+     * @throws IOException if a schema file cannot be read
+     */
+    PofLinter(List<File> listClassesDirectories, List<File> listClasspath, List<File> listXmlSchemas,
+              int nMaxHierarchyDepth) throws IOException
+        {
+        this.classesDirectories = listClassesDirectories;
+        this.classpath          = listClasspath;
+        this.maxHierarchyDepth  = nMaxHierarchyDepth;
+        for (File xmlSchema : listXmlSchemas)
+            {
+            xmlSchemaTypes.addAll(readXmlSchemaTypes(xmlSchema));
+            }
+        }
+
+    // ----- PofLinter methods ----------------------------------------------
+
+    /**
+     * Lint all portable types of the classes directories.
+     *
+     * @return the findings, ordered by location
+     *
+     * @throws IOException if a class file cannot be read
+     */
+    List<Finding> lint() throws IOException
+        {
+        List<Finding> listFindings = new ArrayList<>();
+        for (File classesDirectory : classesDirectories)
+            {
+            if (!classesDirectory.isDirectory())
+                {
+                continue;
+                }
+
+            List<Path> listClassFiles;
+            try (Stream<Path> stream = Files.walk(classesDirectory.toPath()))
+                {
+                listClassFiles = stream.filter(PortableTypeIndex::isClassFile).sorted().collect(Collectors.toList());
+                }
+
+            for (Path classFile : listClassFiles)
+                {
+                byte[] abClass = Files.readAllBytes(classFile);
+                if (ClassFileInfo.mayBePortableType(abClass))
+                    {
+                    ClassFileInfo info = ClassFileInfo.parse(abClass);
+                    if (info.isPortableType())
+                        {
+                        lint(info, listFindings);
+                        }
+                    }
+                }
+            }
+
+        listFindings.sort((f1, f2) -> f1.getLocation().equals(f2.getLocation())
+                                      ? f1.getRule().compareTo(f2.getRule())
+                                      : f1.getLocation().compareTo(f2.getLocation()));
+        return listFindings;
+        }
+
+    @Override
+    public void close() throws IOException
+        {
+        for (ZipFile zip : jars.values())
+            {
+            zip.close();
+            }
+        jars.clear();
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Lint the specified portable type.
+     */
+    private void lint(ClassFileInfo info, List<Finding> listFindings) throws IOException
+        {
+        String sClassName = info.getClassName().replace('/', '.');
+
+        int cDepth = 1;
+        for (ClassFileInfo superInfo = resolve(info.getSuperName());
+             superInfo != null && superInfo.isPortableType();
+             superInfo = resolve(superInfo.getSuperName()))
+            {
+            cDepth++;
+            }
+        if (cDepth > maxHierarchyDepth)
+            {
+            listFindings.add(new Finding(Severity.INFO, RULE_DEEP_HIERARCHY, sClassName,
+                    "The class hierarchy has " + cDepth + " portable types; the properties of each class are "
+                    + "serialized as a nested value, which adds to the size and the deserialization cost."));
+            }
+
+        for (ClassFileInfo.FieldInfo field : info.getFields())
+            {
+            if (field.isSerialized())
+                {
+                lint(sClassName + '#' + field.getName(), field, listFindings);
+                }
+            }
+        }
+
+    /**
+     * Lint the specified property of a portable type.
+     */
+    private void lint(String sLocation, ClassFileInfo.FieldInfo field, List<Finding> listFindings) throws IOException
+        {
+        String sType = field.getClassName();
+        if (sType == null)
+            {
+            // a primitive or an array of primitives
+            return;
+            }
+
+        String sTypeName = sType.replace('/', '.');
+        if (OBJECT_TYPES.contains(sType))
+            {
+            listFindings.add(new Finding(Severity.WARNING, RULE_OBJECT_PROPERTY, sLocation,
+                    "The property is declared as " + sTypeName + ", so each value is serialized as a self-describing "
+                    + "Object with its type identifier. Declare the property with a concrete type."));
+            }
+        else if (BOXED_TYPES.contains(sType))
+            {
+            listFindings.add(new Finding(Severity.INFO, RULE_BOXED_PRIMITIVE, sLocation,
+                    "The property is declared as " + sTypeName + "; if it is never null, the primitive type "
+                    + "avoids boxing when the property is serialized and deserialized."));
+            }
+        else if (isAssignableTo(sType, "java/util/Collection") || isAssignableTo(sType, "java/util/Map"))
+            {
+            if (!hasElementTypes(field.getSignature()))
+                {
+                listFindings.add(new Finding(Severity.WARNING, RULE_RAW_COLLECTION, sLocation,
+                        "The " + sTypeName + " property has no concrete element type, so each element is "
+                        + "serialized as a self-describing Object. Declare its type arguments."));
+                }
+            }
+        else if (!isJdkType(sType) && !xmlSchemaTypes.contains(sTypeName))
+            {
+            ClassFileInfo typeInfo = resolve(sType);
+            if (typeInfo == null || !typeInfo.isPortableType())
+                {
+                listFindings.add(new Finding(Severity.WARNING, RULE_UNRESOLVED_PROPERTY, sLocation,
+                        (typeInfo == null ? "The type " + sTypeName + " is not on the classpath"
+                                          : "The " + (typeInfo.isEnum() ? "enum " : "type ") + sTypeName
+                                            + " is neither a portable type nor declared in a META-INF/schema.xml")
+                        + ", so the property is serialized as a self-describing Object."));
+                }
+            else if (!typeInfo.isFinal())
+                {
+                listFindings.add(new Finding(Severity.INFO, RULE_NON_FINAL_PROPERTY_TYPE, sLocation,
+                        "The portable type " + sTypeName + " is not final, so the runtime type of each value has "
+                        + "to be serialized with it. Make the type final if it has no sub-classes."));
+                }
+            }
+        }
+
+    /**
+     * Return {@code true} if the specified generic signature of a collection or map
+     * declares concrete type arguments, i.e. neither wildcards, type variables nor {@code Object}.
+     */
+    static boolean hasElementTypes(String sSignature)
+        {
+        if (sSignature == null)
+            {
+            return false;
+            }
+
+        int ofStart = sSignature.indexOf('<');
+        if (ofStart < 0)
+            {
+            return false;
+            }
+
+        int cNesting = 0;
+        int ofArg    = ofStart + 1;
+        for (int of = ofStart + 1; of < sSignature.length(); of++)
+            {
+            char ch = sSignature.charAt(of);
+            if (ch == '<')
+                {
+                cNesting++;
+                }
+            else if (ch == '>' && cNesting > 0)
+                {
+                cNesting--;
+                }
+            else if (ch == '*')
+                {
+                return false;
+                }
+            else if (ch == ';' && cNesting == 0 || ch == '>')
+                {
+                // the end of a type argument, or of the type arguments, at the top level
+                String sArg = sSignature.substring(ofArg, ch == ';' ? of + 1 : of);
+                if (!sArg.isEmpty() && (sArg.startsWith("T") || sArg.startsWith("+") || sArg.startsWith("-")
+                                        || sArg.equals("Ljava/lang/Object;")))
+                    {
+                    return false;
+                    }
+                if (ch == '>')
+                    {
+                    return true;
+                    }
+                ofArg = of + 1;
+                }
+            }
+        return true;
+        }
+
+    /**
+     * Return {@code true} if the specified class is, extends or implements the given class or interface.
+     */
+    private boolean isAssignableTo(String sType, String sTarget) throws IOException
+        {
+        if (sType == null)
+            {
+            return false;
+            }
+        if (sType.equals(sTarget))
+            {
+            return true;
+            }
+
+        ClassFileInfo info = resolve(sType);
+        if (info == null)
+            {
+            return false;
+            }
+        if (isAssignableTo(info.getSuperName(), sTarget))
+            {
+            return true;
+            }
+        for (String sInterface : info.getInterfaces())
+            {
+            if (isAssignableTo(sInterface, sTarget))
+                {
+                return true;
+                }
+            }
+        return false;
+        }
+
+    /**
+     * Return the parsed class file of the specified class, which is looked up in the classes
+     * directories, on the classpath and in the JDK.
+     *
+     * @return the parsed class file, or {@code null} if the class cannot be found
+     */
+    private ClassFileInfo resolve(String sType) throws IOException
+        {
+        if (sType == null)
+            {
+            return null;
+            }
+        if (classes.containsKey(sType))
+            {
+            return classes.get(sType);
+            }
+
+        byte[] abClass = readClass(sType);
+        ClassFileInfo info = abClass == null ? null : ClassFileInfo.parse(abClass);
+        classes.put(sType, info);
+        return info;
+        }
+
+    private byte[] readClass(String sType) throws IOException
+        {
+        String sEntry = sType + ".class";
+        for (File classesDirectory : classesDirectories)
+            {
+            File classFile = new File(classesDirectory, sEntry);
+            if (classFile.isFile())
+                {
+                return Files.readAllBytes(classFile.toPath());
+                }
+            }
+
+        for (File file : classpath)
+            {
+            if (file.isDirectory())
+                {
+                File classFile = new File(file, sEntry);
+                if (classFile.isFile())
+                    {
+                    return Files.readAllBytes(classFile.toPath());
+                    }
+                }
+            else if (file.isFile() && file.getName().endsWith(".jar"))
+                {
+                ZipFile  zip      = getJar(file);
+                ZipEntry zipEntry = zip.getEntry(sEntry);
+                if (zipEntry != null)
+                    {
+                    try (InputStream in = zip.getInputStream(zipEntry))
+                        {
+                        return SchemaFragmentCache.readAllBytes(in);
+                        }
+                    }
+                }
+            }
+
+        if (isJdkType(sType))
+            {
+            try (InputStream in = ClassLoader.getSystemResourceAsStream(sEntry))
+                {
+                return in == null ? null : SchemaFragmentCache.readAllBytes(in);
+                }
+            }
+        return null;
+        }
+
+    private ZipFile getJar(File file) throws IOException
+        {
+        ZipFile zip = jars.get(file);
+        if (zip == null)
+            {
+            zip = new ZipFile(file);
+            jars.put(file, zip);
+            }
+        return zip;
+        }
+
+    private static boolean isJdkType(String sType)
+        {
+        return sType.startsWith("java/") || sType.startsWith("javax/");
+        }
+
+    /**
+     * Return the binary names of the Java types declared by the specified schema file.
+     */
+    private static Set<String> readXmlSchemaTypes(File xmlSchema) throws IOException
+        {
+        Set<String> setTypes = new HashSet<>();
+        try
+            {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            NodeList nodes = factory.newDocumentBuilder().parse(xmlSchema)
+                    .getElementsByTagNameNS(JAVA_SCHEMA_NAMESPACE, "type");
+            for (int i = 0; i < nodes.getLength(); i++)
+                {
+                String sName = ((Element) nodes.item(i)).getAttribute("name");
+                if (!sName.isEmpty())
+                    {
+                    setTypes.add(sName);
+                    }
+                }
+            }
+        catch (Exception e)
+            {
+            throw new IOException("Unable to read the schema " + xmlSchema, e);
+            }
+        return setTypes;
+        }
+
+    // ----- inner enum: Severity -------------------------------------------
+
+    /**
+     * The severity of a {@link Finding}.
+     */
+    enum Severity
+        {
+        /**
+         * A property that is serialized with a considerably slower or larger encoding.
+         */
+        WARNING,
+
+        /**
+         * A definition that may be serialized more efficiently.
+         */
+        INFO
+        }
+
+    // ----- inner class: Finding -------------------------------------------
+
+    /**
+     * A performance anti-pattern found in a portable type.
+     */
+    static final class Finding
+        {
+        Finding(Severity severity, String rule, String location, String message)
+            {
+            this.severity = severity;
+            this.rule     = rule;
+            this.location = location;
+            this.message  = message;
+            }
+
+        /**
+         * Return the severity of the finding.
+         *
+         * @return the severity
+         */
+        Severity getSeverity()
+            {
+            return severity;
+            }
+
+        /**
+         * Return the identifier of the rule, e.g. {@code raw-collection}.
+         *
+         * @return the identifier of the rule
+         */
+        String getRule()
+            {
+            return rule;
+            }
+
+        /**
+         * Return the location of the finding, i.e. the binary name of the portable type,
+         * followed by {@code #} and the name of the property for property findings.
+         *
+         * @return the location
+         */
+        String getLocation()
+            {
+            return location;
+            }
+
+        /**
+         * Return the description of the finding.
+         *
+         * @return the description
+         */
+        String getMessage()
+            {
+            return message;
+            }
+
+        @Override
+        public String toString()
+            {
+            return severity + " [" + rule + "] " + location + ": " + message;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final Severity severity;
+
+        private final String rule;
+
+        private final String location;
+
+        private final String message;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    static final String RULE_OBJECT_PROPERTY = "object-property";
+
+    static final String RULE_UNRESOLVED_PROPERTY = "unresolved-property";
+
+    static final String RULE_RAW_COLLECTION = "raw-collection";
+
+    static final String RULE_BOXED_PRIMITIVE = "boxed-primitive";
+
+    static final String RULE_NON_FINAL_PROPERTY_TYPE = "non-final-property-type";
+
+    static final String RULE_DEEP_HIERARCHY = "deep-hierarchy";
+
+    /**
+     * The namespace of the Java type declarations of a schema file.
+     */
+    private static final String JAVA_SCHEMA_NAMESPACE = "http://xmlns.oracle.com/coherence/schema/java";
+
+    /**
+     * The types whose values are always serialized as self-describing values.
+     */
+    private static final Set<String> OBJECT_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "java/lang/Object", "java/io/Serializable", "java/lang/Comparable", "java/lang/Number",
+            "java/lang/CharSequence", "java/lang/Cloneable")));
+
+    /**
+     * The wrapper types of the primitive types.
+     */
+    private static final Set<String> BOXED_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "java/lang/Boolean", "java/lang/Byte", "java/lang/Character", "java/lang/Short", "java/lang/Integer",
+            "java/lang/Long", "java/lang/Float", "java/lang/Double")));
+
+    // ----- data members ---------------------------------------------------
+
+    private final List<File> classesDirectories;
+
+    private final List<File> classpath;
+
+    private final int maxHierarchyDepth;
+
+    /**
+     * The binary names of the types declared by the schema files.
+     */
+    private final Set<String> xmlSchemaTypes = new HashSet<>();
+
+    /**
+     * The parsed class files keyed by internal name, or {@code null} for classes that cannot be found.
+     */
+    private final Map<String, ClassFileInfo> classes = new HashMap<>();
+
+    /**
+     * The open jars of the classpath.
+     */
+    private final Map<File, ZipFile> jars = new TreeMap<>();
+    }
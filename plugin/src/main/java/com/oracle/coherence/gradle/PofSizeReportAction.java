@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.tangosol.io.pof.EnumPofSerializer;
+import com.tangosol.io.pof.PortableTypeSerializer;
+import com.tangosol.io.pof.SimplePofContext;
+import com.tangosol.util.ExternalizableHelper;
+import org.gradle.api.GradleException;
+import org.gradle.workers.WorkAction;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the POF serialized size of the instrumented portable types of a
+ * project. Each type is instantiated and populated with generated values, and
+ * the size of each field is measured as the difference between the size of the
+ * populated instance and the size with only that field reset to its default.
+ * The action is executed by the Gradle Worker API in a classloader that is
+ * isolated from the build and contains the configured Coherence version.
+ *
+ * @author Gunnar Hillert
+ */
+public abstract class PofSizeReportAction implements WorkAction<PofSizeReportParameters>
+    {
+    @Override
+    public void execute()
+        {
+        PofSizeReportParameters parameters = getParameters();
+        collectionSize = parameters.getCollectionSize().get();
+        stringLength   = parameters.getStringLength().get();
+
+        File result = parameters.getResultFile().getAsFile().get();
+        try (URLClassLoader loader = new URLClassLoader(toUrls(parameters.getClasspath().getFiles()),
+                                                        PofSizeReportAction.class.getClassLoader());
+             BufferedWriter writer = Files.newBufferedWriter(result.toPath(), StandardCharsets.UTF_8))
+            {
+            // the portable types of the dependencies are registered as well, if they publish a type registry
+            Map<String, Integer> mapTypeIds = new LinkedHashMap<>();
+            Enumeration<URL>     registries = loader.getResources(PofTypeRegistry.REGISTRY_RESOURCE);
+            while (registries.hasMoreElements())
+                {
+                PofTypeRegistry registry = PofTypeRegistry.parse(readLines(registries.nextElement()));
+                if (registry != null)
+                    {
+                    mapTypeIds.putAll(registry.getTypeIds());
+                    }
+                }
+            mapTypeIds.putAll(parameters.getTypeIds().get());
+
+            int nNextTypeId = 1;
+            for (Map.Entry<String, Integer> entry : mapTypeIds.entrySet())
+                {
+                Class<?> clz = loadClass(loader, entry.getKey());
+                if (clz != null)
+                    {
+                    portableTypes.put(clz, entry.getValue());
+                    nNextTypeId = Math.max(nNextTypeId, entry.getValue() + 1);
+                    }
+                }
+
+            // enums must be registered with the POF context as well; they are assigned the next free type ids
+            SimplePofContext ctx = new SimplePofContext();
+            for (Map.Entry<Class<?>, Integer> entry : portableTypes.entrySet())
+                {
+                registerUserType(ctx, entry.getKey(), entry.getValue());
+                }
+            for (Class<?> clzEnum : collectEnums())
+                {
+                ctx.registerUserType(nNextTypeId++, clzEnum, new EnumPofSerializer());
+                }
+
+            for (Map.Entry<String, Integer> entry : parameters.getTypeIds().get().entrySet())
+                {
+                Class<?> clz = loadClass(loader, entry.getKey());
+                try
+                    {
+                    if (clz == null)
+                        {
+                        throw new ClassNotFoundException(entry.getKey());
+                        }
+                    measure(ctx, clz, entry.getValue(), writer);
+                    }
+                catch (Throwable t)
+                    {
+                    writeLine(writer, RESULT_ERROR, entry.getKey(), String.valueOf(t).replace('\t', ' ').replace('\n', ' '));
+                    }
+                }
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to measure the serialized size of the portable types.", e);
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Measure the serialized size of the specified portable type and of each of its fields.
+     */
+    private void measure(SimplePofContext ctx, Class<?> clz, int nTypeId, BufferedWriter writer) throws Exception
+        {
+        Object oValue = newInstance(clz, 0, 0);
+        if (oValue == null)
+            {
+            throw new InstantiationException("Unable to instantiate " + clz.getName());
+            }
+
+        int cbTotal = ExternalizableHelper.toBinary(oValue, ctx).length();
+        writeLine(writer, RESULT_TYPE, clz.getName(), nTypeId + "\t" + cbTotal);
+
+        for (Field field : getFields(clz))
+            {
+            Object oField = field.get(oValue);
+            field.set(oValue, getDefault(field.getType()));
+            int cbWithout = ExternalizableHelper.toBinary(oValue, ctx).length();
+            field.set(oValue, oField);
+            writeLine(writer, RESULT_FIELD, clz.getName(), field.getName() + "\t" + (cbTotal - cbWithout));
+            }
+        }
+
+    /**
+     * Register the specified portable type with the POF context.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void registerUserType(SimplePofContext ctx, Class clz, int nTypeId)
+        {
+        ctx.registerUserType(nTypeId, clz, new PortableTypeSerializer(nTypeId, clz));
+        }
+
+    /**
+     * Return the enums used by the fields of the portable types, including the element types of their
+     * arrays, collections and maps.
+     */
+    private Set<Class<?>> collectEnums()
+        {
+        Set<Class<?>> setEnums = new LinkedHashSet<>();
+        for (Class<?> clz : portableTypes.keySet())
+            {
+            for (Field field : getFields(clz))
+                {
+                collectEnums(field.getGenericType(), setEnums, 0);
+                }
+            }
+        return setEnums;
+        }
+
+    private static void collectEnums(Type type, Set<Class<?>> setEnums, int nDepth)
+        {
+        if (nDepth > MAX_DEPTH)
+            {
+            return;
+            }
+        if (type instanceof ParameterizedType)
+            {
+            for (Type typeArg : ((ParameterizedType) type).getActualTypeArguments())
+                {
+                collectEnums(typeArg, setEnums, nDepth + 1);
+                }
+            }
+        else if (type instanceof GenericArrayType)
+            {
+            collectEnums(((GenericArrayType) type).getGenericComponentType(), setEnums, nDepth + 1);
+            }
+        else if (type instanceof Class)
+            {
+            Class<?> clz = (Class<?>) type;
+            if (clz.isArray())
+                {
+                collectEnums(clz.getComponentType(), setEnums, nDepth + 1);
+                }
+            else if (clz.isEnum())
+                {
+                setEnums.add(clz);
+                }
+            }
+        }
+
+    /**
+     * Create an instance of the specified class, with all fields populated with generated values.
+     *
+     * @return the instance, or {@code null} if the class cannot be instantiated
+     */
+    private Object newInstance(Class<?> clz, int nDepth, int nOrdinal)
+        {
+        if (nDepth > MAX_DEPTH || clz.isInterface() || Modifier.isAbstract(clz.getModifiers()))
+            {
+            return null;
+            }
+
+        List<Constructor<?>> listCtors = new ArrayList<>(Arrays.asList(clz.getDeclaredConstructors()));
+        listCtors.sort(Comparator.comparingInt(Constructor::getParameterCount));
+        for (Constructor<?> ctor : listCtors)
+            {
+            try
+                {
+                Class<?>[] aclzParams = ctor.getParameterTypes();
+                Object[]   aoArgs     = new Object[aclzParams.length];
+                for (int i = 0; i < aoArgs.length; i++)
+                    {
+                    aoArgs[i] = generate(aclzParams[i], nDepth + 1, i);
+                    }
+                ctor.setAccessible(true);
+                Object oValue = ctor.newInstance(aoArgs);
+                for (Field field : getFields(clz))
+                    {
+                    Object oField = generate(field.getGenericType(), nDepth + 1, nOrdinal);
+                    if (oField != null)
+                        {
+                        field.set(oValue, oField);
+                        }
+                    }
+                return oValue;
+                }
+            catch (ReflectiveOperationException | RuntimeException e)
+                {
+                // try the next constructor
+                }
+            }
+        return null;
+        }
+
+    /**
+     * Generate a representative value of the specified type.
+     *
+     * @param type      the type of the value
+     * @param nDepth    the nesting depth of the value, which limits the generation of nested objects
+     * @param nOrdinal  the ordinal of the value within its collection, so that the elements of sets
+     *                  and the keys of maps are distinct
+     *
+     * @return the generated value, or {@code null} if no value can be generated for the type
+     */
+    private Object generate(Type type, int nDepth, int nOrdinal)
+        {
+        Class<?> clz = getRawType(type);
+        if (clz == null || nDepth > MAX_DEPTH)
+            {
+            return null;
+            }
+
+        if (clz == String.class)
+            {
+            String sOrdinal = String.valueOf(nOrdinal);
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() + sOrdinal.length() < stringLength)
+                {
+                sb.append('x');
+                }
+            return sb.append(sOrdinal).toString();
+            }
+        if (clz == boolean.class || clz == Boolean.class)
+            {
+            return Boolean.TRUE;
+            }
+        if (clz == byte.class || clz == Byte.class)
+            {
+            return (byte) (nOrdinal + 1);
+            }
+        if (clz == short.class || clz == Short.class)
+            {
+            return (short) (nOrdinal + 1000);
+            }
+        if (clz == int.class || clz == Integer.class)
+            {
+            return nOrdinal + 100_000;
+            }
+        if (clz == long.class || clz == Long.class)
+            {
+            return nOrdinal + 10_000_000_000L;
+            }
+        if (clz == float.class || clz == Float.class)
+            {
+            return nOrdinal + 1.5f;
+            }
+        if (clz == double.class || clz == Double.class)
+            {
+            return nOrdinal + 1.5d;
+            }
+        if (clz == char.class || clz == Character.class)
+            {
+            return (char) ('a' + nOrdinal % 26);
+            }
+        if (clz == BigDecimal.class)
+            {
+            return new BigDecimal("12345.67").add(BigDecimal.valueOf(nOrdinal));
+            }
+        if (clz == BigInteger.class)
+            {
+            return BigInteger.valueOf(1_234_567L + nOrdinal);
+            }
+        if (clz == UUID.class)
+            {
+            return new UUID(SAMPLE_MILLIS, nOrdinal);
+            }
+        if (clz == Date.class)
+            {
+            return new Date(SAMPLE_MILLIS + nOrdinal);
+            }
+        if (clz == Instant.class)
+            {
+            return Instant.ofEpochMilli(SAMPLE_MILLIS + nOrdinal);
+            }
+        if (clz == LocalDate.class)
+            {
+            return LocalDate.of(2023, 1, 1).plusDays(nOrdinal);
+            }
+        if (clz == LocalTime.class)
+            {
+            return LocalTime.of(12, 0).plusSeconds(nOrdinal);
+            }
+        if (clz == LocalDateTime.class)
+            {
+            return LocalDateTime.of(2023, 1, 1, 12, 0).plusSeconds(nOrdinal);
+            }
+        if (clz.isEnum())
+            {
+            Object[] aoConstants = clz.getEnumConstants();
+            return aoConstants.length == 0 ? null : aoConstants[nOrdinal % aoConstants.length];
+            }
+        if (clz.isArray())
+            {
+            Type   typeComponent = type instanceof GenericArrayType
+                                   ? ((GenericArrayType) type).getGenericComponentType()
+                                   : clz.getComponentType();
+            Object aoValue       = Array.newInstance(clz.getComponentType(), collectionSize);
+            for (int i = 0; i < collectionSize; i++)
+                {
+                Object oElement = generate(typeComponent, nDepth + 1, i);
+                if (oElement != null || !clz.getComponentType().isPrimitive())
+                    {
+                    Array.set(aoValue, i, oElement);
+                    }
+                }
+            return aoValue;
+            }
+        if (Map.class.isAssignableFrom(clz))
+            {
+            Map<Object, Object> map = newContainer(clz, LinkedHashMap::new);
+            for (int i = 0; map != null && i < collectionSize; i++)
+                {
+                map.put(generate(getTypeArgument(type, 0), nDepth + 1, i), generate(getTypeArgument(type, 1), nDepth + 1, i));
+                }
+            return map;
+            }
+        if (Collection.class.isAssignableFrom(clz))
+            {
+            Collection<Object> col = newContainer(clz, Set.class.isAssignableFrom(clz) ? LinkedHashSet::new : ArrayList::new);
+            for (int i = 0; col != null && i < collectionSize; i++)
+                {
+                col.add(generate(getTypeArgument(type, 0), nDepth + 1, i));
+                }
+            return col;
+            }
+        if (portableTypes.containsKey(clz))
+            {
+            return newInstance(clz, nDepth, nOrdinal);
+            }
+        return null;
+        }
+
+    /**
+     * Create an empty instance of the specified map or collection class, or of the default
+     * implementation if the class is an interface.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T newContainer(Class<?> clz, Supplier<?> supplierDefault)
+        {
+        if (clz.isInterface() || Modifier.isAbstract(clz.getModifiers()))
+            {
+            Object oDefault = supplierDefault.get();
+            return clz.isInstance(oDefault) ? (T) oDefault : null;
+            }
+        try
+            {
+            return (T) clz.getDeclaredConstructor().newInstance();
+            }
+        catch (ReflectiveOperationException e)
+            {
+            return null;
+            }
+        }
+
+    private static Type getTypeArgument(Type type, int nIndex)
+        {
+        if (type instanceof ParameterizedType)
+            {
+            Type[] atypeArgs = ((ParameterizedType) type).getActualTypeArguments();
+            if (nIndex < atypeArgs.length)
+                {
+                return atypeArgs[nIndex];
+                }
+            }
+        return String.class;
+        }
+
+    private static Class<?> getRawType(Type type)
+        {
+        if (type instanceof Class)
+            {
+            return (Class<?>) type;
+            }
+        if (type instanceof ParameterizedType)
+            {
+            return getRawType(((ParameterizedType) type).getRawType());
+            }
+        if (type instanceof GenericArrayType)
+            {
+            Class<?> clzComponent = getRawType(((GenericArrayType) type).getGenericComponentType());
+            return clzComponent == null ? null : Array.newInstance(clzComponent, 0).getClass();
+            }
+        return null;
+        }
+
+    private static Object getDefault(Class<?> clz)
+        {
+        return clz.isPrimitive() ? Array.get(Array.newInstance(clz, 1), 0) : null;
+        }
+
+    /**
+     * Return the serialized fields of the specified class and its super classes, i.e. all instance
+     * fields that are neither transient nor synthetic.
+     */
+    private static List<Field> getFields(Class<?> clz)
+        {
+        List<Field> listFields = new ArrayList<>();
+        for (Class<?> c = clz; c != null && c != Object.class; c = c.getSuperclass())
+            {
+            for (Field field : c.getDeclaredFields())
+                {
+                int nModifiers = field.getModifiers();
+                if (!Modifier.isStatic(nModifiers) && !Modifier.isTransient(nModifiers) && !field.isSynthetic())
+                    {
+                    field.setAccessible(true);
+                    listFields.add(field);
+                    }
+                }
+            }
+        return listFields;
+        }
+
+    private static Class<?> loadClass(ClassLoader loader, String sClassName)
+        {
+        try
+            {
+            return Class.forName(sClassName, false, loader);
+            }
+        catch (ClassNotFoundException | LinkageError e)
+            {
+            return null;
+            }
+        }
+
+    private static URL[] toUrls(Set<File> setFiles) throws IOException
+        {
+        List<URL> listUrls = new ArrayList<>();
+        for (File file : setFiles)
+            {
+            listUrls.add(file.toURI().toURL());
+            }
+        return listUrls.toArray(new URL[0]);
+        }
+
+    private static List<String> readLines(URL url) throws IOException
+        {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)))
+            {
+            return reader.lines().collect(Collectors.toList());
+            }
+        }
+
+    private static void writeLine(BufferedWriter writer, String sKind, String sClassName, String sValue)
+            throws IOException
+        {
+        writer.write(sKind + '\t' + sClassName + '\t' + sValue);
+        writer.newLine();
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The kind of the result lines holding the type id and size of a portable type.
+     */
+    static final String RESULT_TYPE = "type";
+
+    /**
+     * The kind of the result lines holding the name and size of a field.
+     */
+    static final String RESULT_FIELD = "field";
+
+    /**
+     * The kind of the result lines holding the reason a portable type could not be measured.
+     */
+    static final String RESULT_ERROR = "error";
+
+    /**
+     * The maximum nesting depth of the generated values.
+     */
+    private static final int MAX_DEPTH = 3;
+
+    /**
+     * The time used for generated dates and times.
+     */
+    private static final long SAMPLE_MILLIS = 1_672_574_400_000L;
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The type identifiers of all portable types on the classpath, keyed by class.
+     */
+    private final Map<Class<?>, Integer> portableTypes = new LinkedHashMap<>();
+
+    private int collectionSize;
+
+    private int stringLength;
+    }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * The parameters of the {@link PofSizeReportAction}.
+ *
+ * @author Gunnar Hillert
+ */
+public interface PofSizeReportParameters extends WorkParameters
+    {
+    /**
+     * The instrumented classes and the runtime classpath of the project.
+     */
+    ConfigurableFileCollection getClasspath();
+
+    /**
+     * The type identifiers of the portable types to measure, keyed by binary class name.
+     */
+    MapProperty<String, Integer> getTypeIds();
+
+    /**
+     * The number of elements of the generated arrays, collections and maps.
+     */
+    Property<Integer> getCollectionSize();
+
+    /**
+     * The length of the generated strings.
+     */
+    Property<Integer> getStringLength();
+
+    /**
+     * The file the action writes the measured sizes to.
+     */
+    RegularFileProperty getResultFile();
+    }
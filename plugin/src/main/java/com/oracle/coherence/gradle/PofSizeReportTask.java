@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Reports the POF serialized size of the portable types of the main source set.
+ * Each portable type listed in the type registry of the {@code coherencePofMain}
+ * task is instantiated with generated values and serialized by the
+ * {@link PofSizeReportAction}, and its size, and the size of each of its fields,
+ * is written to a JSON report. Types whose size grew by more than the configured
+ * threshold compared to the baseline file are reported as warnings. The baseline
+ * is written if it does not exist yet, or if the Gradle property
+ * {@code coherence.pof.updateSizeBaseline} is {@code true}.
+ *
+ * @author Gunnar Hillert
+ */
+abstract class PofSizeReportTask extends DefaultTask
+    {
+    /**
+     * The instrumented classes and the runtime classpath of the project.
+     **/
+    @Classpath
+    abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * The type registry of the instrumented classes, listing the portable types to measure.
+     **/
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    abstract RegularFileProperty getTypeRegistry();
+
+    /**
+     * The classpath of the Coherence version used to serialize the portable types.
+     **/
+    @Classpath
+    abstract ConfigurableFileCollection getCoherenceClasspath();
+
+    /**
+     * The baseline the sizes are compared to, holding the size of each portable type keyed by class name.
+     **/
+    @Internal
+    abstract RegularFileProperty getBaselineFile();
+
+    /**
+     * The baseline file, if it exists.
+     **/
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    FileCollection getExistingBaselineFile()
+        {
+        return getObjectFactory().fileCollection().from(getBaselineFile()).filter(File::isFile);
+        }
+
+    /**
+     * The relative growth of the size of a portable type compared to the baseline that is reported,
+     * e.g. {@code 0.1} for 10%.
+     **/
+    @Input
+    abstract Property<Double> getSizeGrowthThreshold();
+
+    /**
+     * The number of elements of the generated arrays, collections and maps.
+     **/
+    @Input
+    abstract Property<Integer> getCollectionSize();
+
+    /**
+     * The length of the generated strings.
+     **/
+    @Input
+    abstract Property<Integer> getStringLength();
+
+    /**
+     * Whether to replace the baseline with the measured sizes.
+     **/
+    @Input
+    abstract Property<Boolean> getUpdateBaseline();
+
+    /**
+     * The JSON report.
+     **/
+    @OutputFile
+    abstract RegularFileProperty getReportFile();
+
+    @Inject
+    abstract ObjectFactory getObjectFactory();
+
+    @Inject
+    abstract WorkerExecutor getWorkerExecutor();
+
+    @Inject
+    public PofSizeReportTask(ProjectLayout layout)
+        {
+        getSizeGrowthThreshold().convention(DEFAULT_SIZE_GROWTH_THRESHOLD);
+        getCollectionSize().convention(DEFAULT_COLLECTION_SIZE);
+        getStringLength().convention(DEFAULT_STRING_LENGTH);
+        getUpdateBaseline().convention(false);
+        getBaselineFile().convention(layout.getProjectDirectory().file(DEFAULT_BASELINE_FILE));
+        getReportFile().convention(layout.getBuildDirectory().file("reports/coherence/" + getName() + ".json"));
+
+        // the type registry is not written if the project has no classes
+        onlyIf(task -> getTypeRegistry().getAsFile().get().isFile());
+        }
+
+    @TaskAction
+    public void reportSizes()
+        {
+        try
+            {
+            PofTypeRegistry registry = PofTypeRegistry.parse(
+                    Files.readAllLines(getTypeRegistry().getAsFile().get().toPath(), StandardCharsets.UTF_8));
+            if (registry == null)
+                {
+                throw new GradleException("Invalid type registry " + getTypeRegistry().getAsFile().get());
+                }
+
+            File resultFile = new File(getTemporaryDir(), "sizes");
+            WorkQueue workQueue = getWorkerExecutor().classLoaderIsolation(spec ->
+                    spec.getClasspath().from(getCoherenceClasspath()));
+            workQueue.submit(PofSizeReportAction.class, parameters ->
+                {
+                parameters.getClasspath().from(getClasspath());
+                parameters.getTypeIds().set(registry.getTypeIds());
+                parameters.getCollectionSize().set(getCollectionSize());
+                parameters.getStringLength().set(getStringLength());
+                parameters.getResultFile().set(resultFile);
+                });
+            workQueue.await();
+
+            Map<String, TypeSize> mapSizes     = readResults(resultFile);
+            Map<String, Long>     mapBaseline  = readBaseline();
+            double                dflThreshold = getSizeGrowthThreshold().get();
+
+            int cGrown = 0;
+            for (TypeSize size : mapSizes.values())
+                {
+                if (size.error != null)
+                    {
+                    getLogger().warn("Unable to measure the serialized size of {}: {}", size.className, size.error);
+                    continue;
+                    }
+
+                Long cbBaseline = mapBaseline.get(size.className);
+                size.baseline = cbBaseline;
+                if (cbBaseline != null && cbBaseline > 0 && size.bytes > cbBaseline * (1 + dflThreshold))
+                    {
+                    size.grown = true;
+                    cGrown++;
+                    getLogger().warn("The serialized size of {} grew from {} to {} bytes (+{}%), exceeding the threshold of {}%.",
+                            size.className, cbBaseline, size.bytes, percent((double) (size.bytes - cbBaseline) / cbBaseline),
+                            percent(dflThreshold));
+                    }
+                else
+                    {
+                    getLogger().info("The serialized size of {} is {} bytes.", size.className, size.bytes);
+                    }
+                }
+
+            writeReport(mapSizes, dflThreshold);
+
+            File baselineFile = getBaselineFile().getAsFile().get();
+            if (getUpdateBaseline().get() || !baselineFile.exists())
+                {
+                writeBaseline(baselineFile, mapSizes);
+                getLogger().lifecycle("Wrote the serialized size baseline of {} portable types to {}.",
+                        mapSizes.size(), baselineFile);
+                }
+
+            getLogger().lifecycle("Measured the serialized size of {} portable types, {} of them grew past the threshold. "
+                                  + "See {}", mapSizes.size(), cGrown, getReportFile().getAsFile().get());
+            }
+        catch (IOException e)
+            {
+            throw new GradleException("Unable to report the serialized size of the portable types.", e);
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Read the sizes written by the {@link PofSizeReportAction}, keyed by class name.
+     */
+    private static Map<String, TypeSize> readResults(File resultFile) throws IOException
+        {
+        Map<String, TypeSize> mapSizes = new TreeMap<>();
+        for (String sLine : Files.readAllLines(resultFile.toPath(), StandardCharsets.UTF_8))
+            {
+            String[] asPart = sLine.split("\t", -1);
+            if (asPart.length < 3)
+                {
+                continue;
+                }
+
+            TypeSize size = mapSizes.computeIfAbsent(asPart[1], TypeSize::new);
+            switch (asPart[0])
+                {
+                case PofSizeReportAction.RESULT_TYPE:
+                    size.typeId = Integer.parseInt(asPart[2]);
+                    size.bytes  = Long.parseLong(asPart[3]);
+                    break;
+                case PofSizeReportAction.RESULT_FIELD:
+                    size.fields.put(asPart[2], Long.parseLong(asPart[3]));
+                    break;
+                case PofSizeReportAction.RESULT_ERROR:
+                    size.error = asPart[2];
+                    break;
+                default:
+                    break;
+                }
+            }
+        return mapSizes;
+        }
+
+    /**
+     * Read the baseline sizes, keyed by class name.
+     */
+    private Map<String, Long> readBaseline() throws IOException
+        {
+        Map<String, Long> mapBaseline  = new LinkedHashMap<>();
+        File              baselineFile = getBaselineFile().getAsFile().get();
+        if (baselineFile.isFile())
+            {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(baselineFile.toPath()))
+                {
+                properties.load(in);
+                }
+            for (String sClass : properties.stringPropertyNames())
+                {
+                try
+                    {
+                    mapBaseline.put(sClass, Long.parseLong(properties.getProperty(sClass).trim()));
+                    }
+                catch (NumberFormatException e)
+                    {
+                    getLogger().warn("Ignoring the invalid baseline size of {} in {}.", sClass, baselineFile);
+                    }
+                }
+            }
+        return mapBaseline;
+        }
+
+    /**
+     * Write the baseline, sorted by class name and without a timestamp so that it can be kept under version control.
+     */
+    private static void writeBaseline(File baselineFile, Map<String, TypeSize> mapSizes) throws IOException
+        {
+        Files.createDirectories(baselineFile.getAbsoluteFile().getParentFile().toPath());
+        try (BufferedWriter writer = Files.newBufferedWriter(baselineFile.toPath(), StandardCharsets.ISO_8859_1))
+            {
+            writer.write("# The POF serialized size of the portable types in bytes, written by the coherencePofSizeReport task");
+            writer.newLine();
+            for (TypeSize size : mapSizes.values())
+                {
+                if (size.error == null)
+                    {
+                    writer.write(size.className + "=" + size.bytes);
+                    writer.newLine();
+                    }
+                }
+            }
+        }
+
+    private void writeReport(Map<String, TypeSize> mapSizes, double dflThreshold) throws IOException
+        {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"sizeGrowthThreshold\": ").append(dflThreshold).append(",\n");
+        sb.append("  \"collectionSize\": ").append(getCollectionSize().get()).append(",\n");
+        sb.append("  \"stringLength\": ").append(getStringLength().get()).append(",\n");
+        sb.append("  \"types\": [");
+
+        List<TypeSize> listSizes = new ArrayList<>(mapSizes.values());
+        for (int i = 0; i < listSizes.size(); i++)
+            {
+            TypeSize size = listSizes.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"class\": \"").append(size.className).append('"');
+            if (size.error != null)
+                {
+                sb.append(", \"error\": \"").append(escape(size.error)).append("\"}");
+                continue;
+                }
+
+            sb.append(", \"typeId\": ").append(size.typeId);
+            sb.append(", \"bytes\": ").append(size.bytes);
+            if (size.baseline != null)
+                {
+                sb.append(", \"baselineBytes\": ").append(size.baseline);
+                }
+            sb.append(", \"grown\": ").append(size.grown);
+            sb.append(", \"fields\": {");
+            boolean fFirst = true;
+            for (Map.Entry<String, Long> entry : size.fields.entrySet())
+                {
+                sb.append(fFirst ? "" : ", ").append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+                fFirst = false;
+                }
+            sb.append("}}");
+            }
+        sb.append(listSizes.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+
+        try (OutputStream out = Files.newOutputStream(getReportFile().getAsFile().get().toPath()))
+            {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+    private static String escape(String s)
+        {
+        StringBuilder sb = new StringBuilder();
+        for (char ch : s.toCharArray())
+            {
+            if (ch == '"' || ch == '\\')
+                {
+                sb.append('\\').append(ch);
+                }
+            else if (ch < 0x20)
+                {
+                sb.append(String.format("\\u%04x", (int) ch));
+                }
+            else
+                {
+                sb.append(ch);
+                }
+            }
+        return sb.toString();
+        }
+
+    private static String percent(double dfl)
+        {
+        return String.format(Locale.ROOT, "%.1f", dfl * 100);
+        }
+
+    // ----- inner class: TypeSize ------------------------------------------
+
+    /**
+     * The measured serialized size of a portable type.
+     */
+    private static final class TypeSize
+        {
+        TypeSize(String className)
+            {
+            this.className = className;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final String className;
+
+        /**
+         * The serialized size of each field, keyed by field name.
+         */
+        private final Map<String, Long> fields = new LinkedHashMap<>();
+
+        private int typeId;
+
+        private long bytes;
+
+        private Long baseline;
+
+        private boolean grown;
+
+        private String error;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The default relative size growth that is reported.
+     */
+    static final double DEFAULT_SIZE_GROWTH_THRESHOLD = 0.1d;
+
+    /**
+     * The default baseline file, relative to the project directory.
+     */
+    static final String DEFAULT_BASELINE_FILE = "pof-size-baseline.properties";
+
+    /**
+     * The default number of elements of the generated arrays, collections and maps.
+     */
+    private static final int DEFAULT_COLLECTION_SIZE = 3;
+
+    /**
+     * The default length of the generated strings.
+     */
+    private static final int DEFAULT_STRING_LENGTH = 16;
+    }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The registry of the portable types of a classes directory, i.e. the type
+ * identifier, class and version of each type. The registry is published with
+ * the instrumented classes, both as a plain registry resource and as a POF
+ * configuration, so that the POF context of a Coherence member can register
+ * the project's types without scanning the classpath for them at startup.
+ *
+ * @author Gunnar Hillert
+ */
+final class PofTypeRegistry
+    {
+    // ----- factory methods ------------------------------------------------
+
+    /**
+     * Parse the lines of a registry resource.
+     *
+     * @param listLines  the lines of the registry resource
+     *
+     * @return the registry, or {@code null} if the lines are not a valid registry resource
+     */
+    static PofTypeRegistry parse(List<String> listLines)
+        {
+        if (listLines.isEmpty() || !REGISTRY_HEADER.equals(listLines.get(0)))
+            {
+            return null;
+            }
+
+        PofTypeRegistry registry = new PofTypeRegistry();
+        for (String sLine : listLines.subList(1, listLines.size()))
+            {
+            String[] asPart = sLine.split("\t", -1);
+            if (asPart.length != 3)
+                {
+                return null;
+                }
+            try
+                {
+                registry.add(Integer.parseInt(asPart[0]), asPart[1], Integer.parseInt(asPart[2]));
+                }
+            catch (NumberFormatException e)
+                {
+                return null;
+                }
+            }
+        return registry;
+        }
+
+    // ----- PofTypeRegistry methods ----------------------------------------
+
+    /**
+     * Return the type identifiers of the portable types, keyed by binary class name, in type identifier order.
+     *
+     * @return the type identifiers of the portable types
+     */
+    Map<String, Integer> getTypeIds()
+        {
+        Map<String, Integer> mapTypeIds = new LinkedHashMap<>();
+        types.forEach((nTypeId, mapClasses) -> mapClasses.keySet().forEach(sClass -> mapTypeIds.put(sClass, nTypeId)));
+        return mapTypeIds;
+        }
+
+    /**
+     * Add a portable type to the registry.
+     *
+     * @param nTypeId     the type identifier
+     * @param sClassName  the binary name of the class
+     * @param nVersion    the version of the type
+     */
+    void add(int nTypeId, String sClassName, int nVersion)
+        {
+        types.computeIfAbsent(nTypeId, k -> new TreeMap<>()).put(sClassName, nVersion);
+        }
+
+    /**
+     * Return the number of portable types in the registry.
+     *
+     * @return the number of portable types
+     */
+    int size()
+        {
+        return types.values().stream().mapToInt(Map::size).sum();
+        }
+
+    /**
+     * Return a description of each type identifier that is used by more than one class.
+     *
+     * @return the conflicting type identifiers, or an empty list if there are none
+     */
+    List<String> getConflicts()
+        {
+        List<String> listConflicts = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, Integer>> entry : types.entrySet())
+            {
+            if (entry.getValue().size() > 1)
+                {
+                listConflicts.add("Type id " + entry.getKey() + " is used by "
+                                  + String.join(", ", new TreeSet<>(entry.getValue().keySet())));
+                }
+            }
+        return listConflicts;
+        }
+
+    /**
+     * Write the registry and the POF configuration of the portable types to
+     * the specified classes directory.
+     *
+     * @param classesDirectory  the directory the resources are written to
+     *
+     * @throws IOException if the resources cannot be written
+     */
+    void write(File classesDirectory) throws IOException
+        {
+        List<String> listRegistry = new ArrayList<>();
+        listRegistry.add(REGISTRY_HEADER);
+
+        StringBuilder sbConfig = new StringBuilder()
+                .append("<?xml version=\"1.0\"?>\n")
+                .append("<!-- Generated by the Coherence Gradle plugin. Do not edit. -->\n")
+                .append("<pof-config xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n")
+                .append("            xmlns=\"http://xmlns.oracle.com/coherence/coherence-pof-config\"\n")
+                .append("            xsi:schemaLocation=\"http://xmlns.oracle.com/coherence/coherence-pof-config")
+                .append(" coherence-pof-config.xsd\">\n")
+                .append("  <user-type-list>\n");
+
+        for (Map.Entry<Integer, Map<String, Integer>> entry : types.entrySet())
+            {
+            for (Map.Entry<String, Integer> type : entry.getValue().entrySet())
+                {
+                listRegistry.add(entry.getKey() + "\t" + type.getKey() + "\t" + type.getValue());
+                sbConfig.append("    <user-type>\n")
+                        .append("      <type-id>").append(entry.getKey()).append("</type-id>\n")
+                        .append("      <class-name>").append(type.getKey()).append("</class-name>\n")
+                        .append("    </user-type>\n");
+                }
+            }
+        sbConfig.append("  </user-type-list>\n")
+                .append("</pof-config>\n");
+
+        Path registry = classesDirectory.toPath().resolve(REGISTRY_RESOURCE);
+        Files.createDirectories(registry.getParent());
+        Files.write(registry, listRegistry, StandardCharsets.UTF_8);
+        Files.write(classesDirectory.toPath().resolve(POF_CONFIG_RESOURCE),
+                    sbConfig.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The path of the registry resource. Its first line holds the format name
+     * and version, each following line the type identifier, class name and
+     * version of a portable type, separated by tabs.
+     */
+    static final String REGISTRY_RESOURCE = "META-INF/coherence/pof-types.idx";
+
+    /**
+     * The first line of the registry resource.
+     */
+    static final String REGISTRY_HEADER = "coherence-pof-types 1";
+
+    /**
+     * The path of the POF configuration of the portable types, which can be
+     * included by the POF configuration of an application.
+     */
+    static final String POF_CONFIG_RESOURCE = "META-INF/coherence/pof-types-config.xml";
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The versions of the portable types keyed by binary class name, keyed by type identifier.
+     */
+    private final Map<Integer, Map<String, Integer>> types = new TreeMap<>();
+    }
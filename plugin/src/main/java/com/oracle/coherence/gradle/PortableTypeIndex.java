@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of the classes in the project's classes directories and the classes
+ * they depend on (super classes and field types). Classes that cannot be
+ * portable types are rejected by a constant pool check, so only their super
+ * class is recorded. The index is persisted
+ * between executions of the {@link CoherenceTask} and allows incremental runs
+ * to determine which portable types need to be re-instrumented when a subset
+ * of the class files change.
+ *
+ * @author Gunnar Hillert
+ */
+final class PortableTypeIndex
+    {
+    private PortableTypeIndex()
+        {
+        }
+
+    // ----- factory methods ------------------------------------------------
+
+    /**
+     * Create a new index by scanning all class files in the specified directories.
+     *
+     * @param classesDirectories  the classes directories to scan
+     *
+     * @return the new index
+     *
+     * @throws IOException if a class file cannot be read
+     */
+    static PortableTypeIndex scan(List<File> classesDirectories) throws IOException
+        {
+        PortableTypeIndex index = new PortableTypeIndex();
+        for (File classesDirectory : classesDirectories)
+            {
+            Path root = classesDirectory.toPath();
+            try (Stream<Path> stream = Files.walk(root))
+                {
+                for (Path classFile : stream.filter(PortableTypeIndex::isClassFile).collect(Collectors.toList()))
+                    {
+                    index.update(root, classFile);
+                    }
+                }
+            }
+        return index;
+        }
+
+    /**
+     * Load a previously {@link #store(File) stored} index.
+     *
+     * @param file  the file the index was stored to
+     *
+     * @return the loaded index, or {@code null} if the index does not exist or
+     *         cannot be read
+     */
+    static PortableTypeIndex load(File file)
+        {
+        if (!file.isFile())
+            {
+            return null;
+            }
+
+        PortableTypeIndex index = new PortableTypeIndex();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+            {
+            String sLine;
+            while ((sLine = reader.readLine()) != null)
+                {
+                String[] asPart = sLine.split("\t", -1);
+                if (asPart.length != 7)
+                    {
+                    return null;
+                    }
+                Set<String> setReferences = asPart[6].isEmpty()
+                        ? Collections.emptySet()
+                        : new LinkedHashSet<>(Arrays.asList(asPart[6].split(",")));
+                index.add(new Entry(asPart[0], resolve(file, asPart[1]), asPart[2], Boolean.parseBoolean(asPart[3]),
+                                    Integer.parseInt(asPart[4]), Integer.parseInt(asPart[5]), setReferences));
+                }
+            }
+        catch (IOException | NumberFormatException e)
+            {
+            return null;
+            }
+        return index;
+        }
+
+    // ----- PortableTypeIndex methods --------------------------------------
+
+    /**
+     * Store this index to the specified file. The classes directories are stored relative to the
+     * directory of the file, so that the index remains valid when the project is relocated, e.g.
+     * when the outputs of the task are restored from a build cache populated on another machine.
+     *
+     * @param file  the file to store the index to
+     *
+     * @throws IOException if the index cannot be written
+     */
+    void store(File file) throws IOException
+        {
+        Map<String, Entry> mapSorted = new TreeMap<>(entries);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+            {
+            for (Entry entry : mapSorted.values())
+                {
+                writer.write(entry.className + '\t' + relativize(file, entry.classesDirectory) + '\t' + entry.relativePath
+                             + '\t' + entry.portableType + '\t' + entry.typeId + '\t' + entry.typeVersion
+                             + '\t' + String.join(",", entry.references));
+                writer.newLine();
+                }
+            }
+        }
+
+    /**
+     * Add or update the index entry for the specified class file.
+     *
+     * @param classesDirectory  the classes directory the class file belongs to
+     * @param classFile         the class file
+     *
+     * @return the internal name of the class
+     *
+     * @throws IOException if the class file cannot be read
+     */
+    String update(Path classesDirectory, Path classFile) throws IOException
+        {
+        ClassFileInfo info          = ClassFileInfo.parse(classFile);
+        String        sRelativePath = classesDirectory.relativize(classFile).toString();
+
+        parsedClassCount++;
+
+        remove(classFile);
+        add(new Entry(info.getClassName(), classesDirectory.toFile(), sRelativePath, info.isPortableType(),
+                      info.getTypeId(), info.getTypeVersion(), info.getReferencedClassNames()));
+        return info.getClassName();
+        }
+
+    /**
+     * Remove the index entry for the specified class file.
+     *
+     * @param classFile  the class file
+     *
+     * @return the internal name of the removed class, or {@code null} if the
+     *         class file was not indexed
+     */
+    String remove(Path classFile)
+        {
+        Entry entry = classFiles.remove(classFile.toFile().getAbsoluteFile());
+        if (entry == null)
+            {
+            return null;
+            }
+        entries.remove(entry.className);
+        return entry.className;
+        }
+
+    /**
+     * Return the class files of all portable types that are affected by changes
+     * to the specified classes. A portable type is affected if it is one of the
+     * changed classes itself, or if it extends or embeds (directly or
+     * transitively) one of the changed classes.
+     *
+     * @param changedClassNames  the internal names of the changed classes
+     *
+     * @return the affected portable types, keyed by their classes directory
+     */
+    Map<File, Set<String>> getAffectedPortableTypes(Set<String> changedClassNames)
+        {
+        Map<String, Set<String>> mapDependents = new HashMap<>();
+        for (Entry entry : entries.values())
+            {
+            for (String sReference : entry.references)
+                {
+                mapDependents.computeIfAbsent(sReference, k -> new HashSet<>()).add(entry.className);
+                }
+            }
+
+        Set<String>   setVisited = new HashSet<>(changedClassNames);
+        Deque<String> queue      = new ArrayDeque<>(changedClassNames);
+        while (!queue.isEmpty())
+            {
+            for (String sDependent : mapDependents.getOrDefault(queue.poll(), Collections.emptySet()))
+                {
+                if (setVisited.add(sDependent))
+                    {
+                    queue.add(sDependent);
+                    }
+                }
+            }
+
+        Map<File, Set<String>> mapAffected = new TreeMap<>();
+        for (String sClassName : setVisited)
+            {
+            Entry entry = entries.get(sClassName);
+            if (entry != null && entry.portableType)
+                {
+                mapAffected.computeIfAbsent(entry.classesDirectory, k -> new LinkedHashSet<>()).add(entry.relativePath);
+                }
+            }
+        return mapAffected;
+        }
+
+    /**
+     * Return the number of class files parsed by this index since it was created or loaded.
+     *
+     * @return the number of parsed class files
+     */
+    int getParsedClassCount()
+        {
+        return parsedClassCount;
+        }
+
+    /**
+     * Return {@code true} if the indexed classes contain at least one portable type.
+     *
+     * @return {@code true} if the indexed classes contain portable types
+     */
+    boolean hasPortableTypes()
+        {
+        return entries.values().stream().anyMatch(entry -> entry.portableType);
+        }
+
+    /**
+     * Return the class files of all indexed portable types.
+     *
+     * @return the portable types, keyed by their classes directory
+     */
+    Map<File, Set<String>> getPortableTypes()
+        {
+        Map<File, Set<String>> mapPortableTypes = new TreeMap<>();
+        for (Entry entry : new TreeMap<>(entries).values())
+            {
+            if (entry.portableType)
+                {
+                mapPortableTypes.computeIfAbsent(entry.classesDirectory, k -> new LinkedHashSet<>()).add(entry.relativePath);
+                }
+            }
+        return mapPortableTypes;
+        }
+
+    /**
+     * Return the registry of the portable types of the specified classes directory.
+     *
+     * @param classesDirectory  the classes directory
+     *
+     * @return the registry of the portable types of the classes directory
+     */
+    PofTypeRegistry getTypeRegistry(File classesDirectory)
+        {
+        PofTypeRegistry registry = new PofTypeRegistry();
+        for (Entry entry : entries.values())
+            {
+            if (entry.portableType && entry.classesDirectory.equals(classesDirectory.getAbsoluteFile()))
+                {
+                registry.add(entry.typeId, entry.className.replace('/', '.'), entry.typeVersion);
+                }
+            }
+        return registry;
+        }
+
+    /**
+     * Return the classes referenced by the portable types that are not part of
+     * the indexed classes directories, i.e. the classes expected to be provided
+     * by the dependencies.
+     *
+     * @return the internal names of the referencing portable types, keyed by the
+     *         internal name of the referenced class
+     */
+    Map<String, Set<String>> getExternalReferences()
+        {
+        Map<String, Set<String>> mapReferences = new TreeMap<>();
+        for (Entry entry : entries.values())
+            {
+            if (!entry.portableType)
+                {
+                continue;
+                }
+            for (String sReference : entry.references)
+                {
+                if (!entries.containsKey(sReference))
+                    {
+                    mapReferences.computeIfAbsent(sReference, k -> new TreeSet<>()).add(entry.className);
+                    }
+                }
+            }
+        return mapReferences;
+        }
+
+    /**
+     * Return {@code true} if the specified path denotes a class file.
+     *
+     * @param path  the path to check
+     *
+     * @return {@code true} if the path denotes a class file
+     */
+    static boolean isClassFile(Path path)
+        {
+        return Files.isRegularFile(path) && path.getFileName().toString().endsWith(".class");
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Return the path of the specified classes directory relative to the directory of the index file,
+     * using {@code /} as the separator, or its absolute path if it cannot be relativized.
+     */
+    private static String relativize(File indexFile, File classesDirectory)
+        {
+        Path indexDir = indexFile.getAbsoluteFile().toPath().getParent();
+        Path dir      = classesDirectory.toPath().normalize();
+        if (indexDir == null || !indexDir.getRoot().equals(dir.getRoot()))
+            {
+            return classesDirectory.getPath();
+            }
+        return indexDir.relativize(dir).toString().replace(File.separatorChar, '/');
+        }
+
+    /**
+     * Resolve a classes directory stored by {@link #relativize(File, File)} against the directory of the index file.
+     */
+    private static File resolve(File indexFile, String sPath)
+        {
+        Path indexDir = indexFile.getAbsoluteFile().toPath().getParent();
+        return indexDir.resolve(sPath.replace('/', File.separatorChar)).normalize().toFile();
+        }
+
+    private void add(Entry entry)
+        {
+        Entry previous = entries.put(entry.className, entry);
+        if (previous != null)
+            {
+            classFiles.remove(previous.getClassFile());
+            }
+        classFiles.put(entry.getClassFile(), entry);
+        }
+
+    // ----- inner class: Entry ---------------------------------------------
+
+    /**
+     * An index entry for a single class file.
+     */
+    private static final class Entry
+        {
+        Entry(String className, File classesDirectory, String relativePath, boolean portableType,
+              int typeId, int typeVersion, Set<String> references)
+            {
+            this.className        = className;
+            this.classesDirectory = classesDirectory.getAbsoluteFile();
+            this.relativePath     = relativePath;
+            this.portableType     = portableType;
+            this.typeId           = typeId;
+            this.typeVersion      = typeVersion;
+            this.references       = references;
+            }
+
+        File getClassFile()
+            {
+            return new File(classesDirectory, relativePath);
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final String className;
+
+        private final File classesDirectory;
+
+        private final String relativePath;
+
+        private final boolean portableType;
+
+        private final int typeId;
+
+        private final int typeVersion;
+
+        private final Set<String> references;
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The index entries keyed by the internal class name.
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * The index entries keyed by the absolute class file.
+     */
+    private final Map<File, Entry> classFiles = new HashMap<>();
+
+    /**
+     * The number of class files parsed since the index was created or loaded.
+     */
+    private int parsedClassCount;
+    }
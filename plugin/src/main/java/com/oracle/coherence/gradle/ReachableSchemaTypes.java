@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Selects the portable types of the dependencies that are reachable from the
+ * project's portable types, so that the schema only contains the dependency
+ * types the project actually uses rather than every portable type on the
+ * classpath. Starting from the project's portable types, the types of their
+ * fields, including the type arguments of their generic signatures, and their
+ * super classes are looked up in the class listings of the dependencies, and
+ * the super classes of the dependency types found are followed transitively.
+ * The fields of dependency types are not followed, as their properties are not
+ * part of the schema.
+ * <p>
+ * Only the dependencies containing a reachable class are scanned for portable
+ * types; all other dependencies are merely listed, which only requires reading
+ * the central directory of a jar.
+ *
+ * @author Gunnar Hillert
+ */
+final class ReachableSchemaTypes
+    {
+    private ReachableSchemaTypes()
+        {
+        }
+
+    // ----- ReachableSchemaTypes methods -----------------------------------
+
+    /**
+     * Copy the dependency portable types reachable from the project's portable types to the target directory.
+     *
+     * @param listSchemaTypes  the classes directories holding the project's portable types
+     * @param listDeps         the dependencies, in classpath order
+     * @param dependencies     the access to the class listings and schema fragments of the dependencies
+     * @param targetDirectory  the directory to copy the reachable dependency types to
+     *
+     * @return the number of dependency types copied
+     *
+     * @throws IOException if a dependency cannot be scanned, or a class file cannot be read or copied
+     */
+    static int stage(List<File> listSchemaTypes, List<File> listDeps, Dependencies dependencies, File targetDirectory)
+            throws IOException
+        {
+        Map<File, Set<String>> mapClassNames = new LinkedHashMap<>();
+        for (File dep : listDeps)
+            {
+            mapClassNames.put(dep, dependencies.getClassNames(dep));
+            }
+
+        Set<String>   setVisited = new HashSet<>();
+        Deque<String> queue      = new ArrayDeque<>();
+        for (File typesDirectory : listSchemaTypes)
+            {
+            for (Path classFile : listClassFiles(typesDirectory.toPath()))
+                {
+                ClassFileInfo info = ClassFileInfo.parse(classFile);
+                setVisited.add(info.getClassName());
+                if (info.isPortableType())
+                    {
+                    queue.addAll(info.getReferencedClassNames());
+                    }
+                }
+            }
+
+        Map<File, File> mapFragments = new HashMap<>();
+        Path            target       = targetDirectory.toPath();
+        int             cStaged      = 0;
+        while (!queue.isEmpty())
+            {
+            // the classes of a round are resolved together, so that their dependencies are scanned concurrently;
+            // the first dependency on the classpath containing a class wins, as it does when loading the class
+            Map<String, File> mapOwners = new LinkedHashMap<>();
+            while (!queue.isEmpty())
+                {
+                String sClassName = queue.poll();
+                if (setVisited.add(sClassName))
+                    {
+                    File owner = findOwner(mapClassNames, sClassName);
+                    if (owner != null)
+                        {
+                        mapOwners.put(sClassName, owner);
+                        }
+                    }
+                }
+
+            List<File> listUnscanned = new ArrayList<>();
+            for (File owner : new LinkedHashSet<>(mapOwners.values()))
+                {
+                if (!mapFragments.containsKey(owner))
+                    {
+                    listUnscanned.add(owner);
+                    }
+                }
+            if (!listUnscanned.isEmpty())
+                {
+                Map<File, File> mapScanned = dependencies.getFragments(listUnscanned);
+                for (File dep : listUnscanned)
+                    {
+                    mapFragments.put(dep, mapScanned.get(dep));
+                    }
+                }
+
+            for (Map.Entry<String, File> entry : mapOwners.entrySet())
+                {
+                File fragment  = mapFragments.get(entry.getValue());
+                Path classFile = fragment == null ? null : fragment.toPath().resolve(entry.getKey() + ".class");
+                if (classFile == null || !Files.isRegularFile(classFile))
+                    {
+                    // the class is not a portable type
+                    continue;
+                    }
+
+                Path targetFile = target.resolve(entry.getKey() + ".class");
+                Files.createDirectories(targetFile.getParent());
+                Files.copy(classFile, targetFile);
+                cStaged++;
+
+                String sSuperName = ClassFileInfo.parse(classFile).getSuperName();
+                if (sSuperName != null)
+                    {
+                    queue.add(sSuperName);
+                    }
+                }
+            }
+        return cStaged;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Return the first dependency containing the specified class, or {@code null} if there is none.
+     */
+    private static File findOwner(Map<File, Set<String>> mapClassNames, String sClassName)
+        {
+        for (Map.Entry<File, Set<String>> entry : mapClassNames.entrySet())
+            {
+            if (entry.getValue().contains(sClassName))
+                {
+                return entry.getKey();
+                }
+            }
+        return null;
+        }
+
+    private static List<Path> listClassFiles(Path root) throws IOException
+        {
+        if (!Files.isDirectory(root))
+            {
+            return Collections.emptyList();
+            }
+        try (Stream<Path> stream = Files.walk(root))
+            {
+            return stream.filter(PortableTypeIndex::isClassFile).sorted().collect(Collectors.toList());
+            }
+        }
+
+    // ----- inner interface: Dependencies ----------------------------------
+
+    /**
+     * The access to the dependencies of a project.
+     */
+    interface Dependencies
+        {
+        /**
+         * Return the internal names of all classes contained in the specified dependency.
+         *
+         * @param dependency  the jar or class directory
+         *
+         * @return the internal names of the contained classes
+         *
+         * @throws IOException if the dependency cannot be read
+         */
+        Set<String> getClassNames(File dependency) throws IOException;
+
+        /**
+         * Scan the specified dependencies for portable types.
+         *
+         * @param listDependencies  the jars and class directories to scan
+         *
+         * @return the schema fragments of the dependencies containing portable types, keyed by dependency
+         *
+         * @throws IOException if a dependency cannot be scanned
+         */
+        Map<File, File> getFragments(List<File> listDependencies) throws IOException;
+        }
+    }
@@ -0,0 +1,704 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A persistent cache of the portable types contained in dependency jars. For
+ * each jar, keyed by the SHA-256 hash of its content, the cache holds a schema
+ * fragment, which is a directory containing only the class files of the
+ * {@code @PortableType} classes of that jar. Jars without any portable types
+ * are recorded with a marker file, so that unchanged jars never have to be
+ * parsed again.
+ * <p>
+ * The content hash of a jar is recorded under a key derived from the path,
+ * size and modification time of the jar, so that a jar is only hashed if it
+ * has not been seen at that path with that size and modification time before.
+ * Entries that have not been used for {@link #MAX_AGE 30 days} are deleted by
+ * {@link #cleanUpIfDue()}.
+ *
+ * @author Gunnar Hillert
+ */
+final class SchemaFragmentCache
+    {
+    /**
+     * Create a new cache rooted in the specified directory.
+     *
+     * @param cacheDirectory  the root directory of the cache
+     */
+    SchemaFragmentCache(File cacheDirectory)
+        {
+        this.cacheDirectory = new File(cacheDirectory, CACHE_VERSION).toPath();
+        }
+
+    // ----- SchemaFragmentCache methods ------------------------------------
+
+    /**
+     * Return the schema fragment of the specified jar, extracting it if the jar
+     * has not been seen before.
+     *
+     * @param jarFile  the jar file
+     *
+     * @return the directory containing the portable types of the jar, or
+     *         {@code null} if the jar does not contain any portable types
+     *
+     * @throws IOException if the jar cannot be read or the fragment cannot be written
+     */
+    File getFragment(File jarFile) throws IOException
+        {
+        Path   key          = cacheDirectory.resolve(KEYS).resolve(hash(getKey(jarFile)));
+        String sContentHash = Files.isRegularFile(key) ? readKey(key) : null;
+        if (sContentHash == null)
+            {
+            sContentHash = hash(jarFile.toPath());
+            writeKey(key, sContentHash);
+            }
+        else
+            {
+            touch(key);
+            }
+
+        Path entry = cacheDirectory.resolve(sContentHash);
+        if (Files.isDirectory(entry))
+            {
+            cacheHits.incrementAndGet();
+            touch(entry);
+            }
+        else
+            {
+            extract(jarFile, entry);
+            }
+
+        return Files.exists(entry.resolve(NO_PORTABLE_TYPES))
+               ? null
+               : entry.resolve(CLASSES).toFile();
+        }
+
+    /**
+     * Return the number of jars whose fragment was taken from the cache.
+     *
+     * @return the number of cache hits
+     */
+    int getCacheHits()
+        {
+        return cacheHits.get();
+        }
+
+    /**
+     * Return the number of jars whose fragment was extracted using their schema index.
+     *
+     * @return the number of jars with a schema index
+     */
+    int getIndexedJars()
+        {
+        return indexedJars.get();
+        }
+
+    /**
+     * Return the number of class files parsed while extracting fragments.
+     *
+     * @return the number of parsed class files
+     */
+    int getClassesParsed()
+        {
+        return classesParsed.get();
+        }
+
+    /**
+     * Delete the entries that have not been used for {@link #MAX_AGE 30 days}, if
+     * that has not been done during the last {@link #CLEANUP_INTERVAL day} by any
+     * build using this cache.
+     *
+     * @return the number of deleted schema fragments
+     */
+    int cleanUpIfDue()
+        {
+        Path marker = cacheDirectory.resolve(CLEANUP_MARKER);
+        try
+            {
+            if (!Files.exists(marker))
+                {
+                Files.createDirectories(cacheDirectory);
+                Files.createFile(marker);
+                return 0;
+                }
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(marker).toMillis() < CLEANUP_INTERVAL)
+                {
+                return 0;
+                }
+            Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+        catch (IOException e)
+            {
+            // another build is creating the marker or cleaning up
+            return 0;
+            }
+        return cleanUp(MAX_AGE);
+        }
+
+    /**
+     * Delete the entries that have not been used for the specified time, and the
+     * temporary entries left behind by builds that have been interrupted.
+     *
+     * @param cMillisMaxAge  the time in milliseconds after which an unused entry is deleted
+     *
+     * @return the number of deleted schema fragments
+     */
+    int cleanUp(long cMillisMaxAge)
+        {
+        long ldtNow   = System.currentTimeMillis();
+        int  cDeleted = 0;
+        for (Path path : list(cacheDirectory))
+            {
+            String sName = path.getFileName().toString();
+            if (sName.equals(KEYS) || sName.equals(CLEANUP_MARKER))
+                {
+                continue;
+                }
+            long cMillisMax = sName.endsWith(".tmp") ? Math.min(cMillisMaxAge, CLEANUP_INTERVAL) : cMillisMaxAge;
+            if (isOlderThan(path, ldtNow - cMillisMax) && deleteQuietly(path) && !sName.endsWith(".tmp"))
+                {
+                cDeleted++;
+                }
+            }
+        for (Path key : list(cacheDirectory.resolve(KEYS)))
+            {
+            if (isOlderThan(key, ldtNow - cMillisMaxAge))
+                {
+                deleteQuietly(key);
+                }
+            }
+        return cDeleted;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Return the key of the specified jar, made of its absolute path, size and modification time.
+     */
+    private static String getKey(File jarFile)
+        {
+        return jarFile.getAbsolutePath() + '\t' + jarFile.length() + '\t' + jarFile.lastModified();
+        }
+
+    /**
+     * Return the content hash recorded in the specified key file, or {@code null} if it cannot be read.
+     */
+    private static String readKey(Path key)
+        {
+        try
+            {
+            String sContentHash = new String(Files.readAllBytes(key), StandardCharsets.US_ASCII);
+            return sContentHash.matches("[0-9a-f]{64}") ? sContentHash : null;
+            }
+        catch (IOException e)
+            {
+            return null;
+            }
+        }
+
+    /**
+     * Record the content hash of a jar in the specified key file. The file is
+     * written to a temporary file first and then moved into place, so that
+     * concurrent builds never observe a partially written key.
+     */
+    private static void writeKey(Path key, String sContentHash) throws IOException
+        {
+        Files.createDirectories(key.getParent());
+        Path tempKey = key.resolveSibling(key.getFileName() + "-" + UUID.randomUUID() + ".tmp");
+        try
+            {
+            Files.write(tempKey, sContentHash.getBytes(StandardCharsets.US_ASCII));
+            Files.move(tempKey, key, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        finally
+            {
+            Files.deleteIfExists(tempKey);
+            }
+        }
+
+    /**
+     * Record that the specified entry has been used. The modification time is
+     * only updated once a day, so that a hit does not need to write to the cache.
+     */
+    private static void touch(Path path)
+        {
+        try
+            {
+            long ldtNow = System.currentTimeMillis();
+            if (ldtNow - Files.getLastModifiedTime(path).toMillis() > CLEANUP_INTERVAL)
+                {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(ldtNow));
+                }
+            }
+        catch (IOException e)
+            {
+            // the entry is deleted at worst, and extracted again when it is needed
+            }
+        }
+
+    private static boolean isOlderThan(Path path, long ldtThreshold)
+        {
+        try
+            {
+            return Files.getLastModifiedTime(path).toMillis() < ldtThreshold;
+            }
+        catch (IOException e)
+            {
+            return false;
+            }
+        }
+
+    private static List<Path> list(Path directory)
+        {
+        if (!Files.isDirectory(directory))
+            {
+            return Collections.emptyList();
+            }
+        try (Stream<Path> stream = Files.list(directory))
+            {
+            return stream.collect(Collectors.toList());
+            }
+        catch (IOException e)
+            {
+            return Collections.emptyList();
+            }
+        }
+
+    private static boolean deleteQuietly(Path path)
+        {
+        try
+            {
+            deleteRecursively(path);
+            return true;
+            }
+        catch (IOException e)
+            {
+            // another build is deleting or using the same entry
+            return false;
+            }
+        }
+
+    /**
+     * Extract the portable types of the specified jar into the given cache entry.
+     * If the jar has a {@link SchemaIndexResource schema index}, the classes listed
+     * in it are read, and the other classes are only checked for the {@code @PortableType}
+     * descriptor, so that an incomplete index falls back to a full scan. The jar is
+     * memory-mapped where possible, so that only the class files passing the constant
+     * pool check are inflated in full. The fragment is written to a
+     * temporary directory first and then moved into place, so that concurrent
+     * builds never observe a partially written entry.
+     */
+    private void extract(File jarFile, Path entry) throws IOException
+        {
+        Path tempEntry = cacheDirectory.resolve(entry.getFileName() + "-" + UUID.randomUUID() + ".tmp");
+        Path classes   = tempEntry.resolve(CLASSES);
+        int  cTypes    = 0;
+
+        Files.createDirectories(classes);
+        try
+            {
+            MappedJarFile mappedJar = MappedJarFile.open(jarFile);
+            if (mappedJar == null)
+                {
+                cTypes = extractWithZipFile(jarFile, classes);
+                }
+            else
+                {
+                try (MappedJarFile jar = mappedJar)
+                    {
+                    cTypes = extractWithSchemaIndex(jarFile, classes, jar);
+                    if (cTypes < 0)
+                        {
+                        cTypes = 0;
+                        for (MappedJarFile.Entry jarEntry : jar.getClassEntries())
+                            {
+                            classesParsed.incrementAndGet();
+                            if (jar.mayBePortableType(jarEntry)
+                                && writeIfPortableType(jarFile, classes, jarEntry.getName(), jar.read(jarEntry)))
+                                {
+                                cTypes++;
+                                }
+                            }
+                        }
+                    }
+                }
+
+            if (cTypes == 0)
+                {
+                Files.createFile(tempEntry.resolve(NO_PORTABLE_TYPES));
+                }
+
+            try
+                {
+                Files.move(tempEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+                }
+            catch (IOException e)
+                {
+                // another build may have extracted the same jar concurrently
+                if (!Files.isDirectory(entry))
+                    {
+                    throw e;
+                    }
+                }
+            }
+        finally
+            {
+            deleteRecursively(tempEntry);
+            }
+        }
+
+    /**
+     * Extract the portable types listed in the {@link SchemaIndexResource schema index}
+     * of the specified mapped jar. The index is only used as a hint: if any other class
+     * of the jar passes the constant pool check, the index is incomplete and the jar has
+     * to be scanned.
+     *
+     * @return the number of extracted portable types, or {@code -1} if the jar
+     *         does not have a usable schema index and has to be scanned
+     */
+    private int extractWithSchemaIndex(File jarFile, Path classes, MappedJarFile jar) throws IOException
+        {
+        MappedJarFile.Entry indexEntry = jar.getSchemaIndexEntry();
+        List<String>        listPaths  = indexEntry == null ? null : SchemaIndexResource.parse(jar.read(indexEntry));
+        if (listPaths == null)
+            {
+            return -1;
+            }
+
+        Map<String, MappedJarFile.Entry> mapEntries = new HashMap<>();
+        for (MappedJarFile.Entry entry : jar.getClassEntries())
+            {
+            mapEntries.put(entry.getName(), entry);
+            }
+
+        Map<String, byte[]> mapClasses = new LinkedHashMap<>();
+        for (String sPath : listPaths)
+            {
+            MappedJarFile.Entry entry = mapEntries.get(sPath);
+            if (entry == null)
+                {
+                return -1;
+                }
+            mapClasses.put(sPath, jar.read(entry));
+            }
+
+        for (MappedJarFile.Entry entry : jar.getClassEntries())
+            {
+            if (!mapClasses.containsKey(entry.getName()))
+                {
+                classesParsed.incrementAndGet();
+                if (jar.mayBePortableType(entry))
+                    {
+                    return -1;
+                    }
+                }
+            }
+        return writeIndexedTypes(jarFile, classes, mapClasses);
+        }
+
+    /**
+     * Extract the portable types of the specified jar using {@link ZipFile}, for
+     * jars that cannot be read as a {@link MappedJarFile}.
+     *
+     * @return the number of extracted portable types
+     */
+    private int extractWithZipFile(File jarFile, Path classes) throws IOException
+        {
+        try (ZipFile zip = new ZipFile(jarFile))
+            {
+            ZipEntry indexEntry = zip.getEntry(SchemaIndexResource.RESOURCE);
+            if (indexEntry != null)
+                {
+                List<String> listPaths;
+                try (InputStream in = zip.getInputStream(indexEntry))
+                    {
+                    listPaths = SchemaIndexResource.parse(readAllBytes(in));
+                    }
+
+                Map<String, byte[]> mapClasses = listPaths == null ? null : new LinkedHashMap<>();
+                for (int i = 0; mapClasses != null && i < listPaths.size(); i++)
+                    {
+                    ZipEntry zipEntry = zip.getEntry(listPaths.get(i));
+                    if (zipEntry == null)
+                        {
+                        mapClasses = null;
+                        }
+                    else
+                        {
+                        try (InputStream in = zip.getInputStream(zipEntry))
+                            {
+                            mapClasses.put(listPaths.get(i), readAllBytes(in));
+                            }
+                        }
+                    }
+
+                int cTypes = mapClasses == null || hasUnlistedPortableTypes(zip, mapClasses.keySet())
+                             ? -1 : writeIndexedTypes(jarFile, classes, mapClasses);
+                if (cTypes >= 0)
+                    {
+                    return cTypes;
+                    }
+                }
+
+            int                             cTypes  = 0;
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+                {
+                ZipEntry zipEntry = entries.nextElement();
+                if (zipEntry.isDirectory() || !zipEntry.getName().endsWith(".class"))
+                    {
+                    continue;
+                    }
+
+                classesParsed.incrementAndGet();
+
+                byte[] abClass;
+                try (InputStream in = zip.getInputStream(zipEntry))
+                    {
+                    abClass = readAllBytes(in);
+                    }
+
+                if (ClassFileInfo.mayBePortableType(abClass)
+                    && writeIfPortableType(jarFile, classes, zipEntry.getName(), abClass))
+                    {
+                    cTypes++;
+                    }
+                }
+            return cTypes;
+            }
+        }
+
+    /**
+     * Return {@code true} if any class of the specified jar that is not listed in its
+     * schema index passes the constant pool check, i.e. if the index may be incomplete.
+     */
+    private boolean hasUnlistedPortableTypes(ZipFile zip, Set<String> setListed) throws IOException
+        {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements())
+            {
+            ZipEntry zipEntry = entries.nextElement();
+            if (zipEntry.isDirectory() || !zipEntry.getName().endsWith(".class") || setListed.contains(zipEntry.getName()))
+                {
+                continue;
+                }
+
+            classesParsed.incrementAndGet();
+            try (InputStream in = zip.getInputStream(zipEntry))
+                {
+                if (ClassFileInfo.mayBePortableType(readAllBytes(in)))
+                    {
+                    return true;
+                    }
+                }
+            }
+        return false;
+        }
+
+    /**
+     * Write the class files listed in the schema index of a jar to the fragment
+     * directory. The index is only trusted if all listed classes are portable
+     * types; otherwise nothing is written and the jar has to be scanned.
+     *
+     * @return the number of extracted portable types, or {@code -1} if the index is stale
+     */
+    private int writeIndexedTypes(File jarFile, Path classes, Map<String, byte[]> mapClasses) throws IOException
+        {
+        classesParsed.addAndGet(mapClasses.size());
+        for (byte[] abClass : mapClasses.values())
+            {
+            if (!ClassFileInfo.parse(abClass).isPortableType())
+                {
+                return -1;
+                }
+            }
+
+        for (Map.Entry<String, byte[]> entry : mapClasses.entrySet())
+            {
+            writeIfPortableType(jarFile, classes, entry.getKey(), entry.getValue());
+            }
+        indexedJars.incrementAndGet();
+        return mapClasses.size();
+        }
+
+    /**
+     * Write the specified class file to the fragment directory if it is a portable type.
+     *
+     * @return {@code true} if the class file is a portable type
+     */
+    private static boolean writeIfPortableType(File jarFile, Path classes, String sEntryName, byte[] abClass)
+            throws IOException
+        {
+        if (!ClassFileInfo.parse(abClass).isPortableType())
+            {
+            return false;
+            }
+
+        Path target = classes.resolve(sEntryName).normalize();
+        if (!target.startsWith(classes))
+            {
+            throw new IOException("Invalid entry " + sEntryName + " in " + jarFile);
+            }
+        Files.createDirectories(target.getParent());
+        Files.write(target, abClass);
+        return true;
+        }
+
+    /**
+     * Return the hex encoded SHA-256 hash of the content of the specified file.
+     */
+    static String hash(Path file) throws IOException
+        {
+        MessageDigest digest   = newDigest();
+        byte[]        abBuffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file))
+            {
+            int cb;
+            while ((cb = in.read(abBuffer)) != -1)
+                {
+                digest.update(abBuffer, 0, cb);
+                }
+            }
+        return toHex(digest.digest());
+        }
+
+    /**
+     * Return the hex encoded SHA-256 hash of the specified string.
+     */
+    private static String hash(String s)
+        {
+        return toHex(newDigest().digest(s.getBytes(StandardCharsets.UTF_8)));
+        }
+
+    private static MessageDigest newDigest()
+        {
+        try
+            {
+            return MessageDigest.getInstance("SHA-256");
+            }
+        catch (NoSuchAlgorithmException e)
+            {
+            throw new IllegalStateException(e);
+            }
+        }
+
+    private static String toHex(byte[] abDigest)
+        {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : abDigest)
+            {
+            sb.append(String.format("%02x", b));
+            }
+        return sb.toString();
+        }
+
+    static byte[] readAllBytes(InputStream in) throws IOException
+        {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] abBuffer = new byte[BUFFER_SIZE];
+        int    cb;
+        while ((cb = in.read(abBuffer)) != -1)
+            {
+            out.write(abBuffer, 0, cb);
+            }
+        return out.toByteArray();
+        }
+
+    static void deleteRecursively(Path path) throws IOException
+        {
+        if (!Files.exists(path))
+            {
+            return;
+            }
+        try (Stream<Path> stream = Files.walk(path))
+            {
+            for (Path p : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator)
+                {
+                Files.delete(p);
+                }
+            }
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The version of the cache layout. Incrementing it invalidates all existing entries.
+     */
+    private static final String CACHE_VERSION = "v2";
+
+    /**
+     * The name of the directory of a cache entry holding the portable type class files.
+     */
+    private static final String CLASSES = "classes";
+
+    /**
+     * The name of the marker file of a cache entry for a jar without portable types.
+     */
+    private static final String NO_PORTABLE_TYPES = "no-portable-types";
+
+    /**
+     * The name of the directory holding the content hashes of the jars, keyed by path, size and modification time.
+     */
+    private static final String KEYS = "keys";
+
+    /**
+     * The name of the file whose modification time records the last clean up of the cache.
+     */
+    private static final String CLEANUP_MARKER = "cleanup";
+
+    /**
+     * The time in milliseconds after which an unused entry is deleted.
+     */
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * The minimum time in milliseconds between two clean ups of the cache.
+     */
+    private static final long CLEANUP_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The versioned root directory of the cache.
+     */
+    private final Path cacheDirectory;
+
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    private final AtomicInteger classesParsed = new AtomicInteger();
+
+    private final AtomicInteger indexedJars = new AtomicInteger();
+    }
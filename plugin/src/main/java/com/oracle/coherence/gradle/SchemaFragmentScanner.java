@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Scans the jars and class directories of a classpath for portable types. Each
+ * classpath element is reduced to a schema fragment, i.e. a directory holding
+ * only its portable type class files. The classpath elements are scanned
+ * concurrently, while the resulting fragments are always returned in classpath
+ * order, so that the schema built from them is deterministic.
+ *
+ * @author Gunnar Hillert
+ */
+final class SchemaFragmentScanner
+    {
+    /**
+     * Create a new scanner.
+     *
+     * @param cache              the persistent cache used for jar files
+     * @param service            the build service sharing the fragments of jar files between
+     *                           tasks, or {@code null} to always use the cache
+     * @param workingDirectory   the directory the fragments of class directories are written to
+     * @param parallelism        the maximum number of classpath elements to scan concurrently
+     */
+    SchemaFragmentScanner(SchemaFragmentCache cache, SchemaFragmentService service, File workingDirectory,
+                          int parallelism)
+        {
+        this.cache            = cache;
+        this.service          = service;
+        this.workingDirectory = workingDirectory.toPath();
+        this.parallelism      = Math.max(1, parallelism);
+        }
+
+    // ----- SchemaFragmentScanner methods ----------------------------------
+
+    /**
+     * Scan the specified classpath elements for portable types.
+     *
+     * @param classpath  the jars and class directories to scan
+     *
+     * @return the fragments of all classpath elements containing portable types, in classpath order
+     *
+     * @throws IOException if a classpath element cannot be scanned
+     */
+    List<Fragment> scan(List<File> classpath) throws IOException
+        {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, classpath.size())));
+        try
+            {
+            List<Future<Fragment>> listFutures = new ArrayList<>(classpath.size());
+            for (int i = 0; i < classpath.size(); i++)
+                {
+                File file   = classpath.get(i);
+                int  nIndex = i;
+                listFutures.add(executor.submit(() -> scan(file, nIndex)));
+                }
+
+            List<Fragment> listFragments = new ArrayList<>();
+            for (Future<Fragment> future : listFutures)
+                {
+                Fragment fragment = future.get();
+                if (fragment != null)
+                    {
+                    listFragments.add(fragment);
+                    }
+                }
+
+            // the fragments used by this scan have just been marked as used, so only unused ones are deleted
+            cache.cleanUpIfDue();
+            return listFragments;
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning the classpath", e);
+            }
+        catch (ExecutionException e)
+            {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                {
+                throw (IOException) cause;
+                }
+            throw new IOException(cause);
+            }
+        finally
+            {
+            executor.shutdownNow();
+            }
+        }
+
+    /**
+     * Record the counters of the scans performed by this scanner in the specified metrics.
+     *
+     * @param metrics  the metrics to record the counters in
+     */
+    void recordMetrics(InstrumentationMetrics metrics)
+        {
+        metrics.increment(InstrumentationMetrics.COUNT_JARS, jarsScanned.get());
+        metrics.increment(InstrumentationMetrics.COUNT_JARS_CACHED, cache.getCacheHits());
+        metrics.increment(InstrumentationMetrics.COUNT_JARS_SHARED, jarsShared.get());
+        metrics.increment(InstrumentationMetrics.COUNT_JARS_INDEXED, cache.getIndexedJars());
+        metrics.increment(InstrumentationMetrics.COUNT_DIRECTORIES, directoriesScanned.get());
+        metrics.increment(InstrumentationMetrics.COUNT_CLASSES_PARSED, classesParsed.get() + cache.getClassesParsed());
+        }
+
+    /**
+     * Return the internal names of all classes contained in the specified jar or
+     * class directory, without parsing any of the class files.
+     *
+     * @param file  the jar or class directory
+     *
+     * @return the internal names of the contained classes
+     *
+     * @throws IOException if the jar or class directory cannot be read
+     */
+    static Set<String> listClassNames(File file) throws IOException
+        {
+        List<String> listEntries = new ArrayList<>();
+        if (file.isDirectory())
+            {
+            Path root = file.toPath();
+            try (Stream<Path> stream = Files.walk(root))
+                {
+                stream.filter(PortableTypeIndex::isClassFile)
+                      .forEach(path -> listEntries.add(root.relativize(path).toString().replace(File.separatorChar, '/')));
+                }
+            }
+        else if (file.isFile() && file.getName().endsWith(".jar"))
+            {
+            MappedJarFile mappedJar = MappedJarFile.open(file);
+            if (mappedJar == null)
+                {
+                try (ZipFile zip = new ZipFile(file))
+                    {
+                    zip.stream().map(ZipEntry::getName).filter(sName -> sName.endsWith(".class")).forEach(listEntries::add);
+                    }
+                }
+            else
+                {
+                try (MappedJarFile jar = mappedJar)
+                    {
+                    jar.getClassEntries().forEach(entry -> listEntries.add(entry.getName()));
+                    }
+                }
+            }
+
+        Set<String> setNames = new HashSet<>();
+        for (String sEntry : listEntries)
+            {
+            setNames.add(sEntry.substring(0, sEntry.length() - ".class".length()));
+            }
+        return setNames;
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private Fragment scan(File file, int nIndex) throws IOException
+        {
+        File directory = null;
+        if (file.isDirectory())
+            {
+            directoriesScanned.incrementAndGet();
+            directory = extractDirectory(file.toPath(), workingDirectory.resolve(String.valueOf(nIndex)));
+            }
+        else if (file.isFile() && file.getName().endsWith(".jar"))
+            {
+            jarsScanned.incrementAndGet();
+            directory = service == null
+                        ? cache.getFragment(file)
+                        : service.getFragment(file, cache, jarsShared);
+            }
+        return directory == null ? null : new Fragment(file, directory);
+        }
+
+    /**
+     * Copy the portable types of the specified class directory to the given target directory.
+     *
+     * @return the target directory, or {@code null} if the class directory does not contain portable types
+     */
+    private File extractDirectory(Path classesDirectory, Path target) throws IOException
+        {
+        // the classes directory of a project dependency holds a schema index if it has been instrumented
+        List<String> listIndexed = SchemaIndexResource.read(classesDirectory.toFile());
+        List<Path>   listClassFiles;
+        if (listIndexed != null
+            && listIndexed.stream().allMatch(sPath -> Files.isRegularFile(classesDirectory.resolve(sPath))))
+            {
+            listClassFiles = listIndexed.stream().map(classesDirectory::resolve).collect(Collectors.toList());
+            }
+        else
+            {
+            try (Stream<Path> stream = Files.walk(classesDirectory))
+                {
+                listClassFiles = stream.filter(PortableTypeIndex::isClassFile).collect(Collectors.toList());
+                }
+            }
+
+        int cTypes = 0;
+        classesParsed.addAndGet(listClassFiles.size());
+        for (Path classFile : listClassFiles)
+            {
+            byte[] abClass = Files.readAllBytes(classFile);
+            if (ClassFileInfo.mayBePortableType(abClass) && ClassFileInfo.parse(abClass).isPortableType())
+                {
+                Path targetFile = target.resolve(classesDirectory.relativize(classFile).toString());
+                Files.createDirectories(targetFile.getParent());
+                Files.write(targetFile, abClass);
+                cTypes++;
+                }
+            }
+        return cTypes == 0 ? null : target.toFile();
+        }
+
+    // ----- inner class: Fragment ------------------------------------------
+
+    /**
+     * The schema fragment of a single classpath element.
+     */
+    static final class Fragment
+        {
+        Fragment(File source, File directory)
+            {
+            this.source    = source;
+            this.directory = directory;
+            }
+
+        /**
+         * Return the jar or class directory the fragment was extracted from.
+         *
+         * @return the source of the fragment
+         */
+        File getSource()
+            {
+            return source;
+            }
+
+        /**
+         * Return the directory holding the portable type class files.
+         *
+         * @return the fragment directory
+         */
+        File getDirectory()
+            {
+            return directory;
+            }
+
+        // ----- data members -----------------------------------------------
+
+        private final File source;
+
+        private final File directory;
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    private final SchemaFragmentCache cache;
+
+    private final SchemaFragmentService service;
+
+    private final Path workingDirectory;
+
+    private final int parallelism;
+
+    private final AtomicInteger jarsScanned = new AtomicInteger();
+
+    private final AtomicInteger jarsShared = new AtomicInteger();
+
+    private final AtomicInteger directoriesScanned = new AtomicInteger();
+
+    private final AtomicInteger classesParsed = new AtomicInteger();
+    }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A build service sharing the schema fragments of dependency jars between all
+ * {@link CoherenceTask}s of a build. In multi-project builds most subprojects
+ * depend on the same jars; the service makes sure each of them is looked up in
+ * the {@link SchemaFragmentCache}, or extracted, only once per build, instead
+ * of being looked up again by every task.
+ * <p>
+ * The fragments themselves stay in the cache directory; for each jar the
+ * service only holds the location of its fragment and, if requested, the names
+ * of its classes. As the class names make up almost all of the memory retained
+ * by the service, the service holds at most {@link Parameters#getMaxClassNames()
+ * maxClassNames} class names and {@link Parameters#getMaxEntries() maxEntries}
+ * jars, evicting the least recently used jars once either limit is exceeded.
+ *
+ * @author Gunnar Hillert
+ */
+public abstract class SchemaFragmentService
+        implements BuildService<SchemaFragmentService.Parameters>
+    {
+    // ----- SchemaFragmentService methods ----------------------------------
+
+    /**
+     * Return the schema fragment of the specified jar, taking it from the
+     * specified cache if it has not been requested during this build before.
+     *
+     * @param jarFile     the jar file
+     * @param cache       the persistent cache of schema fragments
+     * @param sharedHits  incremented if the fragment has been requested during this build before
+     *
+     * @return the directory containing the portable types of the jar, or
+     *         {@code null} if the jar does not contain any portable types
+     *
+     * @throws IOException if the jar cannot be read or the fragment cannot be written
+     */
+    File getFragment(File jarFile, SchemaFragmentCache cache, AtomicInteger sharedHits) throws IOException
+        {
+        JarState state = getState(jarFile);
+        synchronized (state)
+            {
+            if (state.fragmentKnown && (state.fragment == null || state.fragment.isDirectory()))
+                {
+                sharedHits.incrementAndGet();
+                }
+            else
+                {
+                state.fragment      = cache.getFragment(jarFile);
+                state.fragmentKnown = true;
+                }
+            return state.fragment;
+            }
+        }
+
+    /**
+     * Return the internal names of all classes contained in the specified jar or
+     * class directory. The names of jars are only listed once per build.
+     *
+     * @param file  the jar or class directory
+     *
+     * @return the internal names of the contained classes
+     *
+     * @throws IOException if the jar or class directory cannot be read
+     */
+    Set<String> getClassNames(File file) throws IOException
+        {
+        if (!file.isFile())
+            {
+            return SchemaFragmentScanner.listClassNames(file);
+            }
+
+        JarState state = getState(file);
+        synchronized (state)
+            {
+            if (state.classNames == null)
+                {
+                state.classNames = Collections.unmodifiableSet(SchemaFragmentScanner.listClassNames(file));
+                retainClassNames(state);
+                }
+            return state.classNames;
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Return the state of the specified jar, creating it if the jar is not
+     * known or has changed since it was last seen.
+     */
+    private JarState getState(File jarFile)
+        {
+        String sKey = jarFile.getAbsolutePath() + '\t' + jarFile.length() + '\t' + jarFile.lastModified();
+        synchronized (jars)
+            {
+            return jars.computeIfAbsent(sKey, JarState::new);
+            }
+        }
+
+    /**
+     * Account for the class names of the specified jar, evicting the least recently used other jars
+     * while the service holds more than the maximum number of class names.
+     */
+    private void retainClassNames(JarState state)
+        {
+        int cMax = getParameters().getMaxClassNames().getOrElse(DEFAULT_MAX_CLASS_NAMES);
+        synchronized (jars)
+            {
+            if (jars.get(state.key) != state)
+                {
+                // the jar has been evicted while its classes were listed
+                return;
+                }
+
+            state.classNameCount = state.classNames.size();
+            classNameCount      += state.classNameCount;
+
+            for (Iterator<JarState> iter = jars.values().iterator(); classNameCount > cMax && iter.hasNext(); )
+                {
+                JarState eldest = iter.next();
+                if (eldest != state)
+                    {
+                    iter.remove();
+                    classNameCount -= eldest.classNameCount;
+                    }
+                }
+            }
+        }
+
+    // ----- inner interface: Parameters ------------------------------------
+
+    /**
+     * The parameters of the service.
+     */
+    public interface Parameters
+            extends BuildServiceParameters
+        {
+        /**
+         * The maximum number of jars held by the service.
+         *
+         * @return the maximum number of jars
+         */
+        Property<Integer> getMaxEntries();
+
+        /**
+         * The maximum number of class names held by the service, summed over all jars.
+         *
+         * @return the maximum number of class names
+         */
+        Property<Integer> getMaxClassNames();
+        }
+
+    // ----- inner class: JarState ------------------------------------------
+
+    /**
+     * What is known about a single jar during this build.
+     */
+    private static final class JarState
+        {
+        JarState(String key)
+            {
+            this.key = key;
+            }
+
+        /**
+         * The key of the jar, i.e. its path, size and modification time.
+         */
+        private final String key;
+
+        /**
+         * Whether the schema fragment of the jar has been looked up.
+         */
+        private boolean fragmentKnown;
+
+        /**
+         * The schema fragment of the jar, or {@code null} if it does not contain portable types.
+         */
+        private File fragment;
+
+        /**
+         * The internal names of the classes of the jar, or {@code null} if they have not been listed.
+         */
+        private Set<String> classNames;
+
+        /**
+         * The number of class names of the jar accounted for by the service.
+         */
+        private int classNameCount;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The name the service is registered with.
+     */
+    static final String NAME = "coherenceSchemaFragments";
+
+    /**
+     * The default maximum number of jars held by the service.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * The default maximum number of class names held by the service, i.e. about 50MB of heap.
+     */
+    static final int DEFAULT_MAX_CLASS_NAMES = 250_000;
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The state of the jars, keyed by path, size and modification time, in access order.
+     */
+    private final Map<String, JarState> jars = new LinkedHashMap<String, JarState>(16, 0.75f, true)
+        {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JarState> eldest)
+            {
+            if (size() > getParameters().getMaxEntries().getOrElse(DEFAULT_MAX_ENTRIES))
+                {
+                classNameCount -= eldest.getValue().classNameCount;
+                return true;
+                }
+            return false;
+            }
+        };
+
+    /**
+     * The number of class names held by the service, summed over all jars.
+     */
+    private int classNameCount;
+    }
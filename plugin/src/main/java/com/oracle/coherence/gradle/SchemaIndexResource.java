@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The schema index resource published with the instrumented classes of a
+ * project. The index lists the class files of all portable types of the
+ * project, so that consumers of the project's jar can extract its schema
+ * fragment by reading just these entries instead of checking every class
+ * of the jar.
+ * <p>
+ * The index is a UTF-8 text file; its first line holds the format name and
+ * version, each following line the path of a portable type class file,
+ * relative to the root of the jar.
+ *
+ * @author Gunnar Hillert
+ */
+final class SchemaIndexResource
+    {
+    private SchemaIndexResource()
+        {
+        }
+
+    // ----- SchemaIndexResource methods ------------------------------------
+
+    /**
+     * Write the index of the specified portable types to the given classes directory.
+     *
+     * @param classesDirectory  the directory the index is written to
+     * @param colRelativePaths  the paths of the portable type class files, relative to the classes directory
+     *
+     * @throws IOException if the index cannot be written
+     */
+    static void write(File classesDirectory, Collection<String> colRelativePaths) throws IOException
+        {
+        List<String> listLines = new ArrayList<>();
+        listLines.add(HEADER);
+        for (String sPath : new TreeSet<>(colRelativePaths))
+            {
+            listLines.add(sPath.replace(File.separatorChar, '/'));
+            }
+
+        Path file = classesDirectory.toPath().resolve(RESOURCE);
+        Files.createDirectories(file.getParent());
+        Files.write(file, listLines, StandardCharsets.UTF_8);
+        }
+
+    /**
+     * Read the index of the specified classes directory.
+     *
+     * @param classesDirectory  the classes directory
+     *
+     * @return the paths of the portable type class files, or {@code null} if
+     *         the directory has no index or its index cannot be used
+     *
+     * @throws IOException if the index cannot be read
+     */
+    static List<String> read(File classesDirectory) throws IOException
+        {
+        Path file = classesDirectory.toPath().resolve(RESOURCE);
+        return Files.isRegularFile(file) ? parse(Files.readAllBytes(file)) : null;
+        }
+
+    /**
+     * Parse the specified index.
+     *
+     * @param abIndex  the content of the index
+     *
+     * @return the paths of the portable type class files, or {@code null} if
+     *         the index has an unsupported version or is malformed
+     */
+    static List<String> parse(byte[] abIndex)
+        {
+        String[] asLine = new String(abIndex, StandardCharsets.UTF_8).split("\r?\n");
+        if (asLine.length == 0 || !HEADER.equals(asLine[0]))
+            {
+            return null;
+            }
+
+        List<String> listPaths = new ArrayList<>(asLine.length - 1);
+        for (int i = 1; i < asLine.length; i++)
+            {
+            String sPath = asLine[i];
+            if (sPath.isEmpty())
+                {
+                continue;
+                }
+            if (!sPath.endsWith(".class") || sPath.startsWith("/") || sPath.contains("..") || sPath.contains("\\"))
+                {
+                return null;
+                }
+            listPaths.add(sPath);
+            }
+        return listPaths;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The path of the index, relative to the root of a jar or classes directory.
+     */
+    static final String RESOURCE = "META-INF/coherence/pof-schema.idx";
+
+    /**
+     * The first line of the index, holding the format name and version.
+     */
+    static final String HEADER = "coherence-pof-schema-index 1";
+    }
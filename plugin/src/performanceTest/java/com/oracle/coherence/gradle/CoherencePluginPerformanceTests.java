@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.oracle.coherence.gradle.support.PerformanceResults;
+import com.oracle.coherence.gradle.support.SyntheticProject;
+import org.apache.commons.io.FileUtils;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the {@code coherencePof} task on generated projects of different
+ * sizes. Each scenario is executed several times and the median is recorded;
+ * the results are written to the file given by the
+ * {@code coherence.performance.results} system property and compared against
+ * the baseline given by {@code coherence.performance.baseline}.
+ *
+ * @author Gunnar Hillert
+ */
+public class CoherencePluginPerformanceTests
+    {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoherencePluginPerformanceTests.class);
+
+    private static final PerformanceResults RESULTS = new PerformanceResults();
+
+    @TempDir
+    private File gradleProjectRootDirectory;
+
+    @ParameterizedTest(name = "{0}: {1} classes, {2} portable types, {3} jars")
+    @CsvSource({"small, 200, 50, 2", "large, 2000, 500, 10"})
+    void measureCoherencePof(String sProject, int cClasses, int cPortableTypes, int cJars) throws IOException
+        {
+        SyntheticProject project = new SyntheticProject(gradleProjectRootDirectory, cClasses, cPortableTypes, cJars);
+        project.generate();
+
+        // the first build downloads the dependencies and starts the daemon
+        run("coherencePof");
+
+        Map<Scenario, List<long[]>> mapSamples = new EnumMap<>(Scenario.class);
+        int                         cRuns      = Integer.getInteger("coherence.performance.iterations", 3);
+        for (int i = 1; i <= cRuns; i++)
+            {
+            // cold: no schema fragments of the dependencies and no instrumentation state
+            FileUtils.deleteDirectory(new File(getTestKitDir(), "caches/coherence-pof"));
+            sample(mapSamples, Scenario.COLD, run("clean", "coherencePof", "reportHeap"));
+
+            // warm: the schema fragments of the dependencies are cached
+            sample(mapSamples, Scenario.WARM, run("clean", "coherencePof", "reportHeap"));
+
+            // incremental: a single portable type has changed
+            project.modifyPortableType(i);
+            sample(mapSamples, Scenario.INCREMENTAL, run("coherencePof", "reportHeap"));
+
+            // up-to-date: nothing has changed
+            sample(mapSamples, Scenario.UP_TO_DATE, run("coherencePof", "reportHeap"));
+            }
+
+        mapSamples.forEach((scenario, listSamples) ->
+            {
+            long cBuildMillis = median(listSamples, 0);
+            long cTaskMillis  = median(listSamples, 1);
+            long cbHeap       = median(listSamples, 2);
+            LOGGER.info("{} {}: build {} ms, coherencePof {} ms, daemon heap {} MB",
+                    sProject, scenario.key, cBuildMillis, cTaskMillis, cbHeap / (1024 * 1024));
+            RESULTS.record(sProject, scenario.key, cBuildMillis, cTaskMillis, cbHeap);
+            });
+        }
+
+    @AfterAll
+    static void reportResults() throws IOException
+        {
+        RESULTS.writeJson(new File(System.getProperty("coherence.performance.results", "build/performance/results.json")));
+
+        File fileBaseline = new File(System.getProperty("coherence.performance.baseline", "src/performanceTest/baseline.properties"));
+        if (Boolean.getBoolean("coherence.performance.updateBaseline"))
+            {
+            RESULTS.storeBaseline(fileBaseline);
+            return;
+            }
+
+        double dTolerance = Double.parseDouble(System.getProperty("coherence.performance.tolerance", "1.25"));
+        List<String> listRegressions = RESULTS.findRegressions(fileBaseline, dTolerance);
+        assertThat(listRegressions)
+                .withFailMessage("Performance regressions against %s:%n%s", fileBaseline, String.join("\n", listRegressions))
+                .isEmpty();
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Run the build with the specified arguments and return the result,
+     * together with its wall time in milliseconds.
+     */
+    private Run run(String... asArgs)
+        {
+        long        ldtStart = System.nanoTime();
+        BuildResult result   = GradleRunner.create()
+                .withProjectDir(gradleProjectRootDirectory)
+                .withTestKitDir(getTestKitDir())
+                .withArguments(asArgs)
+                .withPluginClasspath()
+                .build();
+        return new Run(result, (System.nanoTime() - ldtStart) / 1_000_000);
+        }
+
+    private void sample(Map<Scenario, List<long[]>> mapSamples, Scenario scenario, Run run) throws IOException
+        {
+        TaskOutcome outcome = run.result.task(":coherencePofMain").getOutcome();
+        assertThat(outcome).isEqualTo(scenario == Scenario.UP_TO_DATE ? TaskOutcome.UP_TO_DATE : TaskOutcome.SUCCESS);
+
+        long cTaskMillis = 0;
+        File fileReport = new File(gradleProjectRootDirectory, "build/reports/coherence/coherencePofMain.json");
+        if (outcome == TaskOutcome.SUCCESS)
+            {
+            Matcher matcher = TOTAL.matcher(new String(Files.readAllBytes(fileReport.toPath()), StandardCharsets.UTF_8));
+            assertThat(matcher.find()).isTrue();
+            cTaskMillis = Long.parseLong(matcher.group(1));
+            }
+
+        Matcher matcher = HEAP.matcher(run.result.getOutput());
+        assertThat(matcher.find()).isTrue();
+
+        mapSamples.computeIfAbsent(scenario, s -> new ArrayList<>())
+                .add(new long[] {run.cMillis, cTaskMillis, Long.parseLong(matcher.group(1))});
+        }
+
+    private static long median(List<long[]> listSamples, int nIndex)
+        {
+        List<Long> listValues = new ArrayList<>();
+        listSamples.forEach(al -> listValues.add(al[nIndex]));
+        Collections.sort(listValues);
+        return listValues.get(listValues.size() / 2);
+        }
+
+    /**
+     * Return the TestKit directory shared by all performance tests, so that
+     * the dependencies are only downloaded once.
+     */
+    private static File getTestKitDir()
+        {
+        return new File(System.getProperty("coherence.performance.testKitDir", "build/performance/testkit"));
+        }
+
+    // ----- inner class: Run -----------------------------------------------
+
+    private static final class Run
+        {
+        Run(BuildResult result, long cMillis)
+            {
+            this.result  = result;
+            this.cMillis = cMillis;
+            }
+
+        private final BuildResult result;
+
+        private final long cMillis;
+        }
+
+    // ----- inner enum: Scenario -------------------------------------------
+
+    private enum Scenario
+        {
+        COLD("cold"),
+        WARM("warm"),
+        INCREMENTAL("incremental"),
+        UP_TO_DATE("upToDate");
+
+        Scenario(String key)
+            {
+            this.key = key;
+            }
+
+        private final String key;
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    private static final Pattern TOTAL = Pattern.compile("\"total\": (\\d+)");
+
+    private static final Pattern HEAP = Pattern.compile("daemonHeapUsed=(\\d+)");
+    }
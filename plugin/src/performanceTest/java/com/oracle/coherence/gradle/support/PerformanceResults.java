@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle.support;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The measurements of the performance tests, keyed by project and scenario.
+ * The results are written as JSON and compared against a baseline stored as
+ * a properties file, that holds the build time of each scenario in
+ * milliseconds under the key {@code <project>.<scenario>}.
+ *
+ * @author Gunnar Hillert
+ */
+public class PerformanceResults
+    {
+    // ----- PerformanceResults methods -------------------------------------
+
+    /**
+     * Record the measurement of a scenario.
+     *
+     * @param sProject      the name of the synthetic project
+     * @param sScenario     the name of the scenario
+     * @param cBuildMillis  the median wall time of the build, in milliseconds
+     * @param cTaskMillis   the median time of the {@code coherencePof} task as reported by the task,
+     *                      or zero if the task did not execute
+     * @param cbHeap        the median heap used by the Gradle daemon after the build, in bytes
+     */
+    public synchronized void record(String sProject, String sScenario, long cBuildMillis, long cTaskMillis, long cbHeap)
+        {
+        measurements.put(sProject + '.' + sScenario, new long[] {cBuildMillis, cTaskMillis, cbHeap});
+        }
+
+    /**
+     * Return the scenarios whose build time exceeds the time stored in the
+     * baseline by more than the specified tolerance. Scenarios without a
+     * baseline are reported as well, so that a new scenario cannot pass
+     * unnoticed.
+     *
+     * @param fileBaseline  the baseline file
+     * @param dTolerance    the factor by which a scenario may exceed its baseline
+     *
+     * @return a description of each regressed scenario
+     *
+     * @throws IOException if the baseline does not exist or cannot be read
+     */
+    public synchronized List<String> findRegressions(File fileBaseline, double dTolerance) throws IOException
+        {
+        if (!fileBaseline.isFile())
+            {
+            throw new FileNotFoundException("The performance baseline " + fileBaseline
+                                            + " does not exist; run with -PupdatePerformanceBaseline to create it.");
+            }
+
+        Properties baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(fileBaseline.toPath(), StandardCharsets.UTF_8))
+            {
+            baseline.load(reader);
+            }
+        List<String> listRegressions = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : measurements.entrySet())
+            {
+            String sBaseline = baseline.getProperty(entry.getKey());
+            if (sBaseline == null)
+                {
+                listRegressions.add(String.format("%s took %d ms and has no baseline", entry.getKey(),
+                        entry.getValue()[0]));
+                }
+            else if (entry.getValue()[0] > Long.parseLong(sBaseline.trim()) * dTolerance)
+                {
+                listRegressions.add(String.format("%s took %d ms, the baseline is %s ms", entry.getKey(),
+                        entry.getValue()[0], sBaseline.trim()));
+                }
+            }
+        return listRegressions;
+        }
+
+    /**
+     * Store the build times of all scenarios as the new baseline.
+     *
+     * @param fileBaseline  the baseline file
+     *
+     * @throws IOException if the baseline cannot be written
+     */
+    public synchronized void storeBaseline(File fileBaseline) throws IOException
+        {
+        Files.createDirectories(fileBaseline.getAbsoluteFile().getParentFile().toPath());
+        try (Writer writer = Files.newBufferedWriter(fileBaseline.toPath(), StandardCharsets.UTF_8))
+            {
+            writer.write("# Build time of each performance test scenario in milliseconds\n");
+            for (Map.Entry<String, long[]> entry : measurements.entrySet())
+                {
+                writer.write(entry.getKey() + '=' + entry.getValue()[0] + '\n');
+                }
+            }
+        }
+
+    /**
+     * Write all measurements to the specified file as JSON.
+     *
+     * @param file  the results file
+     *
+     * @throws IOException if the results cannot be written
+     */
+    public synchronized void writeJson(File file) throws IOException
+        {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+            {
+            writer.write("{");
+            String sSeparator = "\n";
+            for (Map.Entry<String, long[]> entry : measurements.entrySet())
+                {
+                long[] alValue = entry.getValue();
+                writer.write(String.format("%s  \"%s\": {\"buildMillis\": %d, \"taskMillis\": %d, \"daemonHeapBytes\": %d}",
+                        sSeparator, entry.getKey(), alValue[0], alValue[1], alValue[2]));
+                sSeparator = ",\n";
+                }
+            writer.write("\n}\n");
+            }
+        }
+
+    // ----- data members ---------------------------------------------------
+
+    /**
+     * The build time, task time and daemon heap of each scenario, keyed by project and scenario.
+     */
+    private final Map<String, long[]> measurements = new TreeMap<>();
+    }
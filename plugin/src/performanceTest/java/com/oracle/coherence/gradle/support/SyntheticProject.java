@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle.support;
+
+import com.tangosol.io.pof.schema.annotation.PortableType;
+import org.apache.commons.io.FileUtils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.oracle.coherence.gradle.support.TestUtils.appendToFile;
+
+/**
+ * Generates a Gradle project of a given size for the performance tests: a
+ * number of classes, some of them portable types, and a number of dependency
+ * jars that contain portable types as well.
+ *
+ * @author Gunnar Hillert
+ */
+public class SyntheticProject
+    {
+    /**
+     * Create a new synthetic project.
+     *
+     * @param projectDir      the directory of the project
+     * @param cClasses        the number of classes of the project, including the portable types
+     * @param cPortableTypes  the number of portable types of the project
+     * @param cJars           the number of dependency jars
+     */
+    public SyntheticProject(File projectDir, int cClasses, int cPortableTypes, int cJars)
+        {
+        if (cPortableTypes < 1 || cPortableTypes > cClasses)
+            {
+            throw new IllegalArgumentException("The number of portable types must be between 1 and the number of classes.");
+            }
+        this.projectDir     = projectDir;
+        this.cClasses       = cClasses;
+        this.cPortableTypes = cPortableTypes;
+        this.cJars          = cJars;
+        }
+
+    // ----- SyntheticProject methods ---------------------------------------
+
+    /**
+     * Write the build script, the sources and the dependency jars of the project.
+     *
+     * @throws IOException if the project cannot be written
+     */
+    public void generate() throws IOException
+        {
+        appendToFile(new File(projectDir, "settings.gradle"), "rootProject.name = 'synthetic'\n");
+        appendToFile(new File(projectDir, "build.gradle"),
+                """
+                plugins {
+                  id 'java'
+                  id 'com.oracle.coherence.gradle'
+                }
+                repositories {
+                    mavenCentral()
+                }
+                dependencies {
+                    implementation 'com.oracle.coherence.ce:coherence:22.09'
+                    implementation fileTree('libs')
+                }
+                tasks.register('reportHeap') {
+                    mustRunAfter 'coherencePofMain'
+                    outputs.upToDateWhen { false }
+                    doLast {
+                        System.gc()
+                        println 'daemonHeapUsed=' + java.lang.management.ManagementFactory.memoryMXBean.heapMemoryUsage.used
+                    }
+                }
+                """);
+
+        File sourceDir = new File(projectDir, "src/main/java/" + PACKAGE.replace('.', '/'));
+        for (int i = 0; i < cClasses; i++)
+            {
+            String sSource = i < cPortableTypes
+                             ? portableType(PACKAGE, "Type" + i, FIRST_TYPE_ID + i, 0)
+                             : plainClass(PACKAGE, "Plain" + i);
+            write(new File(sourceDir, (i < cPortableTypes ? "Type" : "Plain") + i + ".java"), sSource);
+            }
+
+        for (int i = 0; i < cJars; i++)
+            {
+            createJar(i);
+            }
+        }
+
+    /**
+     * Change the schema of the first portable type of the project, by adding
+     * another property to it.
+     *
+     * @param nRevision  the revision of the type, which must differ from all previous revisions
+     *
+     * @throws IOException if the source cannot be written
+     */
+    public void modifyPortableType(int nRevision) throws IOException
+        {
+        write(new File(projectDir, "src/main/java/" + PACKAGE.replace('.', '/') + "/Type0.java"),
+              portableType(PACKAGE, "Type0", FIRST_TYPE_ID, nRevision));
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    /**
+     * Compile a dependency jar with {@link #JAR_CLASSES} classes, of which
+     * {@link #JAR_PORTABLE_TYPES} are portable types, and write it to the
+     * {@code libs} directory of the project.
+     */
+    private void createJar(int nJar) throws IOException
+        {
+        String sPackage  = "com.example.lib" + nJar;
+        Path   sourceDir = Files.createTempDirectory("synthetic-lib-src");
+        Path   classDir  = Files.createTempDirectory("synthetic-lib-classes");
+
+        List<String> listSources = new ArrayList<>();
+        for (int i = 0; i < JAR_CLASSES; i++)
+            {
+            String sName   = (i < JAR_PORTABLE_TYPES ? "LibType" : "LibPlain") + i;
+            File   file    = sourceDir.resolve(sName + ".java").toFile();
+            write(file, i < JAR_PORTABLE_TYPES
+                        ? portableType(sPackage, sName, FIRST_JAR_TYPE_ID + nJar * 1000 + i, 0)
+                        : plainClass(sPackage, sName));
+            listSources.add(file.getAbsolutePath());
+            }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> listArgs = new ArrayList<>(List.of("-classpath", getCoherenceJar().getAbsolutePath(),
+                                                        "-d", classDir.toString()));
+        listArgs.addAll(listSources);
+        if (compiler.run(null, null, null, listArgs.toArray(new String[0])) != 0)
+            {
+            throw new IllegalStateException("Unable to compile the sources of dependency jar " + nJar);
+            }
+
+        File jar = new File(projectDir, "libs/lib-" + nJar + ".jar");
+        jar.getParentFile().mkdirs();
+        List<Path> listClasses;
+        try (Stream<Path> stream = Files.walk(classDir))
+            {
+            listClasses = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath())))
+            {
+            for (Path file : listClasses)
+                {
+                out.putNextEntry(new JarEntry(classDir.relativize(file).toString().replace(File.separatorChar, '/')));
+                out.write(Files.readAllBytes(file));
+                out.closeEntry();
+                }
+            }
+        FileUtils.deleteDirectory(sourceDir.toFile());
+        FileUtils.deleteDirectory(classDir.toFile());
+        }
+
+    /**
+     * Return the Coherence jar of the test classpath, to compile the dependency jars against.
+     */
+    private static File getCoherenceJar()
+        {
+        try
+            {
+            return new File(PortableType.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            }
+        catch (URISyntaxException e)
+            {
+            throw new IllegalStateException(e);
+            }
+        }
+
+    private static String portableType(String sPackage, String sName, int nTypeId, int nRevision)
+        {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(sPackage).append(";\n\n")
+          .append("import com.tangosol.io.pof.schema.annotation.Portable;\n")
+          .append("import com.tangosol.io.pof.schema.annotation.PortableType;\n\n")
+          .append("import java.util.List;\n\n")
+          .append("@PortableType(id = ").append(nTypeId).append(")\n")
+          .append("public class ").append(sName).append("\n    {\n")
+          .append("    @Portable\n    private String name;\n\n")
+          .append("    @Portable\n    private int count;\n\n")
+          .append("    @Portable\n    private long value;\n\n")
+          .append("    @Portable\n    private List<String> tags;\n");
+        for (int i = 1; i <= nRevision; i++)
+            {
+            sb.append("\n    @Portable\n    private String revision").append(i).append(";\n");
+            }
+        sb.append("\n    public String getName()\n        {\n        return name;\n        }\n")
+          .append("    }\n");
+        return sb.toString();
+        }
+
+    private static String plainClass(String sPackage, String sName)
+        {
+        return "package " + sPackage + ";\n\n"
+               + "public class " + sName + "\n    {\n"
+               + "    public int sum(int[] an)\n        {\n"
+               + "        int nSum = 0;\n"
+               + "        for (int n : an)\n            {\n            nSum += n;\n            }\n"
+               + "        return nSum + offset;\n        }\n\n"
+               + "    private int offset;\n"
+               + "    }\n";
+        }
+
+    private static void write(File file, String sContent) throws IOException
+        {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), sContent.getBytes(StandardCharsets.UTF_8));
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    /**
+     * The package of the classes of the project.
+     */
+    private static final String PACKAGE = "com.example.synthetic";
+
+    /**
+     * The type identifier of the first portable type of the project.
+     */
+    private static final int FIRST_TYPE_ID = 1000;
+
+    /**
+     * The type identifier of the first portable type of the dependency jars.
+     */
+    private static final int FIRST_JAR_TYPE_ID = 100000;
+
+    /**
+     * The number of classes of each dependency jar.
+     */
+    private static final int JAR_CLASSES = 100;
+
+    /**
+     * The number of portable types of each dependency jar.
+     */
+    private static final int JAR_PORTABLE_TYPES = 20;
+
+    // ----- data members ---------------------------------------------------
+
+    private final File projectDir;
+
+    private final int cClasses;
+
+    private final int cPortableTypes;
+
+    private final int cJars;
+    }
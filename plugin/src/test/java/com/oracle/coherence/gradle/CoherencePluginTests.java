@@ -6,6 +6,8 @@
  */
 package com.oracle.coherence.gradle;
 
+import com.tangosol.io.pof.ConfigurablePofContext;
+import com.tangosol.io.pof.EnumPofSerializer;
 import com.tangosol.io.pof.PortableTypeSerializer;
 import com.tangosol.io.pof.SimplePofContext;
 import com.tangosol.io.pof.annotation.Portable;
@@ -21,9 +23,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.oracle.coherence.gradle.support.TestUtils.appendToFile;
 import static com.oracle.coherence.gradle.support.TestUtils.getPofClass;
@@ -75,12 +94,49 @@ public class CoherencePluginTests
         );
 
         assertThat(gradleResult.getOutput()).contains("SUCCESS");
-        assertThat(gradleResult.task(":coherencePof").getOutcome().name()).isEqualTo("SUCCESS");
+        assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
 
-        assertThat(gradleResult.getOutput()).contains("PortableTypeGenerator skipping test classes directory as it does not exist.");
+        assertThat(gradleResult.task(":coherencePofTest")).isNull();
         assertThat(gradleResult.getOutput()).contains("PortableTypeGenerator skipping main classes directory as it does not exist.");
         }
 
+    @Test
+    void applyCoherenceGradlePluginWithoutPortableTypes()
+        {
+
+        final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+        appendToFile(buildFile,
+                """
+                plugins {
+                  id 'java'
+                  id 'com.oracle.coherence.gradle'
+                }
+                """
+                );
+
+        copyFileTo("/Color.txt", gradleProjectRootDirectory,
+                "/src/main/java", "Color.java");
+
+        BuildResult gradleResult = GradleRunner.create()
+                .withProjectDir(gradleProjectRootDirectory)
+                .withArguments("coherencePof")
+                .withDebug(true)
+                .withPluginClasspath()
+                .build();
+
+        LOGGER.info(
+             "\n-------- [ Gradle output] -------->>>>\n"
+            + gradleResult.getOutput()
+            + "<<<<------------------------------------"
+        );
+
+        assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+        assertThat(gradleResult.getOutput()).contains("No portable types found in the classes directories.");
+        assertThat(gradleResult.getOutput()).doesNotContain("Resolved");
+        assertThat(new File(gradleProjectRootDirectory, "build/classes/coherence/main/Color.class")).exists();
+        }
+
     @Test
     void applyBasicCoherenceGradlePluginWithClass()
         {
@@ -119,11 +175,25 @@ public class CoherencePluginTests
         );
 
         assertThat(gradleResult.getOutput()).contains("SUCCESS");
-        assertThat(gradleResult.task(":coherencePof").getOutcome().name()).isEqualTo("SUCCESS");
+        assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
         assertThat(gradleResult.getOutput()).contains("Instrumenting type Foo");
+        assertThat(gradleResult.getOutput()).contains("Instrumented 1 of 1 portable types");
+        assertThat(new File(gradleProjectRootDirectory, "build/reports/coherence/coherencePofMain.json"))
+                .content().contains("\"portableTypesFound\": 1", "\"classesRewritten\": 1", "\"buildSchema\"");
+        assertThat(new File(gradleProjectRootDirectory, "build/classes/coherence/main/META-INF/coherence/pof-schema.idx"))
+                .hasContent("coherence-pof-schema-index 1\nFoo.class");
+
+        assertThat(new File(gradleProjectRootDirectory, "build/classes/coherence/main/META-INF/coherence/pof-types.idx"))
+                .hasContent("coherence-pof-types 1\n1000\tFoo\t0");
 
-        Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/java/main/");
+        Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
         assertThatClassIsPofIntrumented(foo);
+
+        // the generated POF configuration registers the type without any classpath scanning
+        ConfigurablePofContext pofContext = new ConfigurablePofContext(new File(gradleProjectRootDirectory,
+                "build/classes/coherence/main/META-INF/coherence/pof-types-config.xml").toURI().toString());
+        pofContext.setContextClassLoader(foo.getClassLoader());
+        assertThat(pofContext.getUserTypeIdentifier(foo)).isEqualTo(1000);
         }
 
     @Test
@@ -172,10 +242,13 @@ public class CoherencePluginTests
         );
 
         assertThat(gradleResult.getOutput()).contains("SUCCESS");
-        assertThat(gradleResult.task(":coherencePof").getOutcome().name()).isEqualTo("SUCCESS");
+        assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+        assertThat(gradleResult.task(":coherencePofTest").getOutcome().name()).isEqualTo("SUCCESS");
+        assertThat(new File(gradleProjectRootDirectory, "build/classes/coherence/test/META-INF/coherence/pof-types.idx"))
+                .doesNotExist();
 
-        Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/java/main/");
-        Class bar = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/java/test/");
+        Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
+        Class bar = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/coherence/test/");
 
         assertThatClassIsPofIntrumented(foo);
         assertThatClassIsPofIntrumented(bar);
@@ -212,7 +285,7 @@ public class CoherencePluginTests
 
             BuildResult gradleResult = GradleRunner.create()
                     .withProjectDir(gradleProjectRootDirectory)
-                    .withArguments("coherencePof")
+                    .withArguments("coherencePof", "--info")
                     .withDebug(true)
                     .withPluginClasspath()
                     .build();
@@ -224,17 +297,17 @@ public class CoherencePluginTests
             );
 
             assertThat(gradleResult.getOutput()).contains("SUCCESS");
-            assertThat(gradleResult.task(":coherencePof").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
 
             assertThat(gradleResult.getOutput()).contains("Add XmlSchemaSource", "build/resources/main/META-INF/schema.xml");
             assertThat(gradleResult.getOutput()).contains("Instrumenting type Bar");
             assertThat(gradleResult.getOutput()).contains("Instrumenting type Foo");
             assertThat(gradleResult.getOutput()).contains("SUCCESS");
 
-            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/java/main/");
+            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
             assertThatClassIsPofIntrumented(foo);
 
-            Class bar = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/java/main/");
+            Class bar = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/coherence/main/");
             assertThatClassIsPofIntrumented(bar);
         }
 
@@ -270,7 +343,7 @@ public class CoherencePluginTests
 
             BuildResult gradleResult = GradleRunner.create()
                     .withProjectDir(gradleProjectRootDirectory)
-                    .withArguments("coherencePof")
+                    .withArguments("coherencePof", "--info")
                     .withDebug(true)
                     .withPluginClasspath()
                     .build();
@@ -281,13 +354,14 @@ public class CoherencePluginTests
                   + "<<<<------------------------------------"
             );
             assertThat(gradleResult.getOutput()).contains("SUCCESS");
-            assertThat(gradleResult.task(":coherencePof").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
             assertThat(gradleResult.getOutput()).contains("foo.jar to schema");
 
         }
 
         @Test
-        void verifyCoherenceGradlePluginWithRoundTripSerialization() throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        void applyCoherenceGradlePluginWithChangedDependencyWithoutPortableTypes() throws Exception
+        {
             final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
 
             appendToFile(buildFile,
@@ -301,72 +375,1222 @@ public class CoherencePluginTests
                             }
                             dependencies {
                                 implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                implementation files('lib/foo.jar', 'lib/other.jar')
                             }
                             """
             );
-            copyFileTo("/Person.txt", gradleProjectRootDirectory,
-                    "/src/main/java", "Person.java");
-//
-//            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
-//                    "/src/main/java", "Bar.java");
-//
-//            copyFileTo("/Color.txt", gradleProjectRootDirectory,
-//                    "/src/main/java", "Color.java");
-//
-//            copyFileTo("/test-schema.xml", gradleProjectRootDirectory,
-//                    "/src/main/resources/META-INF", "schema.xml");
+
+            copyFileTo("/foo.jar", gradleProjectRootDirectory,
+                    "/lib", "foo.jar");
+            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Bar.java");
+            writeJar(new File(gradleProjectRootDirectory, "lib/other.jar"), "1.0");
 
             BuildResult gradleResult = GradleRunner.create()
                     .withProjectDir(gradleProjectRootDirectory)
                     .withArguments("coherencePof")
+                    .withPluginClasspath()
+                    .build();
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            // a new version of a dependency without portable types does not affect the schema
+            writeJar(new File(gradleProjectRootDirectory, "lib/other.jar"), "1.1");
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherenceSchemaMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("UP_TO_DATE");
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithLazySchemaResolution()
+        {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                implementation files('lib/foo.jar')
+                            }
+                            coherencePof {
+                                lazySchemaResolution = true
+                            }
+                            """
+            );
+
+            copyFileTo("/foo.jar", gradleProjectRootDirectory,
+                    "/lib", "foo.jar");
+            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Bar.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
                     .withDebug(true)
                     .withPluginClasspath()
                     .build();
 
             LOGGER.info(
                     "\n-------- [ Gradle output] -------->>>>\n"
-                            + gradleResult.getOutput()
-                            + "<<<<------------------------------------"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
             );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
 
-            assertThat(gradleResult.getOutput()).contains("SUCCESS");
-            assertThat(gradleResult.task(":coherencePof").getOutcome().name()).isEqualTo("SUCCESS");
+            // Bar only references the Color enum of foo.jar, so the portable type Foo is not added to the schema,
+            // and the Coherence jar, which does not contain any class referenced by Bar, is not scanned at all
+            assertThat(new File(gradleProjectRootDirectory, "build/reports/coherence/coherenceSchemaMain.json"))
+                    .content().contains("\"jarsScanned\": 1", "\"dependencyPortableTypesFound\": 1",
+                                        "\"dependencyPortableTypesUsed\": 0");
+            assertThat(gradleResult.getOutput()).contains(
+                    "Added 0 portable types of the dependencies reachable from the project's portable types to the schema.");
+        }
 
-            Class personClass = getPofClass(this.gradleProjectRootDirectory, "Person", "build/classes/java/main/");
-            assertThatClassIsPofIntrumented(personClass);
-            Class addressClass = personClass.getClasses()[0];
-            SimplePofContext ctx = new SimplePofContext();
+        @Test
+        void applyCoherenceGradlePluginWithInstrumentedJarDependency() throws Exception
+        {
 
-            ctx.registerUserType(1000, personClass, new PortableTypeSerializer<>(1000, personClass));
-            ctx.registerUserType(2, addressClass, new PortableTypeSerializer(2, addressClass));
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
 
-            Constructor<?> constructor = personClass.getDeclaredConstructor(String.class, String.class, int.class);
-            Object         oValue      = constructor.newInstance("Eric", "Cartman", 10);
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                implementation files('lib/foo.jar')
+                            }
+                            coherencePof {
+                                instrumentDependencies = true
+                            }
+                            tasks.register('copyRuntimeClasspath', Copy) {
+                                from configurations.runtimeClasspath
+                                into layout.buildDirectory.dir('runtime')
+                            }
+                            """
+            );
 
-            Constructor<?> addressConstructor = addressClass.getDeclaredConstructor(String.class, String.class, String.class);
-            Object         addressInstance = addressConstructor.newInstance("123 Main St", "Springfield", "USA");
+            copyFileTo("/foo.jar", gradleProjectRootDirectory,
+                    "/lib", "foo.jar");
 
-            Method setAddressMethod = personClass.getMethod("setAddress", addressClass);
-            setAddressMethod.invoke(oValue, addressInstance);
-            Binary binary              = ExternalizableHelper.toBinary(oValue, ctx);
-            Object         oResult     = ExternalizableHelper.fromBinary(binary, ctx);
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("copyRuntimeClasspath", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
 
-            assertThat(oResult).isEqualTo(oValue);
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.getOutput()).contains("Instrumented 1 portable types of foo.jar.");
 
-//            Class barClass = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/java/main/");
-//            Class colorClass = getPofClass(this.gradleProjectRootDirectory, "Color", "build/classes/java/main/");
-//            assertThatClassIsPofIntrumented(barClass);
-//
-//            SimplePofContext ctx = new SimplePofContext();
-//
-//            ctx.registerUserType(1001, barClass, new PortableTypeSerializer<>(1001, barClass));
-//            ctx.registerUserType(1002, colorClass, new PortableTypeSerializer<>(1002, colorClass));
-//
-//            Constructor<?> constructor = barClass.getDeclaredConstructor(String.class, String.class);
-//            Object         oValue      = constructor.newInstance("Bockbier", "BLACK");
-//            Binary binary              = ExternalizableHelper.toBinary(oValue, ctx);
-//            Object         oResult     = ExternalizableHelper.fromBinary(binary, ctx);
-//
-//            assertThat(oResult).isEqualTo(oValue);
+            File jar = new File(gradleProjectRootDirectory, "build/runtime/foo.jar");
+            try (URLClassLoader loader = new URLClassLoader(new URL[] {jar.toURI().toURL()}))
+                {
+                assertThatClassIsPofIntrumented(loader.loadClass("Foo"));
+                }
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithRuntimeInstrumentation()
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                testImplementation 'org.junit.jupiter:junit-jupiter:5.9.2'
+                            }
+                            coherencePof {
+                                runtimeInstrumentation = true
+                            }
+                            test {
+                                useJUnitPlatform()
+                            }
+                            // a test task registered after the plugin has configured the project
+                            afterEvaluate {
+                                tasks.register('lateTest', Test) {
+                                    useJUnitPlatform()
+                                    testClassesDirs = sourceSets.test.output.classesDirs
+                                    classpath = sourceSets.test.runtimeClasspath
+                                }
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+            copyFileTo("/FooTest.txt", gradleProjectRootDirectory,
+                    "/src/test/java", "FooTest.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("test", "lateTest")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofAgentTest").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":test").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofAgentLateTest").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":lateTest").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain")).isNull();
+            assertThat(new File(gradleProjectRootDirectory, "build/coherence/coherencePofAgentTest/coherence-pof-agent.jar"))
+                    .exists();
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithSizeReport() throws Exception
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Person.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Person.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePofSizeReport")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofSizeReport").getOutcome().name()).isEqualTo("SUCCESS");
+
+            String report = Files.readString(new File(gradleProjectRootDirectory,
+                    "build/reports/coherence/coherencePofSizeReport.json").toPath());
+            assertThat(report).contains("\"class\": \"Person\"", "\"typeId\": 1000", "\"firstName\": ");
+            assertThat(new File(gradleProjectRootDirectory, "pof-size-baseline.properties")).exists();
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithLintWarnings()
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            coherencePof {
+                                failOnLintWarnings = true
+                            }
+                            """
+            );
+
+            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Bar.java");
+            copyFileTo("/Color.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Color.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePofLint")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .buildAndFail();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofLint").getOutcome().name()).isEqualTo("FAILED");
+            assertThat(gradleResult.getOutput()).contains("WARNING [unresolved-property] Bar#beerColor");
+            assertThat(new File(gradleProjectRootDirectory, "build/reports/coherence/coherencePofLint.json")).exists();
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithTypedCollections() throws Exception
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            coherencePof {
+                              inferElementTypes = true
+                            }
+                            """
+            );
+
+            copyFileTo("/Kennel.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Kennel.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Added the element types of collection properties of 1 portable types");
+            assertThat(gradleResult.getOutput()).containsPattern("Property classesDirectory = .*classes[/\\\\]java[/\\\\]main\\R");
+
+            Class kennelClass = getPofClass(this.gradleProjectRootDirectory, "Kennel", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(kennelClass);
+
+            SimplePofContext ctx = new SimplePofContext();
+            ctx.registerUserType(1002, kennelClass, new PortableTypeSerializer(1002, kennelClass));
+
+            Object oValue = kennelClass.getDeclaredConstructor().newInstance();
+            kennelClass.getMethod("add", String.class, int.class).invoke(oValue, "Rex", 3);
+            kennelClass.getMethod("add", String.class, int.class).invoke(oValue, "Lassie", 5);
+            kennelClass.getMethod("addBreed", String.class, int.class, int.class).invoke(oValue, "Collie", 25, 6);
+            kennelClass.getMethod("addBreed", String.class, int.class, int.class).invoke(oValue, "Beagle", 10, 5);
+
+            Object oResult = ExternalizableHelper.fromBinary(ExternalizableHelper.toBinary(oValue, ctx), ctx);
+            assertThat(oResult).isEqualTo(oValue);
+
+            // the properties with concrete collection types are deserialized into instances of these types
+            assertThat(kennelClass.getMethod("getBreeds").invoke(oResult)).isInstanceOf(TreeSet.class);
+            assertThat(kennelClass.getMethod("getWeights").invoke(oResult)).isInstanceOf(ConcurrentHashMap.class);
+            assertThat(kennelClass.getMethod("getLitterSizes").invoke(oResult)).isInstanceOf(ArrayList.class);
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithoutInferredElementTypes() throws Exception
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Kennel.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Kennel.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            // the inference changes the serialized form, so it has to be enabled explicitly
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Property inferElementTypes = false");
+            assertThat(gradleResult.getOutput()).doesNotContain("Added the element types of collection properties");
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithEnumConstantBodies() throws Exception
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            coherencePof {
+                              inferElementTypes = true
+                            }
+                            """
+            );
+
+            copyFileTo("/Coat.txt", gradleProjectRootDirectory, "/src/main/java", "Coat.java");
+            copyFileTo("/Groomer.txt", gradleProjectRootDirectory, "/src/main/java", "Groomer.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            // the constants of Coat have bodies, so they are instances of sub-classes of Coat
+            assertThat(gradleResult.getOutput()).contains("Added the element types of collection properties of 0 portable types");
+
+            File classesDir = new File(gradleProjectRootDirectory, "build/classes/coherence/main/");
+            try (URLClassLoader loader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}))
+            {
+                Class coatClass    = loader.loadClass("Coat");
+                Class groomerClass = loader.loadClass("Groomer");
+                assertThatClassIsPofIntrumented(groomerClass);
+
+                SimplePofContext ctx = new SimplePofContext();
+                ctx.registerUserType(1006, groomerClass, new PortableTypeSerializer(1006, groomerClass));
+                ctx.registerUserType(1007, coatClass, new EnumPofSerializer());
+
+                Object oGroomer = groomerClass.getDeclaredConstructor().newInstance();
+                for (Object oCoat : coatClass.getEnumConstants())
+                    {
+                    groomerClass.getMethod("add", coatClass).invoke(oGroomer, oCoat);
+                    }
+
+                Object oResult = ExternalizableHelper.fromBinary(ExternalizableHelper.toBinary(oGroomer, ctx), ctx);
+                assertThat(oResult).isEqualTo(oGroomer);
+                assertThat((List<?>) groomerClass.getMethod("getCoats").invoke(oResult))
+                        .isEqualTo(List.of(coatClass.getEnumConstants()));
+            }
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithPolymorphicCollection() throws Exception
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            coherencePof {
+                              inferElementTypes = true
+                            }
+                            """
+            );
+
+            copyFileTo("/Pet.txt", gradleProjectRootDirectory, "/src/main/java", "Pet.java");
+            copyFileTo("/Dog.txt", gradleProjectRootDirectory, "/src/main/java", "Dog.java");
+            copyFileTo("/Shelter.txt", gradleProjectRootDirectory, "/src/main/java", "Shelter.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            // Pet is not final, so the List<Pet> property must keep the type of each element
+            assertThat(gradleResult.getOutput()).contains("Added the element types of collection properties of 0 portable types");
+
+            File classesDir = new File(gradleProjectRootDirectory, "build/classes/coherence/main/");
+            try (URLClassLoader loader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}))
+            {
+                Class petClass     = loader.loadClass("Pet");
+                Class dogClass     = loader.loadClass("Dog");
+                Class shelterClass = loader.loadClass("Shelter");
+                assertThatClassIsPofIntrumented(shelterClass);
+
+                SimplePofContext ctx = new SimplePofContext();
+                ctx.registerUserType(1003, petClass, new PortableTypeSerializer(1003, petClass));
+                ctx.registerUserType(1004, dogClass, new PortableTypeSerializer(1004, dogClass));
+                ctx.registerUserType(1005, shelterClass, new PortableTypeSerializer(1005, shelterClass));
+
+                Object oShelter = shelterClass.getDeclaredConstructor().newInstance();
+                Object oDog     = dogClass.getConstructor(String.class, String.class).newInstance("Rex", "Beagle");
+                shelterClass.getMethod("add", petClass).invoke(oShelter, oDog);
+
+                Object oResult = ExternalizableHelper.fromBinary(ExternalizableHelper.toBinary(oShelter, ctx), ctx);
+                assertThat(oResult).isEqualTo(oShelter);
+                assertThat(((List<?>) shelterClass.getMethod("getPets").invoke(oResult)).get(0))
+                        .isInstanceOf(dogClass);
+            }
+        }
+
+        @Test
+        void applyCoherenceGradlePluginIncrementallyWithChangedElementType() throws Exception
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            coherencePof {
+                              inferElementTypes = true
+                            }
+                            """
+            );
+
+            copyFileTo("/Pet.txt", gradleProjectRootDirectory, "/src/main/java", "Pet.java");
+            copyFileTo("/Shelter.txt", gradleProjectRootDirectory, "/src/main/java", "Shelter.java");
+            File petFile = new File(gradleProjectRootDirectory, "src/main/java/Pet.java");
+            Files.writeString(petFile.toPath(), Files.readString(petFile.toPath()).replace("public class Pet", "public final class Pet"));
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Added the element types of collection properties of 1 portable types");
+
+            // once Pet is no longer final, the List<Pet> property of Shelter must keep the type of each element,
+            // so Shelter has to be instrumented again although only Pet has changed
+            copyFileTo("/Pet.txt", gradleProjectRootDirectory, "/src/main/java", "Pet.java");
+            copyFileTo("/Dog.txt", gradleProjectRootDirectory, "/src/main/java", "Dog.java");
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Shelter");
+
+            File classesDir = new File(gradleProjectRootDirectory, "build/classes/coherence/main/");
+            try (URLClassLoader loader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}))
+            {
+                Class petClass     = loader.loadClass("Pet");
+                Class dogClass     = loader.loadClass("Dog");
+                Class shelterClass = loader.loadClass("Shelter");
+
+                SimplePofContext ctx = new SimplePofContext();
+                ctx.registerUserType(1003, petClass, new PortableTypeSerializer(1003, petClass));
+                ctx.registerUserType(1004, dogClass, new PortableTypeSerializer(1004, dogClass));
+                ctx.registerUserType(1005, shelterClass, new PortableTypeSerializer(1005, shelterClass));
+
+                Object oShelter = shelterClass.getDeclaredConstructor().newInstance();
+                shelterClass.getMethod("add", petClass).invoke(oShelter,
+                        dogClass.getConstructor(String.class, String.class).newInstance("Rex", "Beagle"));
+
+                Object oResult = ExternalizableHelper.fromBinary(ExternalizableHelper.toBinary(oShelter, ctx), ctx);
+                assertThat(((List<?>) shelterClass.getMethod("getPets").invoke(oResult)).get(0))
+                        .isInstanceOf(dogClass);
+            }
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithStrictSchemaClasspath()
+        {
+
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                implementation files('lib/foo.jar')
+                            }
+                            coherencePof {
+                                schemaIncludes = ['com.oracle.coherence*']
+                                strictSchemaClasspath = true
+                            }
+                            """
+            );
+
+            copyFileTo("/foo.jar", gradleProjectRootDirectory,
+                    "/lib", "foo.jar");
+            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Bar.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .buildAndFail();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("FAILED");
+            assertThat(gradleResult.getOutput()).contains("Bar references Color from foo.jar");
+            assertThat(gradleResult.getOutput()).doesNotContain("foo.jar to schema");
+        }
+
+        @Test
+        void applyCoherenceGradlePluginIncrementally() throws Exception
+        {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Foo");
+
+            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Bar.java");
+            copyFileTo("/Color.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Color.java");
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Bar");
+
+            // only the new classes are parsed and only the new portable type is instrumented
+            assertThat(gradleResult.getOutput()).doesNotContain("Instrumenting type Foo");
+            File reportFile = new File(gradleProjectRootDirectory, "build/reports/coherence/coherencePofMain.json");
+            assertThat(reportFile).content().contains("\"classesParsed\": 2", "\"classesRewritten\": 1");
+
+            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(foo);
+
+            Class bar = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(bar);
+
+            // a change to the Color enum requires the portable type Bar, which embeds it, to be instrumented again
+            File colorFile = new File(gradleProjectRootDirectory, "src/main/java/Color.java");
+            Files.writeString(colorFile.toPath(), Files.readString(colorFile.toPath()).replace("YELLOW", "YELLOW,\n    RED"));
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Bar");
+            assertThat(gradleResult.getOutput()).doesNotContain("Instrumenting type Foo");
+            assertThat(reportFile).content().contains("\"classesRewritten\": 1");
+        }
+
+        @Test
+        void applyCoherenceGradlePluginLeavesCompiledClassesUntouched()
+        {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("classes")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":compileJava").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            Class compiledFoo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/java/main/");
+            assertThat(compiledFoo.getInterfaces()).isEmpty();
+
+            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(foo);
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("classes")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+
+            assertThat(gradleResult.task(":compileJava").getOutcome().name()).isEqualTo("UP_TO_DATE");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("UP_TO_DATE");
+        }
+
+        @Test
+        void applyCoherenceGradlePluginRetainsClassesOfOtherLanguages() throws Exception
+        {
+            appendToFile(new File(gradleProjectRootDirectory, "settings.gradle"), "rootProject.name = 'polyglot'\n");
+            appendToFile(new File(gradleProjectRootDirectory, "build.gradle"),
+                    """
+                            plugins {
+                              id 'groovy'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation localGroovy()
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+            File groovyDir = new File(gradleProjectRootDirectory, "src/main/groovy");
+            groovyDir.mkdirs();
+            appendToFile(new File(groovyDir, "Greeter.groovy"), "class Greeter { String greet() { 'hello' } }\n");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("jar")
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":compileGroovy").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            // the jar holds the instrumented Java classes and the Groovy classes
+            try (JarFile jar = new JarFile(new File(gradleProjectRootDirectory, "build/libs/polyglot.jar")))
+                {
+                assertThat(jar.getEntry("Greeter.class")).isNotNull();
+                assertThat(jar.getInputStream(jar.getEntry("Foo.class")).readAllBytes()).isEqualTo(
+                        Files.readAllBytes(new File(gradleProjectRootDirectory, "build/classes/coherence/main/Foo.class").toPath()));
+                }
+        }
+
+        @Test
+        void applyCoherenceGradlePluginSharesFragmentsBetweenProjects() throws Exception
+        {
+            appendToFile(new File(gradleProjectRootDirectory, "settings.gradle"), "include 'a', 'b'\n");
+            for (String sProject : new String[] {"a", "b"})
+                {
+                File projectDir = new File(gradleProjectRootDirectory, sProject);
+                projectDir.mkdirs();
+                appendToFile(new File(projectDir, "build.gradle"),
+                        """
+                                plugins {
+                                  id 'java'
+                                  id 'com.oracle.coherence.gradle'
+                                }
+                                repositories {
+                                    mavenCentral()
+                                }
+                                dependencies {
+                                    implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                }
+                                """
+                );
+                copyFileTo("/Foo.txt", projectDir, "/src/main/java", "Foo.java");
+                }
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments(":a:coherencePofMain", ":b:coherencePofMain")
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+            assertThat(gradleResult.task(":a:coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.task(":b:coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            // the jars looked up by the first task are taken from the build service by the second one
+            String sReportA = Files.readString(new File(gradleProjectRootDirectory, "a/build/reports/coherence/coherenceSchemaMain.json").toPath());
+            String sReportB = Files.readString(new File(gradleProjectRootDirectory, "b/build/reports/coherence/coherenceSchemaMain.json").toPath());
+            int    cJars    = getCounter(sReportA, "jarsScanned");
+            assertThat(cJars).isPositive();
+            assertThat(getCounter(sReportA, "jarsSharedInBuild")).isZero();
+            assertThat(getCounter(sReportB, "jarsScanned")).isEqualTo(cJars);
+            assertThat(getCounter(sReportB, "jarsSharedInBuild")).isEqualTo(cJars);
+        }
+
+        private static int getCounter(String sReport, String sCounter)
+        {
+            Matcher matcher = Pattern.compile("\"" + sCounter + "\": (\\d+)").matcher(sReport);
+            assertThat(matcher.find()).withFailMessage("Counter %s not found in %s", sCounter, sReport).isTrue();
+            return Integer.parseInt(matcher.group(1));
+        }
+
+        @Test
+        void applyCoherenceGradlePluginRestoresPreviouslyInstrumentedClasses()
+        {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Foo");
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--rerun-tasks", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Restored 1 previously instrumented classes.");
+            assertThat(gradleResult.getOutput()).doesNotContain("Instrumenting type Foo");
+
+            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(foo);
+        }
+
+        @Test
+        void applyCoherenceGradlePluginReinstrumentsClassesWithChangedDebugSetting()
+        {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Foo");
+
+            // classes instrumented without debug code must not be restored once debug code is enabled
+            appendToFile(buildFile,
+                    """
+                            coherencePof {
+                              debug = true
+                            }
+                            """
+            );
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--info")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Instrumenting type Foo");
+            assertThat(gradleResult.getOutput()).doesNotContain("previously instrumented classes");
+            assertThat(new File(gradleProjectRootDirectory, "build/reports/coherence/coherencePofMain.json"))
+                    .content().contains("\"classesRestored\": 0", "\"classesRewritten\": 1");
+
+            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(foo);
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithConfigurationCache()
+        {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+
+            copyFileTo("/Foo.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Foo.java");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--configuration-cache")
+                    .withPluginClasspath()
+                    .build();
+
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+            assertThat(gradleResult.getOutput()).contains("Configuration cache entry stored.");
+
+            Class foo = getPofClass(this.gradleProjectRootDirectory, "Foo", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(foo);
+
+            gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof", "--configuration-cache")
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                  + gradleResult.getOutput()
+                  + "<<<<------------------------------------"
+            );
+
+            assertThat(gradleResult.getOutput()).contains("Reusing configuration cache.");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("UP_TO_DATE");
+        }
+
+        @Test
+        void applyCoherenceGradlePluginWithRelocatedProject() throws Exception
+        {
+            File firstProjectDirectory  = new File(gradleProjectRootDirectory, "first");
+            File secondProjectDirectory = new File(gradleProjectRootDirectory, "second/nested");
+
+            for (File projectDirectory : new File[] {firstProjectDirectory, secondProjectDirectory})
+                {
+                projectDirectory.mkdirs();
+                appendToFile(new File(projectDirectory, "build.gradle"),
+                        """
+                                plugins {
+                                  id 'java'
+                                  id 'com.oracle.coherence.gradle'
+                                }
+                                repositories {
+                                    mavenCentral()
+                                }
+                                dependencies {
+                                    implementation 'com.oracle.coherence.ce:coherence:22.09'
+                                }
+                                """
+                );
+                copyFileTo("/Foo.txt", projectDirectory, "/src/main/java", "Foo.java");
+                copyFileTo("/Kennel.txt", projectDirectory, "/src/main/java", "Kennel.java");
+
+                BuildResult gradleResult = GradleRunner.create()
+                        .withProjectDir(projectDirectory)
+                        .withArguments("coherencePof")
+                        .withPluginClasspath()
+                        .build();
+                assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+                }
+
+            // the outputs of the task must not depend on the location of the project
+            for (String sOutput : new String[] {"classes/coherence/main", "coherence/coherencePofMain/portable-types.idx"})
+                {
+                Path firstOutput  = new File(firstProjectDirectory, "build/" + sOutput).toPath();
+                Path secondOutput = new File(secondProjectDirectory, "build/" + sOutput).toPath();
+                try (Stream<Path> stream = Files.walk(firstOutput))
+                    {
+                    for (Path file : stream.filter(Files::isRegularFile).collect(Collectors.toList()))
+                        {
+                        Path relocated = secondOutput.resolve(firstOutput.relativize(file).toString());
+                        assertThat(Files.readAllBytes(relocated)).as(sOutput + "/" + firstOutput.relativize(file))
+                                .isEqualTo(Files.readAllBytes(file));
+                        }
+                    }
+                }
+        }
+
+        @Test
+        void verifyCoherenceGradlePluginWithRoundTripSerialization() throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+            final File buildFile = new File(gradleProjectRootDirectory, "build.gradle");
+
+            appendToFile(buildFile,
+                    """
+                            plugins {
+                              id 'java'
+                              id 'com.oracle.coherence.gradle'
+                            }
+                            repositories {
+                                mavenCentral()
+                            }
+                            dependencies {
+                                implementation 'com.oracle.coherence.ce:coherence:22.09'
+                            }
+                            """
+            );
+            copyFileTo("/Person.txt", gradleProjectRootDirectory,
+                    "/src/main/java", "Person.java");
+//
+//            copyFileTo("/Bar.txt", gradleProjectRootDirectory,
+//                    "/src/main/java", "Bar.java");
+//
+//            copyFileTo("/Color.txt", gradleProjectRootDirectory,
+//                    "/src/main/java", "Color.java");
+//
+//            copyFileTo("/test-schema.xml", gradleProjectRootDirectory,
+//                    "/src/main/resources/META-INF", "schema.xml");
+
+            BuildResult gradleResult = GradleRunner.create()
+                    .withProjectDir(gradleProjectRootDirectory)
+                    .withArguments("coherencePof")
+                    .withDebug(true)
+                    .withPluginClasspath()
+                    .build();
+
+            LOGGER.info(
+                    "\n-------- [ Gradle output] -------->>>>\n"
+                            + gradleResult.getOutput()
+                            + "<<<<------------------------------------"
+            );
+
+            assertThat(gradleResult.getOutput()).contains("SUCCESS");
+            assertThat(gradleResult.task(":coherencePofMain").getOutcome().name()).isEqualTo("SUCCESS");
+
+            Class personClass = getPofClass(this.gradleProjectRootDirectory, "Person", "build/classes/coherence/main/");
+            assertThatClassIsPofIntrumented(personClass);
+            Class addressClass = personClass.getClasses()[0];
+            SimplePofContext ctx = new SimplePofContext();
+
+            ctx.registerUserType(1000, personClass, new PortableTypeSerializer<>(1000, personClass));
+            ctx.registerUserType(2, addressClass, new PortableTypeSerializer(2, addressClass));
+
+            Constructor<?> constructor = personClass.getDeclaredConstructor(String.class, String.class, int.class);
+            Object         oValue      = constructor.newInstance("Eric", "Cartman", 10);
+
+            Constructor<?> addressConstructor = addressClass.getDeclaredConstructor(String.class, String.class, String.class);
+            Object         addressInstance = addressConstructor.newInstance("123 Main St", "Springfield", "USA");
+
+            Method setAddressMethod = personClass.getMethod("setAddress", addressClass);
+            setAddressMethod.invoke(oValue, addressInstance);
+            Binary binary              = ExternalizableHelper.toBinary(oValue, ctx);
+            Object         oResult     = ExternalizableHelper.fromBinary(binary, ctx);
+
+            assertThat(oResult).isEqualTo(oValue);
+
+//            Class barClass = getPofClass(this.gradleProjectRootDirectory, "Bar", "build/classes/coherence/main/");
+//            Class colorClass = getPofClass(this.gradleProjectRootDirectory, "Color", "build/classes/coherence/main/");
+//            assertThatClassIsPofIntrumented(barClass);
+//
+//            SimplePofContext ctx = new SimplePofContext();
+//
+//            ctx.registerUserType(1001, barClass, new PortableTypeSerializer<>(1001, barClass));
+//            ctx.registerUserType(1002, colorClass, new PortableTypeSerializer<>(1002, colorClass));
+//
+//            Constructor<?> constructor = barClass.getDeclaredConstructor(String.class, String.class);
+//            Object         oValue      = constructor.newInstance("Bockbier", "BLACK");
+//            Binary binary              = ExternalizableHelper.toBinary(oValue, ctx);
+//            Object         oResult     = ExternalizableHelper.fromBinary(binary, ctx);
+//
+//            assertThat(oResult).isEqualTo(oValue);
+        }
+
+    private static void writeJar(File jarFile, String sVersion) throws IOException
+        {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jarFile.toPath())))
+            {
+            out.putNextEntry(new JarEntry("version.txt"));
+            out.write(sVersion.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            }
         }
     }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.tangosol.io.pof.schema.annotation.PortableType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisabledOnOs(value = OS.WINDOWS, disabledReason = "Jars are read through ZipFile rather than mapped on Windows")
+public class MappedJarFileTests
+    {
+    @TempDir
+    private File tempDirectory;
+
+    @Test
+    void readStoredEntries() throws Exception
+        {
+        File jar = writeJar("stored.jar", ZipEntry.STORED, getEntries());
+
+        try (MappedJarFile mappedJar = MappedJarFile.open(jar))
+            {
+            assertThat(mappedJar).isNotNull();
+            assertEntries(mappedJar);
+            }
+        }
+
+    @Test
+    void readDeflatedEntriesWithDataDescriptor() throws Exception
+        {
+        File   jar       = writeJar("deflated.jar", ZipEntry.DEFLATED, getEntries());
+        byte[] abContent = Files.readAllBytes(jar.toPath());
+
+        // ZipOutputStream writes the sizes and CRC of deflated entries to a data descriptor
+        assertThat(abContent[6] & FLAG_DATA_DESCRIPTOR).isNotZero();
+
+        try (MappedJarFile mappedJar = MappedJarFile.open(jar))
+            {
+            assertThat(mappedJar).isNotNull();
+            assertEntries(mappedJar);
+            }
+        }
+
+    @Test
+    void readLargeDeflatedEntry() throws Exception
+        {
+        byte[] abLarge = new byte[256 * 1024];
+        new Random(42).nextBytes(abLarge);
+
+        Map<String, byte[]> mapEntries = new LinkedHashMap<>();
+        mapEntries.put("Large.class", abLarge);
+        File jar = writeJar("large.jar", ZipEntry.DEFLATED, mapEntries);
+
+        try (MappedJarFile mappedJar = MappedJarFile.open(jar))
+            {
+            assertThat(mappedJar.read(mappedJar.getClassEntries().get(0))).isEqualTo(abLarge);
+            }
+        }
+
+    @Test
+    void rejectZip64Jar() throws Exception
+        {
+        File jar = new File(tempDirectory, "zip64.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath())))
+            {
+            for (int i = 0; i < 0x10000; i++)
+                {
+                out.putNextEntry(new ZipEntry("p/C" + i + ".class"));
+                out.closeEntry();
+                }
+            }
+
+        assertThat(MappedJarFile.open(jar)).isNull();
+        try (ZipFile zip = new ZipFile(jar))
+            {
+            assertThat(zip.size()).isEqualTo(0x10000);
+            }
+        }
+
+    @Test
+    void rejectEncryptedEntry() throws Exception
+        {
+        File   jar       = writeJar("encrypted.jar", ZipEntry.STORED, getEntries());
+        byte[] abContent = Files.readAllBytes(jar.toPath());
+        int    of        = getCentralDirectoryEntry(abContent, PET_CLASS);
+        abContent[of + 8] |= FLAG_ENCRYPTED;
+        Files.write(jar.toPath(), abContent);
+
+        assertThat(MappedJarFile.open(jar)).isNull();
+        }
+
+    @Test
+    void rejectEntryBeyondEndOfFile() throws Exception
+        {
+        File   jar       = writeJar("beyond.jar", ZipEntry.DEFLATED, getEntries());
+        byte[] abContent = Files.readAllBytes(jar.toPath());
+        int    of        = getCentralDirectoryEntry(abContent, PET_CLASS);
+
+        // a compressed size of 0x7FFFFFFF, far beyond the end of the file
+        Arrays.fill(abContent, of + 20, of + 24, (byte) 0xFF);
+        abContent[of + 23] = 0x7F;
+        Files.write(jar.toPath(), abContent);
+
+        assertThat(MappedJarFile.open(jar)).isNull();
+        }
+
+    @Test
+    void rejectTruncatedJar() throws Exception
+        {
+        File   jar       = writeJar("truncated.jar", ZipEntry.DEFLATED, getEntries());
+        byte[] abContent = Files.readAllBytes(jar.toPath());
+        Files.write(jar.toPath(), Arrays.copyOf(abContent, abContent.length - 10));
+
+        assertThat(MappedJarFile.open(jar)).isNull();
+        }
+
+    @Test
+    void rejectGarbage() throws Exception
+        {
+        byte[] abGarbage = new byte[4096];
+        new Random(42).nextBytes(abGarbage);
+
+        File garbage = new File(tempDirectory, "garbage.jar");
+        Files.write(garbage.toPath(), abGarbage);
+        assertThat(MappedJarFile.open(garbage)).isNull();
+
+        File empty = new File(tempDirectory, "empty.jar");
+        Files.write(empty.toPath(), new byte[0]);
+        assertThat(MappedJarFile.open(empty)).isNull();
+        }
+
+    @Test
+    void failOnInvalidCrc() throws Exception
+        {
+        File   jar       = writeJar("crc.jar", ZipEntry.STORED, getEntries());
+        byte[] abContent = Files.readAllBytes(jar.toPath());
+        int    of        = getCentralDirectoryEntry(abContent, PET_CLASS);
+        abContent[of + 16] ^= 0xFF;
+        Files.write(jar.toPath(), abContent);
+
+        try (MappedJarFile mappedJar = MappedJarFile.open(jar))
+            {
+            assertThatThrownBy(() -> mappedJar.read(mappedJar.getClassEntries().get(0)))
+                    .isInstanceOf(ZipException.class)
+                    .hasMessageContaining("Invalid CRC");
+            }
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private static void assertEntries(MappedJarFile mappedJar) throws IOException
+        {
+        Map<String, byte[]> mapExpected = getEntries();
+
+        assertThat(mappedJar.getClassEntries()).extracting(MappedJarFile.Entry::getName)
+                .containsExactly(PET_CLASS, "com/oracle/coherence/gradle/MappedJarFileTests.class");
+
+        MappedJarFile.Entry portableType = mappedJar.getClassEntries().get(0);
+        MappedJarFile.Entry otherClass   = mappedJar.getClassEntries().get(1);
+        assertThat(mappedJar.mayBePortableType(portableType)).isTrue();
+        assertThat(mappedJar.mayBePortableType(otherClass)).isFalse();
+        assertThat(mappedJar.read(portableType)).isEqualTo(mapExpected.get(portableType.getName()));
+        assertThat(mappedJar.read(otherClass)).isEqualTo(mapExpected.get(otherClass.getName()));
+        }
+
+    private static Map<String, byte[]> getEntries() throws IOException
+        {
+        Map<String, byte[]> mapEntries = new LinkedHashMap<>();
+        mapEntries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+        for (Class<?> clz : new Class<?>[] {Pet.class, MappedJarFileTests.class})
+            {
+            String sName = clz.getName().replace('.', '/') + ".class";
+            try (InputStream in = MappedJarFileTests.class.getClassLoader().getResourceAsStream(sName))
+                {
+                mapEntries.put(sName, in.readAllBytes());
+                }
+            }
+        return mapEntries;
+        }
+
+    private File writeJar(String sName, int nMethod, Map<String, byte[]> mapEntries) throws IOException
+        {
+        File jar = new File(tempDirectory, sName);
+        try (OutputStream os = Files.newOutputStream(jar.toPath());
+             ZipOutputStream out = new ZipOutputStream(os))
+            {
+            for (Map.Entry<String, byte[]> entry : mapEntries.entrySet())
+                {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                zipEntry.setMethod(nMethod);
+                if (nMethod == ZipEntry.STORED)
+                    {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                    }
+                out.putNextEntry(zipEntry);
+                out.write(entry.getValue());
+                out.closeEntry();
+                }
+            }
+        return jar;
+        }
+
+    /**
+     * Return the offset of the central directory entry with the specified name.
+     */
+    private static int getCentralDirectoryEntry(byte[] abContent, String sName)
+        {
+        int ofDirectory = indexOf(abContent, CENTRAL_DIRECTORY_SIGNATURE, 0);
+        return indexOf(abContent, sName.getBytes(StandardCharsets.UTF_8), ofDirectory) - 46;
+        }
+
+    private static int indexOf(byte[] abContent, byte[] abPattern, int ofStart)
+        {
+        for (int i = ofStart; i <= abContent.length - abPattern.length; i++)
+            {
+            if (Arrays.equals(Arrays.copyOfRange(abContent, i, i + abPattern.length), abPattern))
+                {
+                return i;
+                }
+            }
+        throw new AssertionError("Pattern not found");
+        }
+
+    // ----- inner class: Pet -----------------------------------------------
+
+    @PortableType(id = 1000)
+    public static class Pet
+        {
+        }
+
+    // ----- constants ------------------------------------------------------
+
+    private static final String PET_CLASS = "com/oracle/coherence/gradle/MappedJarFileTests$Pet.class";
+
+    private static final byte[] CENTRAL_DIRECTORY_SIGNATURE = {0x50, 0x4b, 0x01, 0x02};
+
+    private static final int FLAG_ENCRYPTED = 0x1;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    }
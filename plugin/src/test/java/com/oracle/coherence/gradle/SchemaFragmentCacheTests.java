@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023, Oracle and/or its affiliates.
+ *
+ * Licensed under the Universal Permissive License v 1.0 as shown at
+ * https://oss.oracle.com/licenses/upl.
+ */
+package com.oracle.coherence.gradle;
+
+import com.tangosol.io.pof.schema.annotation.PortableType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchemaFragmentCacheTests
+    {
+    @TempDir
+    private File tempDirectory;
+
+    @Test
+    void hitForUnchangedJar() throws Exception
+        {
+        File jar = writeJar("pets.jar", Pet.class, SchemaFragmentCacheTests.class);
+
+        SchemaFragmentCache cache    = new SchemaFragmentCache(new File(tempDirectory, "cache"));
+        File                fragment = cache.getFragment(jar);
+
+        assertThat(fragment).isDirectory();
+        assertThat(new File(fragment, getEntryName(Pet.class))).isFile();
+        assertThat(new File(fragment, getEntryName(SchemaFragmentCacheTests.class))).doesNotExist();
+        assertThat(cache.getCacheHits()).isZero();
+
+        SchemaFragmentCache cacheNextBuild = new SchemaFragmentCache(new File(tempDirectory, "cache"));
+        assertThat(cacheNextBuild.getFragment(jar)).isEqualTo(fragment);
+        assertThat(cacheNextBuild.getCacheHits()).isEqualTo(1);
+        assertThat(cacheNextBuild.getClassesParsed()).isZero();
+        }
+
+    @Test
+    void missForChangedJar() throws Exception
+        {
+        File jar = writeJar("pets.jar", SchemaFragmentCacheTests.class);
+
+        SchemaFragmentCache cache = new SchemaFragmentCache(new File(tempDirectory, "cache"));
+        assertThat(cache.getFragment(jar)).isNull();
+
+        writeJar("pets.jar", Pet.class, SchemaFragmentCacheTests.class);
+        jar.setLastModified(jar.lastModified() + 2000);
+
+        File fragment = cache.getFragment(jar);
+        assertThat(fragment).isDirectory();
+        assertThat(new File(fragment, getEntryName(Pet.class))).isFile();
+        assertThat(cache.getCacheHits()).isZero();
+        }
+
+    @Test
+    void hitForJarWithoutPortableTypes() throws Exception
+        {
+        File jar = writeJar("other.jar", SchemaFragmentCacheTests.class);
+
+        SchemaFragmentCache cache = new SchemaFragmentCache(new File(tempDirectory, "cache"));
+        assertThat(cache.getFragment(jar)).isNull();
+        assertThat(cache.getClassesParsed()).isEqualTo(1);
+
+        assertThat(cache.getFragment(jar)).isNull();
+        assertThat(cache.getCacheHits()).isEqualTo(1);
+        assertThat(cache.getClassesParsed()).isEqualTo(1);
+        }
+
+    @Test
+    void cleanUpUnusedEntries() throws Exception
+        {
+        File jar      = writeJar("pets.jar", Pet.class);
+        File cacheDir = new File(tempDirectory, "cache");
+
+        SchemaFragmentCache cache    = new SchemaFragmentCache(cacheDir);
+        File                fragment = cache.getFragment(jar);
+        assertThat(cache.cleanUp(SchemaFragmentCache.MAX_AGE)).isZero();
+        assertThat(fragment).isDirectory();
+
+        // age all entries beyond the maximum age
+        long ldtOld = System.currentTimeMillis() - SchemaFragmentCache.MAX_AGE - 1000;
+        try (Stream<Path> stream = Files.walk(cacheDir.toPath()))
+            {
+            stream.forEach(path -> path.toFile().setLastModified(ldtOld));
+            }
+
+        assertThat(cache.cleanUp(SchemaFragmentCache.MAX_AGE)).isEqualTo(1);
+        assertThat(fragment).doesNotExist();
+
+        SchemaFragmentCache cacheNextBuild = new SchemaFragmentCache(cacheDir);
+        assertThat(cacheNextBuild.getFragment(jar)).isEqualTo(fragment);
+        assertThat(cacheNextBuild.getCacheHits()).isZero();
+        assertThat(fragment).isDirectory();
+        }
+
+    @Test
+    void useCompleteSchemaIndex() throws Exception
+        {
+        File jar = writeIndexedJar("pets.jar", Pet.class, Pet.class, SchemaFragmentCacheTests.class);
+
+        SchemaFragmentCache cache    = new SchemaFragmentCache(new File(tempDirectory, "cache"));
+        File                fragment = cache.getFragment(jar);
+
+        assertThat(fragment).isDirectory();
+        assertThat(new File(fragment, getEntryName(Pet.class))).isFile();
+        assertThat(cache.getIndexedJars()).isEqualTo(1);
+        }
+
+    @Test
+    void scanJarWithIncompleteSchemaIndex() throws Exception
+        {
+        File jar = writeIndexedJar("pets.jar", Pet.class, Pet.class, Dog.class, SchemaFragmentCacheTests.class);
+
+        SchemaFragmentCache cache    = new SchemaFragmentCache(new File(tempDirectory, "cache"));
+        File                fragment = cache.getFragment(jar);
+
+        // Dog is not listed in the index, so the index must not be used
+        assertThat(fragment).isDirectory();
+        assertThat(new File(fragment, getEntryName(Pet.class))).isFile();
+        assertThat(new File(fragment, getEntryName(Dog.class))).isFile();
+        assertThat(cache.getIndexedJars()).isZero();
+        }
+
+    // ----- helpers --------------------------------------------------------
+
+    private File writeJar(String sName, Class<?>... aClasses) throws IOException
+        {
+        return writeIndexedJar(sName, null, aClasses);
+        }
+
+    private File writeIndexedJar(String sName, Class<?> clzIndexed, Class<?>... aClasses) throws IOException
+        {
+        File jar = new File(tempDirectory, sName);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath())))
+            {
+            if (clzIndexed != null)
+                {
+                out.putNextEntry(new ZipEntry(SchemaIndexResource.RESOURCE));
+                out.write((SchemaIndexResource.HEADER + "\n" + getEntryName(clzIndexed) + "\n").getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+                }
+            for (Class<?> clz : aClasses)
+                {
+                out.putNextEntry(new ZipEntry(getEntryName(clz)));
+                try (InputStream in = clz.getClassLoader().getResourceAsStream(getEntryName(clz)))
+                    {
+                    in.transferTo(out);
+                    }
+                out.closeEntry();
+                }
+            }
+        return jar;
+        }
+
+    private static String getEntryName(Class<?> clz)
+        {
+        return clz.getName().replace('.', '/') + ".class";
+        }
+
+    // ----- inner class: Pet -----------------------------------------------
+
+    @PortableType(id = 1000)
+    public static class Pet
+        {
+        }
+
+    // ----- inner class: Dog -----------------------------------------------
+
+    @PortableType(id = 1001)
+    public static class Dog
+        {
+        }
+    }